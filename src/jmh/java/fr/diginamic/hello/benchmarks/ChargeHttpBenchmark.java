@@ -0,0 +1,106 @@
+package fr.diginamic.hello.benchmarks;
+
+import fr.diginamic.hello.RecensementApplication;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test de charge des endpoints /api/villes : débit et distribution des latences (p50, p90, p99)
+ * sous 200 clients concurrents, avec les threads virtuels puis avec les threads plateforme de Tomcat (200 par défaut).
+ * Chaque combinaison est mesurée dans sa propre JVM : le benchmark y démarre l'application sur un port libre
+ * avec spring.threads.virtual.enabled=true ou false, sur la base MariaDB configurée dans application.properties.
+ * ./mvnw -P benchmark compile exec:exec -Djmh.args="ChargeHttpBenchmark -rf json"
+ * Pour mesurer une instance déjà démarrée, donner son adresse (le mode est alors celui de l'instance) :
+ * -Djmh.args="ChargeHttpBenchmark -p urlBase=http://localhost:8087 -p threadsVirtuels=true"
+ * Exclu de l'exécution par défaut des benchmarks, qui ne demandent pas de base de données.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 3, time = 20)
+@Threads(200)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ChargeHttpBenchmark {
+    /** Adresse d'une application déjà démarrée ; vide, le benchmark démarre l'application */
+    @Param({""})
+    public String urlBase;
+
+    /** Valeur de spring.threads.virtual.enabled de l'application démarrée par le benchmark */
+    @Param({"true", "false"})
+    public boolean threadsVirtuels;
+
+    /** Endpoint mesuré, relatif à /api/villes */
+    @Param({"/liste", "/liste/pagination?size=50", "/nb_habitants/100000", "/autocompletion?prefixe=sa&k=10"})
+    public String endpoint;
+
+    /** Application démarrée par le benchmark, null pour une instance externe */
+    private ConfigurableApplicationContext application;
+
+    /** Client partagé par tous les threads de mesure */
+    private HttpClient client;
+
+    /** Requête envoyée à chaque appel */
+    private HttpRequest requete;
+
+    @Setup
+    public void preparer() {
+        String adresse = urlBase;
+        if (adresse.isEmpty()) {
+            application = new SpringApplicationBuilder(RecensementApplication.class).run(
+                    "--server.port=0",
+                    "--spring.threads.virtual.enabled=" + threadsVirtuels,
+                    "--spring.jpa.show-sql=false",
+                    "--logging.level.root=WARN");
+            int port = ((WebServerApplicationContext) application).getWebServer().getPort();
+            adresse = "http://localhost:" + port;
+        }
+
+        client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        requete = HttpRequest.newBuilder(URI.create(adresse + "/api/villes" + endpoint))
+                .timeout(Duration.ofSeconds(30))
+                .GET()
+                .build();
+    }
+
+    @TearDown
+    public void fermer() {
+        client.close();
+        if (application != null) {
+            application.close();
+        }
+    }
+
+    @Benchmark
+    public int appeler() throws IOException, InterruptedException {
+        HttpResponse<byte[]> reponse = client.send(requete, HttpResponse.BodyHandlers.ofByteArray());
+        if (reponse.statusCode() != 200) {
+            throw new IllegalStateException("Réponse " + reponse.statusCode() + " pour " + requete.uri());
+        }
+        return reponse.body().length;
+    }
+}
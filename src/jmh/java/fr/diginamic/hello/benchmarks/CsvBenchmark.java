@@ -0,0 +1,52 @@
+package fr.diginamic.hello.benchmarks;
+
+import fr.diginamic.hello.mappers.VilleMapper;
+import fr.diginamic.hello.utils.CSVGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mesure la génération des fichiers CSV, en chaîne complète et en écriture par flux.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CsvBenchmark {
+    /** Générateur mesuré, sans état */
+    private final CSVGenerator csvGenerator = new CSVGenerator();
+
+    @Benchmark
+    public String generateCSVVille(JeuDeDonnees donnees) {
+        return csvGenerator.generateCSVVille(donnees.getVilles());
+    }
+
+    @Benchmark
+    public String generateCSVDepartement(JeuDeDonnees donnees) {
+        return csvGenerator.generateCSVDepartement(donnees.getDepartements());
+    }
+
+    @Benchmark
+    public StringWriter writeCSVVille(JeuDeDonnees donnees) throws IOException {
+        StringWriter writer = new StringWriter();
+        csvGenerator.writeCSVVille(VilleMapper.toDtos(donnees.getVilles()).stream(), writer);
+        return writer;
+    }
+
+    @Benchmark
+    public StringWriter writeCSVDepartement(JeuDeDonnees donnees) throws IOException {
+        StringWriter writer = new StringWriter();
+        csvGenerator.writeCSVDepartement(donnees.getDepartements().stream(), writer);
+        return writer;
+    }
+}
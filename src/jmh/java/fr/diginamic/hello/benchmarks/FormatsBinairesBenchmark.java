@@ -0,0 +1,94 @@
+package fr.diginamic.hello.benchmarks;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import fr.diginamic.hello.dto.DepartementDto;
+import fr.diginamic.hello.dto.VilleDto;
+import fr.diginamic.hello.mappers.DepartementMapper;
+import fr.diginamic.hello.mappers.VilleMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compare JSON, CBOR et Smile sur les listes servies par les endpoints : coût d'écriture côté serveur,
+ * coût de lecture côté client. La différence de taille des encodages est vérifiée par FormatsBinairesConfigTest.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FormatsBinairesBenchmark {
+    /** Type des listes de villes relues */
+    private static final TypeReference<List<VilleDto>> LISTE_VILLES = new TypeReference<>() {
+    };
+
+    /** Type des listes de départements relues */
+    private static final TypeReference<List<DepartementDto>> LISTE_DEPARTEMENTS = new TypeReference<>() {
+    };
+
+    /** Format mesuré */
+    @Param({"json", "cbor", "smile"})
+    public String format;
+
+    /** ObjectMapper du format mesuré */
+    private ObjectMapper mapper;
+
+    /** DTO à écrire, préparés hors mesure */
+    private List<VilleDto> villeDtos;
+    private List<DepartementDto> departementDtos;
+
+    /** Listes déjà encodées, à relire */
+    private byte[] villesEncodees;
+    private byte[] departementsEncodes;
+
+    @Setup
+    public void preparer(JeuDeDonnees donnees) throws IOException {
+        mapper = switch (format) {
+            case "cbor" -> new CBORMapper();
+            case "smile" -> new SmileMapper();
+            default -> new ObjectMapper();
+        };
+
+        villeDtos = VilleMapper.toDtos(donnees.getVilles());
+        departementDtos = DepartementMapper.toDtos(donnees.getDepartements());
+        villesEncodees = mapper.writeValueAsBytes(villeDtos);
+        departementsEncodes = mapper.writeValueAsBytes(departementDtos);
+    }
+
+    @Benchmark
+    public byte[] ecrireVilles() throws IOException {
+        return mapper.writeValueAsBytes(villeDtos);
+    }
+
+    @Benchmark
+    public List<VilleDto> lireVilles() throws IOException {
+        return mapper.readValue(villesEncodees, LISTE_VILLES);
+    }
+
+    @Benchmark
+    public byte[] ecrireDepartements() throws IOException {
+        return mapper.writeValueAsBytes(departementDtos);
+    }
+
+    @Benchmark
+    public List<DepartementDto> lireDepartements() throws IOException {
+        return mapper.readValue(departementsEncodes, LISTE_DEPARTEMENTS);
+    }
+}
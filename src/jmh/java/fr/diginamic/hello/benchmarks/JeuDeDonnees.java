@@ -0,0 +1,73 @@
+package fr.diginamic.hello.benchmarks;
+
+import fr.diginamic.hello.models.Departement;
+import fr.diginamic.hello.models.Ville;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Jeu de données synthétique pour les benchmarks, aux proportions de data.sql :
+ * 101 départements, villes réparties entre eux, noms accentués et composés.
+ * La graine est fixe pour que deux exécutions mesurent exactement les mêmes données.
+ * 1000 villes correspond à data.sql, 35000 à l'ensemble des communes françaises.
+ */
+@State(Scope.Benchmark)
+public class JeuDeDonnees {
+    /** Nombre de départements, comme dans data.sql */
+    private static final int NB_DEPARTEMENTS = 101;
+
+    /** Fragments servant à composer des noms de villes réalistes */
+    private static final String[] DEBUTS = {"Saint", "Sainte", "Bourg", "Château", "Évry", "Ambérieu", "Montpellier", "Béziers", "Oyonnax", "Île", "Écouen", "Labège"};
+    private static final String[] FINS = {"en-Bresse", "les-Bains", "sur-Mer", "de-Provence", "la-Forêt", "du-Rhône", "lès-Nîmes", "en-Bugey"};
+
+    /** Nombre de villes à générer */
+    @Param({"1000", "35000"})
+    public int nbVilles;
+
+    /** Départements générés */
+    private final List<Departement> departements = new ArrayList<>();
+    /** Villes générées */
+    private final List<Ville> villes = new ArrayList<>();
+
+    /**
+     * Génère les données avant les mesures.
+     */
+    @Setup
+    public void generer() {
+        Random random = new Random(42);
+
+        for (int i = 0; i < NB_DEPARTEMENTS; i++) {
+            departements.add(new Departement(i + 1, "Département " + DEBUTS[i % DEBUTS.length] + " " + i, String.format("%02d", i + 1)));
+        }
+
+        for (int i = 0; i < nbVilles; i++) {
+            Departement departement = departements.get(random.nextInt(NB_DEPARTEMENTS));
+            String nom = DEBUTS[random.nextInt(DEBUTS.length)] + "-" + FINS[random.nextInt(FINS.length)] + "-" + i;
+            Ville ville = new Ville(i + 1, nom, 10 + random.nextInt(300_000), departement);
+            villes.add(ville);
+            departement.getVilles().add(ville);
+        }
+    }
+
+    /**
+     * Getter
+     * @return departements
+     */
+    public List<Departement> getDepartements() {
+        return departements;
+    }
+
+    /**
+     * Getter
+     * @return villes
+     */
+    public List<Ville> getVilles() {
+        return villes;
+    }
+}
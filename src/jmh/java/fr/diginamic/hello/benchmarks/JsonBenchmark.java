@@ -0,0 +1,46 @@
+package fr.diginamic.hello.benchmarks;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.diginamic.hello.dto.VilleDto;
+import fr.diginamic.hello.mappers.VilleMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mesure la sérialisation JSON d'une liste de VilleDto, telle que la font les endpoints de liste.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonBenchmark {
+    /** ObjectMapper partagé, comme celui de Spring */
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /** DTO à sérialiser, préparés hors mesure */
+    private List<VilleDto> villeDtos;
+
+    @Setup
+    public void preparer(JeuDeDonnees donnees) {
+        villeDtos = VilleMapper.toDtos(donnees.getVilles());
+    }
+
+    @Benchmark
+    public byte[] serialiserVilleDtos() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(villeDtos);
+    }
+}
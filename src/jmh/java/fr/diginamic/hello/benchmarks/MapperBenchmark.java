@@ -0,0 +1,37 @@
+package fr.diginamic.hello.benchmarks;
+
+import fr.diginamic.hello.dto.DepartementDto;
+import fr.diginamic.hello.dto.VilleDto;
+import fr.diginamic.hello.mappers.DepartementMapper;
+import fr.diginamic.hello.mappers.VilleMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mesure le mapping entités JPA -> DTO, dont la somme des populations par département.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MapperBenchmark {
+
+    @Benchmark
+    public List<VilleDto> villeMapperToDtos(JeuDeDonnees donnees) {
+        return VilleMapper.toDtos(donnees.getVilles());
+    }
+
+    @Benchmark
+    public List<DepartementDto> departementMapperToDtos(JeuDeDonnees donnees) {
+        return DepartementMapper.toDtos(donnees.getDepartements());
+    }
+}
@@ -0,0 +1,50 @@
+package fr.diginamic.hello.benchmarks;
+
+import com.itextpdf.text.DocumentException;
+import fr.diginamic.hello.dto.VilleDto;
+import fr.diginamic.hello.mappers.VilleMapper;
+import fr.diginamic.hello.utils.PDFGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mesure la génération du PDF des villes d'un département, écrit en flux dans une sortie qui ignore les octets :
+ * seul le coût de mise en page est mesuré. 2000 villes correspondent aux plus grands départements.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PdfBenchmark {
+    /** Nombre de villes du département */
+    @Param({"100", "2000"})
+    public int nbVillesDepartement;
+
+    /** Villes du département, préparées hors mesure */
+    private List<VilleDto> villes;
+
+    @Setup
+    public void preparer(JeuDeDonnees donnees) {
+        villes = VilleMapper.toDtos(donnees.getVilles()).subList(0, Math.min(nbVillesDepartement, donnees.getVilles().size()));
+    }
+
+    @Benchmark
+    public void writePdfVilles() throws DocumentException {
+        PDFGenerator.writePdfVilles("Ain", villes.stream(), OutputStream.nullOutputStream());
+    }
+}
@@ -0,0 +1,39 @@
+package fr.diginamic.hello.benchmarks;
+
+import fr.diginamic.hello.models.Ville;
+import fr.diginamic.hello.utils.TriFrancais;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mesure le tri des villes par nom : par Ville.compareTo, et par clés de collation précalculées.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TriBenchmark {
+
+    @Benchmark
+    public List<Ville> trierParCompareTo(JeuDeDonnees donnees) {
+        List<Ville> villes = new ArrayList<>(donnees.getVilles());
+        Collections.sort(villes);
+        return villes;
+    }
+
+    @Benchmark
+    public List<Ville> trierParClesDeCollation(JeuDeDonnees donnees) {
+        return TriFrancais.trier(donnees.getVilles(), Ville::getNom);
+    }
+}
@@ -0,0 +1,38 @@
+package fr.diginamic.hello.config;
+
+import org.springframework.cache.annotation.CachingConfigurer;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.interceptor.KeyGenerator;
+import org.springframework.cache.interceptor.SimpleKey;
+import org.springframework.cache.interceptor.SimpleKeyGenerator;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration des caches de lecture des services.
+ * Les caches sont créés par Spring Boot (spring.cache.* dans application.properties) :
+ * Caffeine, bornés en taille et en durée, désactivés pour les tests.
+ */
+@Configuration
+@EnableCaching
+public class CacheConfig implements CachingConfigurer {
+    /** Listes complètes de villes, triées ou paginées */
+    public static final String VILLES = "villes";
+    /** Recherches de villes par nom, population ou département */
+    public static final String VILLES_RECHERCHE = "villesRecherche";
+    /** Villes par identifiant */
+    public static final String VILLE = "ville";
+    /** Listes de départements avec leur population */
+    public static final String DEPARTEMENTS = "departements";
+    /** Départements avec leur population, par identifiant ou par code */
+    public static final String DEPARTEMENT = "departement";
+
+    /**
+     * Clé de cache par défaut : nom de la méthode et arguments.
+     * Plusieurs méthodes partagent un même cache, et deux méthodes sans argument auraient sinon la même clé.
+     * @return générateur de clés
+     */
+    @Override
+    public KeyGenerator keyGenerator() {
+        return (cible, methode, parametres) -> new SimpleKey(methode.getName(), SimpleKeyGenerator.generateKey(parametres));
+    }
+}
@@ -0,0 +1,91 @@
+package fr.diginamic.hello.config;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import fr.diginamic.hello.services.VersionDonneesService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Configuration des réplicas en lecture, active si recensement.replicas.urls est renseigné.
+ * Les transactions en lecture seule (lectures des services, exports) sont envoyées aux réplicas,
+ * les autres à la base primaire de spring.datasource.
+ * La connexion n'est obtenue qu'à la première requête, une fois le mode lecture seule de la transaction connu.
+ */
+@Configuration
+@ConditionalOnProperty("recensement.replicas.urls")
+public class DataSourceConfig {
+    /**
+     * Pool de connexions de la base primaire, paramétré par spring.datasource.*.
+     * @param proprietes propriétés spring.datasource
+     * @return pool de la primaire
+     */
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaire(DataSourceProperties proprietes) {
+        return proprietes.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    /**
+     * Pools des réplicas, paramétrés comme celui de la primaire, et répartition des lectures entre eux.
+     * Le délai d'attente d'une connexion est court, pour qu'un réplica arrêté soit écarté sans bloquer la lecture
+     * pendant le délai de la primaire ; un réplica arrêté au démarrage n'empêche pas l'application de démarrer.
+     * @param primaire pool de la primaire, repli des lectures
+     * @param versionDonnees date de la dernière écriture
+     * @param urls URL JDBC des réplicas
+     * @param requeteRetard requête lisant le retard de réplication, vide pour ne vérifier que la disponibilité
+     * @param retardMax retard de réplication toléré
+     * @param intervalle intervalle entre deux vérifications des réplicas
+     * @param delaiConnexion délai d'attente d'une connexion à un réplica
+     * @return DataSource des lectures
+     */
+    @Bean(destroyMethod = "close")
+    public ReplicasDataSource replicas(HikariDataSource primaire, VersionDonneesService versionDonnees,
+                                       @Value("${recensement.replicas.urls}") List<String> urls,
+                                       @Value("${recensement.replicas.requete-retard:}") String requeteRetard,
+                                       @Value("${recensement.replicas.retard-max:5s}") Duration retardMax,
+                                       @Value("${recensement.replicas.intervalle-verification:5s}") Duration intervalle,
+                                       @Value("${recensement.replicas.connection-timeout:500ms}") Duration delaiConnexion) {
+        List<DataSource> pools = new ArrayList<>();
+        for (int i = 0; i < urls.size(); i++) {
+            HikariConfig config = new HikariConfig();
+            primaire.copyStateTo(config);
+            config.setJdbcUrl(urls.get(i));
+            config.setPoolName("replica-" + (i + 1));
+            config.setReadOnly(true);
+            config.setConnectionTimeout(delaiConnexion.toMillis());
+            config.setValidationTimeout(Math.min(config.getValidationTimeout(), delaiConnexion.toMillis()));
+            config.setInitializationFailTimeout(-1);
+            pools.add(new HikariDataSource(config));
+        }
+
+        ReplicasDataSource replicas = new ReplicasDataSource(primaire, pools, requeteRetard, retardMax, versionDonnees::getDerniereModification);
+        replicas.surveiller(intervalle);
+        return replicas;
+    }
+
+    /**
+     * DataSource utilisée par JPA : la primaire, ou les réplicas pour une connexion passée en lecture seule.
+     * @param primaire pool de la primaire
+     * @param replicas DataSource des lectures
+     * @return DataSource de l'application
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(HikariDataSource primaire, ReplicasDataSource replicas) {
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(primaire);
+        dataSource.setReadOnlyDataSource(replicas);
+        return dataSource;
+    }
+}
@@ -0,0 +1,43 @@
+package fr.diginamic.hello.config;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+/**
+ * Formats binaires des réponses, choisis par le client avec l'en-tête Accept :
+ * application/cbor ou application/x-jackson-smile, JSON sinon.
+ * Mêmes DTO et même paramétrage Jackson que le JSON (builder de Spring Boot) : seul l'encodage change,
+ * plus compact et plus rapide à lire pour les clients internes qui rechargent les listes complètes.
+ */
+@Configuration
+public class FormatsBinairesConfig {
+    /** Type de contenu CBOR */
+    public static final String APPLICATION_CBOR = "application/cbor";
+    /** Type de contenu Smile */
+    public static final String APPLICATION_SMILE = "application/x-jackson-smile";
+
+    /**
+     * Convertisseur CBOR, remplace celui que Spring MVC crée sans le paramétrage de Spring Boot.
+     * @param builder builder Jackson de Spring Boot
+     * @return convertisseur CBOR
+     */
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+    }
+
+    /**
+     * Convertisseur Smile, remplace celui que Spring MVC crée sans le paramétrage de Spring Boot.
+     * @param builder builder Jackson de Spring Boot
+     * @return convertisseur Smile
+     */
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2SmileHttpMessageConverter(builder.factory(new SmileFactory()).build());
+    }
+}
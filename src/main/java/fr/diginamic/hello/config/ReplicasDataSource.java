@@ -0,0 +1,207 @@
+package fr.diginamic.hello.config;
+
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * DataSource des transactions en lecture seule : répartit les connexions entre les réplicas,
+ * à tour de rôle, et se rabat sur la base primaire quand aucun réplica n'est utilisable.
+ * Un réplica est écarté s'il ne répond pas ou si son retard de réplication dépasse le retard maximum.
+ * Juste après une écriture, les lectures restent sur la primaire le temps du retard maximum :
+ * les caches vidés par l'écriture ne sont pas rechargés avec des données antérieures à celle-ci.
+ */
+public class ReplicasDataSource extends AbstractDataSource implements Closeable {
+    /** Colonne du retard dans le résultat de SHOW REPLICA STATUS (MariaDB) */
+    private static final String COLONNE_RETARD = "Seconds_Behind_Master";
+
+    /** Base primaire, utilisée en repli */
+    private final DataSource primaire;
+
+    /** Réplicas en lecture seule */
+    private final List<Replica> replicas = new ArrayList<>();
+
+    /** Requête lisant le retard de réplication en secondes, vide pour ne vérifier que la disponibilité */
+    private final String requeteRetard;
+
+    /** Retard de réplication toléré */
+    private final Duration retardMax;
+
+    /** Date de la dernière écriture validée, en millisecondes */
+    private final LongSupplier derniereEcriture;
+
+    /** Réplica à essayer en premier pour la prochaine connexion */
+    private final AtomicInteger suivant = new AtomicInteger();
+
+    /** Vérification périodique des réplicas, null tant qu'elle n'est pas démarrée */
+    private ScheduledExecutorService surveillance;
+
+    /**
+     * Constructeur
+     * @param primaire base primaire
+     * @param replicas réplicas en lecture seule
+     * @param requeteRetard requête lisant le retard de réplication en secondes : première colonne,
+     *                      ou colonne Seconds_Behind_Master pour SHOW REPLICA STATUS ; vide pour ne pas lire le retard
+     * @param retardMax retard de réplication toléré
+     * @param derniereEcriture date de la dernière écriture validée, en millisecondes
+     */
+    public ReplicasDataSource(DataSource primaire, List<DataSource> replicas, String requeteRetard, Duration retardMax, LongSupplier derniereEcriture) {
+        this.primaire = primaire;
+        for (DataSource replica : replicas) {
+            this.replicas.add(new Replica(replica));
+        }
+        this.requeteRetard = requeteRetard;
+        this.retardMax = retardMax;
+        this.derniereEcriture = derniereEcriture;
+    }
+
+    /**
+     * Donne une connexion vers un réplica disponible, ou vers la primaire.
+     * Un réplica qui refuse la connexion est écarté jusqu'à la prochaine vérification.
+     * @return connexion
+     * @throws SQLException aucune connexion n'a pu être obtenue, même vers la primaire
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (System.currentTimeMillis() - derniereEcriture.getAsLong() < retardMax.toMillis()) {
+            return primaire.getConnection();
+        }
+
+        int debut = Math.floorMod(suivant.getAndIncrement(), Math.max(replicas.size(), 1));
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get((debut + i) % replicas.size());
+            if (!replica.disponible) {
+                continue;
+            }
+
+            try {
+                return replica.dataSource.getConnection();
+            }
+            catch (SQLException e) {
+                replica.disponible = false;
+            }
+        }
+
+        return primaire.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Les identifiants sont ceux des pools de connexions.");
+    }
+
+    /**
+     * Vérifie chaque réplica : il est disponible s'il répond et si son retard ne dépasse pas le retard maximum.
+     */
+    public void verifier() {
+        for (Replica replica : replicas) {
+            try (Connection connexion = replica.dataSource.getConnection()) {
+                replica.disponible = lireRetard(connexion) <= retardMax.toSeconds();
+            }
+            catch (SQLException e) {
+                replica.disponible = false;
+            }
+        }
+    }
+
+    /**
+     * Démarre la vérification périodique des réplicas, sur un thread virtuel.
+     * @param intervalle intervalle entre deux vérifications
+     */
+    public void surveiller(Duration intervalle) {
+        surveillance = Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual().name("surveillance-replicas").factory());
+        surveillance.scheduleWithFixedDelay(this::verifier, 0, intervalle.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Arrête la vérification des réplicas et ferme leurs pools de connexions.
+     * La primaire n'est pas fermée : elle est gérée par Spring.
+     * @throws IOException erreur à la fermeture d'un pool
+     */
+    @Override
+    public void close() throws IOException {
+        if (surveillance != null) {
+            surveillance.shutdownNow();
+        }
+
+        for (Replica replica : replicas) {
+            if (replica.dataSource instanceof Closeable pool) {
+                pool.close();
+            }
+        }
+    }
+
+    /**
+     * Lit le retard de réplication d'un réplica.
+     * @param connexion connexion au réplica
+     * @return retard en secondes, 0 si aucune requête n'est configurée
+     * @throws SQLException le retard n'a pas pu être lu, ou la réplication est arrêtée
+     */
+    private long lireRetard(Connection connexion) throws SQLException {
+        if (requeteRetard == null || requeteRetard.isBlank()) {
+            if (!connexion.isValid(1)) {
+                throw new SQLException("Le réplica ne répond pas.");
+            }
+            return 0;
+        }
+
+        try (Statement statement = connexion.createStatement(); ResultSet resultat = statement.executeQuery(requeteRetard)) {
+            if (!resultat.next()) {
+                throw new SQLException("Le retard du réplica n'a pas pu être lu.");
+            }
+
+            long retard = resultat.getLong(colonneRetard(resultat.getMetaData()));
+            // Un retard NULL indique une réplication arrêtée
+            if (resultat.wasNull()) {
+                throw new SQLException("La réplication est arrêtée.");
+            }
+            return retard;
+        }
+    }
+
+    /**
+     * Cherche la colonne du retard : Seconds_Behind_Master si elle existe, la première colonne sinon.
+     * @param metaData description du résultat
+     * @return numéro de la colonne
+     * @throws SQLException erreur de lecture de la description
+     */
+    private static int colonneRetard(ResultSetMetaData metaData) throws SQLException {
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            if (COLONNE_RETARD.equalsIgnoreCase(metaData.getColumnLabel(i))) {
+                return i;
+            }
+        }
+        return 1;
+    }
+
+    /**
+     * Réplica et son état lors de la dernière vérification.
+     */
+    private static final class Replica {
+        /** Pool de connexions du réplica */
+        private final DataSource dataSource;
+
+        /** false si le réplica ne répond pas ou est trop en retard */
+        private volatile boolean disponible = true;
+
+        private Replica(DataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+    }
+}
@@ -25,7 +25,7 @@ public class VilleController {
 
     @GetMapping("villes/liste")
     public String getVilles(Model model) throws RessourceNotFoundException {
-        List<Ville> villes = villeService.getVilles();
+        List<VilleDto> villes = villeService.getVilleDtos();
         model.addAttribute("villes", villes);
         return "listeVilles";
     }
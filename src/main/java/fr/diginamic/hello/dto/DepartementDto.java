@@ -23,6 +23,8 @@ public class DepartementDto implements Serializable {
     private String nomDepartement;
     /** nombre d'habitants du département */
     private int nbHabitants;
+    /** nombre de villes du département */
+    private int nbVilles;
 
     /**
      * Constructeur vide
@@ -44,6 +46,19 @@ public class DepartementDto implements Serializable {
         this.nbHabitants = nbHabitants;
     }
 
+    /**
+     * Constructeur utilisé par les requêtes d'agrégation (sum et count sont des Long en JPQL)
+     * @param id identifiant du département
+     * @param codeDepartement code du département
+     * @param nomDepartement nom du département
+     * @param nbHabitants somme des habitants des villes du département
+     * @param nbVilles nombre de villes du département
+     */
+    public DepartementDto(long id, String codeDepartement, String nomDepartement, long nbHabitants, long nbVilles) {
+        this(id, codeDepartement, nomDepartement, (int) nbHabitants);
+        this.nbVilles = (int) nbVilles;
+    }
+
     /**
      * Getter
      * @return id
@@ -107,4 +122,20 @@ public class DepartementDto implements Serializable {
     public void setNbHabitants(int nbHabitants) {
         this.nbHabitants = nbHabitants;
     }
+
+    /**
+     * Getter
+     * @return nbVilles
+     */
+    public int getNbVilles() {
+        return nbVilles;
+    }
+
+    /**
+     * Setter
+     * @param nbVilles nombre de villes
+     */
+    public void setNbVilles(int nbVilles) {
+        this.nbVilles = nbVilles;
+    }
 }
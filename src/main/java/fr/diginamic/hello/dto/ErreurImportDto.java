@@ -0,0 +1,61 @@
+package fr.diginamic.hello.dto;
+
+import java.io.Serializable;
+
+/**
+ * Classe DTO représentant une ligne rejetée lors d'un import en masse.
+ */
+public class ErreurImportDto implements Serializable {
+    /** Numéro de la ligne rejetée (à partir de 1) */
+    private int ligne;
+    /** Raison du rejet */
+    private String message;
+
+    /**
+     * Constructeur vide
+     */
+    public ErreurImportDto() {
+    }
+
+    /**
+     * Constructeur
+     * @param ligne numéro de la ligne rejetée
+     * @param message raison du rejet
+     */
+    public ErreurImportDto(int ligne, String message) {
+        this.ligne = ligne;
+        this.message = message;
+    }
+
+    /**
+     * Getter
+     * @return ligne
+     */
+    public int getLigne() {
+        return ligne;
+    }
+
+    /**
+     * Setter
+     * @param ligne numéro de la ligne rejetée
+     */
+    public void setLigne(int ligne) {
+        this.ligne = ligne;
+    }
+
+    /**
+     * Getter
+     * @return message
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * Setter
+     * @param message raison du rejet
+     */
+    public void setMessage(String message) {
+        this.message = message;
+    }
+}
@@ -0,0 +1,63 @@
+package fr.diginamic.hello.dto;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Classe DTO représentant une page d'une pagination par curseur.
+ * @param <T> type des éléments de la page
+ */
+public class PageCurseurDto<T> implements Serializable {
+    /** Éléments de la page */
+    private List<T> elements;
+    /** Curseur à transmettre pour obtenir la page suivante, null s'il s'agit de la dernière page */
+    private String curseurSuivant;
+
+    /**
+     * Constructeur vide
+     */
+    public PageCurseurDto() {
+    }
+
+    /**
+     * Constructeur
+     * @param elements éléments de la page
+     * @param curseurSuivant curseur de la page suivante
+     */
+    public PageCurseurDto(List<T> elements, String curseurSuivant) {
+        this.elements = elements;
+        this.curseurSuivant = curseurSuivant;
+    }
+
+    /**
+     * Getter
+     * @return elements
+     */
+    public List<T> getElements() {
+        return elements;
+    }
+
+    /**
+     * Setter
+     * @param elements éléments de la page
+     */
+    public void setElements(List<T> elements) {
+        this.elements = elements;
+    }
+
+    /**
+     * Getter
+     * @return curseurSuivant
+     */
+    public String getCurseurSuivant() {
+        return curseurSuivant;
+    }
+
+    /**
+     * Setter
+     * @param curseurSuivant curseur de la page suivante
+     */
+    public void setCurseurSuivant(String curseurSuivant) {
+        this.curseurSuivant = curseurSuivant;
+    }
+}
@@ -0,0 +1,83 @@
+package fr.diginamic.hello.dto;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Classe DTO représentant le bilan d'un import en masse.
+ */
+public class RapportImportDto implements Serializable {
+    /** Nombre de lignes reçues */
+    private int nbLignes;
+    /** Nombre de lignes importées */
+    private int nbImportees;
+    /** Lignes rejetées et raison du rejet */
+    private List<ErreurImportDto> erreurs = new ArrayList<>();
+
+    /**
+     * Constructeur vide
+     */
+    public RapportImportDto() {
+    }
+
+    /**
+     * Constructeur
+     * @param nbLignes nombre de lignes reçues
+     * @param nbImportees nombre de lignes importées
+     * @param erreurs lignes rejetées
+     */
+    public RapportImportDto(int nbLignes, int nbImportees, List<ErreurImportDto> erreurs) {
+        this.nbLignes = nbLignes;
+        this.nbImportees = nbImportees;
+        this.erreurs = erreurs;
+    }
+
+    /**
+     * Getter
+     * @return nbLignes
+     */
+    public int getNbLignes() {
+        return nbLignes;
+    }
+
+    /**
+     * Setter
+     * @param nbLignes nombre de lignes reçues
+     */
+    public void setNbLignes(int nbLignes) {
+        this.nbLignes = nbLignes;
+    }
+
+    /**
+     * Getter
+     * @return nbImportees
+     */
+    public int getNbImportees() {
+        return nbImportees;
+    }
+
+    /**
+     * Setter
+     * @param nbImportees nombre de lignes importées
+     */
+    public void setNbImportees(int nbImportees) {
+        this.nbImportees = nbImportees;
+    }
+
+    /**
+     * Getter
+     * @return erreurs
+     */
+    public List<ErreurImportDto> getErreurs() {
+        return erreurs;
+    }
+
+    /**
+     * Setter
+     * @param erreurs lignes rejetées
+     */
+    public void setErreurs(List<ErreurImportDto> erreurs) {
+        this.erreurs = erreurs;
+    }
+}
@@ -0,0 +1,101 @@
+package fr.diginamic.hello.dto;
+
+import java.io.Serializable;
+
+/**
+ * Classe DTO représentant les statistiques d'utilisation d'un cache.
+ */
+public class StatistiquesCacheDto implements Serializable {
+    /** Nom du cache */
+    private String cache;
+    /** Nombre de lectures trouvées dans le cache */
+    private long nbSucces;
+    /** Nombre de lectures absentes du cache */
+    private long nbEchecs;
+    /** Nombre d'ajouts dans le cache */
+    private long nbAjouts;
+
+    /**
+     * Constructeur vide
+     */
+    public StatistiquesCacheDto() {
+    }
+
+    /**
+     * Constructeur
+     * @param cache nom du cache
+     * @param nbSucces nombre de lectures trouvées dans le cache
+     * @param nbEchecs nombre de lectures absentes du cache
+     * @param nbAjouts nombre d'ajouts dans le cache
+     */
+    public StatistiquesCacheDto(String cache, long nbSucces, long nbEchecs, long nbAjouts) {
+        this.cache = cache;
+        this.nbSucces = nbSucces;
+        this.nbEchecs = nbEchecs;
+        this.nbAjouts = nbAjouts;
+    }
+
+    /**
+     * Getter
+     * @return cache
+     */
+    public String getCache() {
+        return cache;
+    }
+
+    /**
+     * Setter
+     * @param cache nom du cache
+     */
+    public void setCache(String cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Getter
+     * @return nbSucces
+     */
+    public long getNbSucces() {
+        return nbSucces;
+    }
+
+    /**
+     * Setter
+     * @param nbSucces nombre de lectures trouvées dans le cache
+     */
+    public void setNbSucces(long nbSucces) {
+        this.nbSucces = nbSucces;
+    }
+
+    /**
+     * Getter
+     * @return nbEchecs
+     */
+    public long getNbEchecs() {
+        return nbEchecs;
+    }
+
+    /**
+     * Setter
+     * @param nbEchecs nombre de lectures absentes du cache
+     */
+    public void setNbEchecs(long nbEchecs) {
+        this.nbEchecs = nbEchecs;
+    }
+
+    /**
+     * Getter
+     * @return nbAjouts
+     */
+    public long getNbAjouts() {
+        return nbAjouts;
+    }
+
+    /**
+     * Setter
+     * @param nbAjouts nombre d'ajouts dans le cache
+     */
+    public void setNbAjouts(long nbAjouts) {
+        this.nbAjouts = nbAjouts;
+    }
+}
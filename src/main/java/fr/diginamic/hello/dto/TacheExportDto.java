@@ -0,0 +1,196 @@
+package fr.diginamic.hello.dto;
+
+import java.io.Serializable;
+import java.time.Instant;
+
+/**
+ * Classe DTO représentant l'état d'une tâche d'export asynchrone.
+ */
+public class TacheExportDto implements Serializable {
+    /** Identifiant de la tâche, à interroger sur /api/exports/{id} */
+    private String id;
+    /** Export demandé : villes-csv, departements-csv ou villes-pdf */
+    private String type;
+    /** État de la tâche */
+    private Statut statut;
+    /** Nombre de lignes déjà écrites */
+    private long nbLignesEcrites;
+    /** Nombre de lignes à écrire, 0 tant qu'il n'est pas connu */
+    private long nbLignesTotal;
+    /** Date de soumission */
+    private Instant dateCreation;
+    /** Date de fin, null tant que la tâche n'est pas finie */
+    private Instant dateFin;
+    /** Message d'échec, null sinon */
+    private String message;
+
+    /**
+     * Constructeur vide
+     */
+    public TacheExportDto() {
+    }
+
+    /**
+     * Constructeur
+     * @param id identifiant de la tâche
+     * @param type export demandé : villes-csv, departements-csv ou villes-pdf
+     * @param statut état de la tâche
+     * @param nbLignesEcrites nombre de lignes déjà écrites
+     * @param nbLignesTotal nombre de lignes à écrire, 0 tant qu'il n'est pas connu
+     * @param dateCreation date de soumission
+     * @param dateFin date de fin, null tant que la tâche n'est pas finie
+     * @param message message d'échec, null sinon
+     */
+    public TacheExportDto(String id, String type, Statut statut, long nbLignesEcrites, long nbLignesTotal, Instant dateCreation, Instant dateFin, String message) {
+        this.id = id;
+        this.type = type;
+        this.statut = statut;
+        this.nbLignesEcrites = nbLignesEcrites;
+        this.nbLignesTotal = nbLignesTotal;
+        this.dateCreation = dateCreation;
+        this.dateFin = dateFin;
+        this.message = message;
+    }
+
+    /**
+     * Getter
+     * @return id
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Setter
+     * @param id identifiant de la tâche
+     */
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    /**
+     * Getter
+     * @return type
+     */
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * Setter
+     * @param type export demandé : villes-csv, departements-csv ou villes-pdf
+     */
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    /**
+     * Getter
+     * @return statut
+     */
+    public Statut getStatut() {
+        return statut;
+    }
+
+    /**
+     * Setter
+     * @param statut état de la tâche
+     */
+    public void setStatut(Statut statut) {
+        this.statut = statut;
+    }
+
+    /**
+     * Getter
+     * @return nbLignesEcrites
+     */
+    public long getNbLignesEcrites() {
+        return nbLignesEcrites;
+    }
+
+    /**
+     * Setter
+     * @param nbLignesEcrites nombre de lignes déjà écrites
+     */
+    public void setNbLignesEcrites(long nbLignesEcrites) {
+        this.nbLignesEcrites = nbLignesEcrites;
+    }
+
+    /**
+     * Getter
+     * @return nbLignesTotal
+     */
+    public long getNbLignesTotal() {
+        return nbLignesTotal;
+    }
+
+    /**
+     * Setter
+     * @param nbLignesTotal nombre de lignes à écrire, 0 tant qu'il n'est pas connu
+     */
+    public void setNbLignesTotal(long nbLignesTotal) {
+        this.nbLignesTotal = nbLignesTotal;
+    }
+
+    /**
+     * Getter
+     * @return dateCreation
+     */
+    public Instant getDateCreation() {
+        return dateCreation;
+    }
+
+    /**
+     * Setter
+     * @param dateCreation date de soumission
+     */
+    public void setDateCreation(Instant dateCreation) {
+        this.dateCreation = dateCreation;
+    }
+
+    /**
+     * Getter
+     * @return dateFin
+     */
+    public Instant getDateFin() {
+        return dateFin;
+    }
+
+    /**
+     * Setter
+     * @param dateFin date de fin, null tant que la tâche n'est pas finie
+     */
+    public void setDateFin(Instant dateFin) {
+        this.dateFin = dateFin;
+    }
+
+    /**
+     * Getter
+     * @return message
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * Setter
+     * @param message message d'échec, null sinon
+     */
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    /**
+     * États d'une tâche d'export
+     */
+    public enum Statut {
+        /** Dans la file, en attente d'un exécuteur */
+        EN_ATTENTE,
+        /** En cours d'écriture */
+        EN_COURS,
+        /** Fichier prêt à être téléchargé */
+        TERMINEE,
+        /** Arrêtée sur une erreur, voir le message */
+        ECHEC
+    }
+}
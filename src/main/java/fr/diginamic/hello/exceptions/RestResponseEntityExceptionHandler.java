@@ -1,5 +1,6 @@
 package fr.diginamic.hello.exceptions;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -47,4 +48,16 @@ public class RestResponseEntityExceptionHandler extends ResponseEntityExceptionH
         // Erreur 400
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(String.format(ex.getMessage()));
     }
+
+    /**
+     * Méthode de gestion de l'exception ServiceSature, en cas
+     * de file de traitements pleine.
+     * @param ex objet Exception customisée
+     * @return un statut HTTP associé au message d'erreur
+     */
+    @ExceptionHandler(value = {ServiceSatureException.class})
+    public ResponseEntity<String> handleServiceSatureException(ServiceSatureException ex) {
+        // Erreur 503, le client peut réessayer après le délai indiqué en secondes
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "30").body(String.format(ex.getMessage()));
+    }
 }
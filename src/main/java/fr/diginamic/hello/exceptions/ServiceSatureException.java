@@ -0,0 +1,14 @@
+package fr.diginamic.hello.exceptions;
+
+/**
+ * Classe Exception customisée en cas de file de traitements pleine : la requête peut être renvoyée plus tard
+ */
+public class ServiceSatureException extends Exception {
+    /**
+     * Constructeur
+     * @param message message d'erreur
+     */
+    public ServiceSatureException(String message) {
+        super(message);
+    }
+}
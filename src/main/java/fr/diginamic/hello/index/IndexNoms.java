@@ -0,0 +1,223 @@
+package fr.diginamic.hello.index;
+
+import fr.diginamic.hello.dto.VilleDto;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.regex.Pattern;
+
+/**
+ * Index en mémoire des noms de villes pour l'autocomplétion.
+ * Les noms sont normalisés (sans accents, en minuscules, tirets et apostrophes remplacés par des espaces)
+ * puis triés : les villes d'un préfixe forment un intervalle contigu, trouvé par recherche dichotomique.
+ * L'index est construit au démarrage et une écriture ne met à jour que l'entrée de la ville concernée.
+ */
+@Component
+public class IndexNoms extends IndexVilles<IndexNoms.Instantane> {
+    /** Marques diacritiques laissées par la décomposition NFD */
+    private static final Pattern DIACRITIQUES = Pattern.compile("\\p{M}+");
+
+    /** Séparateurs traités comme des espaces */
+    private static final Pattern SEPARATEURS = Pattern.compile("[-'’\\s]+");
+
+    /**
+     * Recherche les k villes les plus peuplées dont le nom commence par le préfixe,
+     * sans tenir compte de la casse ni des accents.
+     * @param prefixe début du nom
+     * @param k nombre maximum de villes retournées
+     * @return liste de villes triées par nombre d'habitants décroissant
+     */
+    public List<VilleDto> chercher(String prefixe, int k) {
+        Instantane instantane = getInstantane();
+        String cle = normaliser(prefixe);
+        int[] positions = instantane.chercher(cle, k);
+
+        long[] ids = new long[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            ids[i] = instantane.ids[positions[i]];
+        }
+
+        return villes(ids, 0, ids.length, ville -> normaliser(ville.getNom()).startsWith(cle));
+    }
+
+    /**
+     * Normalise un nom pour la comparaison : "Saint-Étienne" devient "saint etienne".
+     * @param nom nom à normaliser
+     * @return clé normalisée
+     */
+    static String normaliser(String nom) {
+        String sansAccents = DIACRITIQUES.matcher(Normalizer.normalize(nom, Normalizer.Form.NFD)).replaceAll("");
+        return SEPARATEURS.matcher(sansAccents).replaceAll(" ").toLowerCase(Locale.ROOT);
+    }
+
+    @Override
+    protected Instantane construire(List<VilleDto> villes) {
+        return Instantane.construire(villes);
+    }
+
+    @Override
+    protected Instantane ajouter(Instantane instantane, VilleDto ville) {
+        return instantane.ajouter(normaliser(ville.getNom()), ville.getId(), ville.getNbHabitants());
+    }
+
+    @Override
+    protected Instantane retirer(Instantane instantane, VilleDto ville) {
+        return instantane.retirer(normaliser(ville.getNom()), ville.getId());
+    }
+
+    /**
+     * Instantané immuable de l'index : clés normalisées triées, puis identifiants et populations
+     * dans des tableaux parallèles. Les homonymes sont départagés par l'id, ce qui donne à chaque ville
+     * une position unique : une écriture ne normalise que le nom concerné, trouve sa position
+     * par recherche dichotomique et recopie les tableaux par System.arraycopy.
+     */
+    static final class Instantane {
+        /** Noms normalisés, triés */
+        private final String[] cles;
+        /** Identifiants des villes, dans le même ordre que cles */
+        private final long[] ids;
+        /** Nombres d'habitants, dans le même ordre que cles */
+        private final int[] populations;
+
+        private Instantane(String[] cles, long[] ids, int[] populations) {
+            this.cles = cles;
+            this.ids = ids;
+            this.populations = populations;
+        }
+
+        /**
+         * Construit un instantané à partir d'une liste de villes.
+         * @param villes villes à indexer
+         * @return instantané
+         */
+        private static Instantane construire(List<VilleDto> villes) {
+            int n = villes.size();
+            Integer[] ordre = new Integer[n];
+            String[] clesBrutes = new String[n];
+            for (int i = 0; i < n; i++) {
+                ordre[i] = i;
+                clesBrutes[i] = normaliser(villes.get(i).getNom());
+            }
+            Arrays.sort(ordre, Comparator.<Integer, String>comparing(i -> clesBrutes[i]).thenComparing(i -> villes.get(i).getId()));
+
+            String[] cles = new String[n];
+            long[] ids = new long[n];
+            int[] populations = new int[n];
+            for (int i = 0; i < n; i++) {
+                VilleDto ville = villes.get(ordre[i]);
+                cles[i] = clesBrutes[ordre[i]];
+                ids[i] = ville.getId();
+                populations[i] = ville.getNbHabitants();
+            }
+
+            return new Instantane(cles, ids, populations);
+        }
+
+        /**
+         * Retourne une copie de l'instantané contenant en plus une ville.
+         * @param cle nom normalisé de la ville
+         * @param id identifiant de la ville
+         * @param population nombre d'habitants de la ville
+         * @return nouvel instantané
+         */
+        private Instantane ajouter(String cle, long id, int population) {
+            int position = position(cle, id);
+            int n = cles.length;
+
+            String[] nouvellesCles = new String[n + 1];
+            long[] nouveauxIds = new long[n + 1];
+            int[] nouvellesPopulations = new int[n + 1];
+            System.arraycopy(cles, 0, nouvellesCles, 0, position);
+            System.arraycopy(ids, 0, nouveauxIds, 0, position);
+            System.arraycopy(populations, 0, nouvellesPopulations, 0, position);
+            nouvellesCles[position] = cle;
+            nouveauxIds[position] = id;
+            nouvellesPopulations[position] = population;
+            System.arraycopy(cles, position, nouvellesCles, position + 1, n - position);
+            System.arraycopy(ids, position, nouveauxIds, position + 1, n - position);
+            System.arraycopy(populations, position, nouvellesPopulations, position + 1, n - position);
+
+            return new Instantane(nouvellesCles, nouveauxIds, nouvellesPopulations);
+        }
+
+        /**
+         * Retourne une copie de l'instantané sans une ville, ou l'instantané lui-même s'il ne la contient pas.
+         * @param cle nom normalisé indexé de la ville
+         * @param id identifiant de la ville
+         * @return nouvel instantané
+         */
+        private Instantane retirer(String cle, long id) {
+            int position = position(cle, id);
+            int n = cles.length;
+
+            if (position == n || ids[position] != id || !cles[position].equals(cle)) {
+                return this;
+            }
+
+            String[] nouvellesCles = new String[n - 1];
+            long[] nouveauxIds = new long[n - 1];
+            int[] nouvellesPopulations = new int[n - 1];
+            System.arraycopy(cles, 0, nouvellesCles, 0, position);
+            System.arraycopy(ids, 0, nouveauxIds, 0, position);
+            System.arraycopy(populations, 0, nouvellesPopulations, 0, position);
+            System.arraycopy(cles, position + 1, nouvellesCles, position, n - position - 1);
+            System.arraycopy(ids, position + 1, nouveauxIds, position, n - position - 1);
+            System.arraycopy(populations, position + 1, nouvellesPopulations, position, n - position - 1);
+
+            return new Instantane(nouvellesCles, nouveauxIds, nouvellesPopulations);
+        }
+
+        /**
+         * Parcourt l'intervalle des clés commençant par le préfixe en ne gardant que les k plus peuplées.
+         * @param prefixe préfixe normalisé
+         * @param k nombre maximum de villes
+         * @return positions des villes retenues, par nombre d'habitants décroissant
+         */
+        private int[] chercher(String prefixe, int k) {
+            Comparator<Integer> parPopulation = Comparator.comparingInt(i -> populations[i]);
+            PriorityQueue<Integer> meilleures = new PriorityQueue<>(k, parPopulation);
+
+            for (int i = position(prefixe, Long.MIN_VALUE); i < cles.length && cles[i].startsWith(prefixe); i++) {
+                if (meilleures.size() < k) {
+                    meilleures.add(i);
+                }
+                else if (populations[i] > populations[meilleures.peek()]) {
+                    meilleures.poll();
+                    meilleures.add(i);
+                }
+            }
+
+            return meilleures.stream().sorted(parPopulation.reversed()).mapToInt(Integer::intValue).toArray();
+        }
+
+        /**
+         * Recherche dichotomique de la position du couple (clé, id) : celle qu'il occupe
+         * s'il est présent, celle où l'insérer sinon.
+         * @param cle clé recherchée
+         * @param id identifiant
+         * @return index, cles.length si toutes les clés sont inférieures
+         */
+        private int position(String cle, long id) {
+            int bas = 0;
+            int haut = cles.length;
+
+            while (bas < haut) {
+                int milieu = (bas + haut) >>> 1;
+                int comparaison = cles[milieu].compareTo(cle);
+                if (comparaison < 0 || (comparaison == 0 && ids[milieu] < id)) {
+                    bas = milieu + 1;
+                }
+                else {
+                    haut = milieu;
+                }
+            }
+
+            return bas;
+        }
+    }
+}
@@ -0,0 +1,316 @@
+package fr.diginamic.hello.index;
+
+import fr.diginamic.hello.dto.VilleDto;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Index en mémoire des villes triées par nombre d'habitants.
+ * Répond aux recherches par tranche de population par recherche dichotomique, sans requête en base.
+ * Les résultats sont triés par id, comme ceux des requêtes JPA qu'ils remplacent.
+ */
+@Component
+public class IndexPopulation extends IndexVilles<IndexPopulation.Instantane> {
+    /** Active l'index ; à false, les recherches passent par JPA */
+    @Value("${recensement.index-population.actif:false}")
+    private boolean actif;
+
+    /**
+     * Indique si l'index doit être construit et utilisé pour les recherches par population.
+     * @return boolean
+     */
+    @Override
+    public boolean isActif() {
+        return actif;
+    }
+
+    /**
+     * Recherche les villes dont le nombre d'habitants est strictement supérieur à min.
+     * @param min nombre minimum d'habitants (exclu)
+     * @return liste de villes triées par id
+     */
+    public List<VilleDto> chercherPlusDe(int min) {
+        return villes(getInstantane().toutes.chercherPlusDe(min), ville -> ville.getNbHabitants() > min);
+    }
+
+    /**
+     * Recherche les villes dont le nombre d'habitants est compris entre min et max (inclus).
+     * @param min nombre minimum d'habitants
+     * @param max nombre maximum d'habitants
+     * @return liste de villes triées par id
+     */
+    public List<VilleDto> chercherEntre(int min, int max) {
+        return villes(getInstantane().toutes.chercherEntre(min, max), ville -> estEntre(ville, min, max));
+    }
+
+    /**
+     * Recherche les villes d'un département dont le nombre d'habitants est strictement supérieur à min.
+     * @param codeDep code du département
+     * @param min nombre minimum d'habitants (exclu)
+     * @return liste de villes triées par id
+     */
+    public List<VilleDto> chercherPlusDe(String codeDep, int min) {
+        Tranche tranche = getInstantane().parDepartement.get(codeDep);
+        return tranche == null ? List.of() : villes(tranche.chercherPlusDe(min),
+                ville -> ville.getNbHabitants() > min && codeDep.equals(ville.getCodeDepartement()));
+    }
+
+    /**
+     * Recherche les villes d'un département dont le nombre d'habitants est compris entre min et max (inclus).
+     * @param codeDep code du département
+     * @param min nombre minimum d'habitants
+     * @param max nombre maximum d'habitants
+     * @return liste de villes triées par id
+     */
+    public List<VilleDto> chercherEntre(String codeDep, int min, int max) {
+        Tranche tranche = getInstantane().parDepartement.get(codeDep);
+        return tranche == null ? List.of() : villes(tranche.chercherEntre(min, max),
+                ville -> estEntre(ville, min, max) && codeDep.equals(ville.getCodeDepartement()));
+    }
+
+    /**
+     * Retourne les villes d'identifiants donnés qui répondent encore à la recherche.
+     * @param ids identifiants
+     * @param filtre critère de la recherche
+     * @return liste de villes
+     */
+    private List<VilleDto> villes(long[] ids, Predicate<VilleDto> filtre) {
+        return villes(ids, 0, ids.length, filtre);
+    }
+
+    /**
+     * Indique si le nombre d'habitants d'une ville est compris entre min et max (inclus).
+     * @param ville ville
+     * @param min nombre minimum d'habitants
+     * @param max nombre maximum d'habitants
+     * @return boolean
+     */
+    private static boolean estEntre(VilleDto ville, int min, int max) {
+        return ville.getNbHabitants() >= min && ville.getNbHabitants() <= max;
+    }
+
+    @Override
+    protected Instantane construire(List<VilleDto> villes) {
+        Map<String, List<VilleDto>> villesParDepartement = new HashMap<>();
+        for (VilleDto ville : villes) {
+            villesParDepartement.computeIfAbsent(ville.getCodeDepartement(), code -> new ArrayList<>()).add(ville);
+        }
+
+        Map<String, Tranche> parDepartement = new HashMap<>();
+        villesParDepartement.forEach((code, villesDept) -> parDepartement.put(code, Tranche.construire(villesDept)));
+
+        return new Instantane(Tranche.construire(villes), parDepartement);
+    }
+
+    @Override
+    protected Instantane ajouter(Instantane instantane, VilleDto ville) {
+        String code = ville.getCodeDepartement();
+        Tranche tranche = instantane.parDepartement.getOrDefault(code, Tranche.VIDE);
+
+        Map<String, Tranche> parDepartement = new HashMap<>(instantane.parDepartement);
+        parDepartement.put(code, tranche.ajouter(ville.getNbHabitants(), ville.getId()));
+
+        return new Instantane(instantane.toutes.ajouter(ville.getNbHabitants(), ville.getId()), parDepartement);
+    }
+
+    @Override
+    protected Instantane retirer(Instantane instantane, VilleDto ville) {
+        String code = ville.getCodeDepartement();
+        Map<String, Tranche> parDepartement = new HashMap<>(instantane.parDepartement);
+        Tranche tranche = parDepartement.get(code);
+
+        if (tranche != null) {
+            tranche = tranche.retirer(ville.getNbHabitants(), ville.getId());
+            if (tranche.ids.length == 0) {
+                parDepartement.remove(code);
+            }
+            else {
+                parDepartement.put(code, tranche);
+            }
+        }
+
+        return new Instantane(instantane.toutes.retirer(ville.getNbHabitants(), ville.getId()), parDepartement);
+    }
+
+    /**
+     * Instantané immuable de l'index : toutes les villes et une tranche par département.
+     */
+    static final class Instantane {
+        /** Toutes les villes */
+        private final Tranche toutes;
+        /** Villes par code département */
+        private final Map<String, Tranche> parDepartement;
+
+        private Instantane(Tranche toutes, Map<String, Tranche> parDepartement) {
+            this.toutes = toutes;
+            this.parDepartement = parDepartement;
+        }
+    }
+
+    /**
+     * Ensemble de villes triées par population puis par id : tableau primitif des populations
+     * et tableau parallèle des identifiants. Une écriture ne touche qu'une entrée :
+     * sa position est trouvée par recherche dichotomique et les tableaux sont recopiés par System.arraycopy.
+     */
+    private static final class Tranche {
+        /** Tranche sans ville */
+        private static final Tranche VIDE = new Tranche(new int[0], new long[0]);
+
+        /** Populations triées par ordre croissant */
+        private final int[] populations;
+        /** Identifiants des villes, dans le même ordre que populations */
+        private final long[] ids;
+
+        private Tranche(int[] populations, long[] ids) {
+            this.populations = populations;
+            this.ids = ids;
+        }
+
+        /**
+         * Construit une tranche triée à partir d'une liste de villes.
+         * @param villes villes
+         * @return tranche
+         */
+        private static Tranche construire(List<VilleDto> villes) {
+            VilleDto[] triees = villes.toArray(new VilleDto[0]);
+            Arrays.sort(triees, Comparator.comparingInt(VilleDto::getNbHabitants).thenComparing(VilleDto::getId));
+
+            int[] populations = new int[triees.length];
+            long[] ids = new long[triees.length];
+            for (int i = 0; i < triees.length; i++) {
+                populations[i] = triees[i].getNbHabitants();
+                ids[i] = triees[i].getId();
+            }
+
+            return new Tranche(populations, ids);
+        }
+
+        /**
+         * Retourne une copie de la tranche contenant en plus une ville.
+         * @param population nombre d'habitants de la ville
+         * @param id identifiant de la ville
+         * @return nouvelle tranche
+         */
+        private Tranche ajouter(int population, long id) {
+            int position = position(population, id);
+            int n = ids.length;
+
+            int[] nouvellesPopulations = new int[n + 1];
+            long[] nouveauxIds = new long[n + 1];
+            System.arraycopy(populations, 0, nouvellesPopulations, 0, position);
+            System.arraycopy(ids, 0, nouveauxIds, 0, position);
+            nouvellesPopulations[position] = population;
+            nouveauxIds[position] = id;
+            System.arraycopy(populations, position, nouvellesPopulations, position + 1, n - position);
+            System.arraycopy(ids, position, nouveauxIds, position + 1, n - position);
+
+            return new Tranche(nouvellesPopulations, nouveauxIds);
+        }
+
+        /**
+         * Retourne une copie de la tranche sans une ville, ou la tranche elle-même si elle ne la contient pas.
+         * @param population nombre d'habitants indexé de la ville
+         * @param id identifiant de la ville
+         * @return nouvelle tranche
+         */
+        private Tranche retirer(int population, long id) {
+            int position = position(population, id);
+            int n = ids.length;
+
+            if (position == n || ids[position] != id || populations[position] != population) {
+                return this;
+            }
+
+            int[] nouvellesPopulations = new int[n - 1];
+            long[] nouveauxIds = new long[n - 1];
+            System.arraycopy(populations, 0, nouvellesPopulations, 0, position);
+            System.arraycopy(ids, 0, nouveauxIds, 0, position);
+            System.arraycopy(populations, position + 1, nouvellesPopulations, position, n - position - 1);
+            System.arraycopy(ids, position + 1, nouveauxIds, position, n - position - 1);
+
+            return new Tranche(nouvellesPopulations, nouveauxIds);
+        }
+
+        private long[] chercherPlusDe(int min) {
+            if (min == Integer.MAX_VALUE) {
+                return new long[0];
+            }
+            return extraire(premierIndexAuMoins(min + 1), populations.length);
+        }
+
+        private long[] chercherEntre(int min, int max) {
+            int fin = max == Integer.MAX_VALUE ? populations.length : premierIndexAuMoins(max + 1);
+            return extraire(premierIndexAuMoins(min), fin);
+        }
+
+        /**
+         * Recherche dichotomique du premier index dont la population est supérieure ou égale à la valeur.
+         * @param valeur population recherchée
+         * @return index, populations.length si aucun
+         */
+        private int premierIndexAuMoins(int valeur) {
+            int bas = 0;
+            int haut = populations.length;
+
+            while (bas < haut) {
+                int milieu = (bas + haut) >>> 1;
+                if (populations[milieu] < valeur) {
+                    bas = milieu + 1;
+                }
+                else {
+                    haut = milieu;
+                }
+            }
+
+            return bas;
+        }
+
+        /**
+         * Recherche dichotomique de la position du couple (population, id) : celle qu'il occupe
+         * s'il est présent, celle où l'insérer sinon.
+         * @param population nombre d'habitants
+         * @param id identifiant
+         * @return index
+         */
+        private int position(int population, long id) {
+            int bas = 0;
+            int haut = populations.length;
+
+            while (bas < haut) {
+                int milieu = (bas + haut) >>> 1;
+                if (populations[milieu] < population || (populations[milieu] == population && ids[milieu] < id)) {
+                    bas = milieu + 1;
+                }
+                else {
+                    haut = milieu;
+                }
+            }
+
+            return bas;
+        }
+
+        /**
+         * Extrait les identifiants d'un intervalle d'index, triés comme le renverrait la base.
+         * @param debut index de début (inclus)
+         * @param fin index de fin (exclu)
+         * @return identifiants triés
+         */
+        private long[] extraire(int debut, int fin) {
+            if (debut >= fin) {
+                return new long[0];
+            }
+
+            long[] resultat = Arrays.copyOfRange(ids, debut, fin);
+            Arrays.sort(resultat);
+            return resultat;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package fr.diginamic.hello.index;
+
+import fr.diginamic.hello.dto.VilleDto;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Predicate;
+
+/**
+ * Base des index de villes en mémoire.
+ * L'index est construit et maintenu par la table des villes (TableVilles), qui lit la base une seule fois
+ * pour tous les index : chaque écriture produit un nouvel instantané immuable (copy-on-write),
+ * les lectures se font sans verrou.
+ * Les instantanés ne contiennent que des identifiants et des clés en tableaux primitifs ; les villes
+ * retournées sont lues dans la table, partagée par tous les index.
+ * @param <I> type de l'instantané
+ */
+public abstract class IndexVilles<I> {
+    /** Table des villes qui construit et maintient l'index */
+    @Autowired
+    private TableVilles table;
+
+    /** État courant, null tant que l'index n'a pas été construit ; écrit sous le verrou de la table */
+    private volatile Etat<I> etat;
+
+    /**
+     * Construit un instantané à partir d'une liste de villes.
+     * @param villes villes à indexer
+     * @return instantané
+     */
+    protected abstract I construire(List<VilleDto> villes);
+
+    /**
+     * Retourne un instantané contenant en plus la ville donnée.
+     * @param instantane instantané courant, non modifié
+     * @param ville ville ajoutée
+     * @return nouvel instantané
+     */
+    protected abstract I ajouter(I instantane, VilleDto ville);
+
+    /**
+     * Retourne un instantané sans la ville donnée.
+     * @param instantane instantané courant, non modifié
+     * @param ville ville retirée, dans sa version indexée
+     * @return nouvel instantané
+     */
+    protected abstract I retirer(I instantane, VilleDto ville);
+
+    /**
+     * Indique si l'index doit être construit au démarrage et utilisé.
+     * @return boolean
+     */
+    public boolean isActif() {
+        return true;
+    }
+
+    /**
+     * Inscrit l'index auprès de la table des villes.
+     */
+    @PostConstruct
+    void inscrire() {
+        table.inscrire(this);
+    }
+
+    /**
+     * Retourne l'instantané courant, en le construisant s'il ne l'a pas été au démarrage.
+     * @return instantané
+     */
+    protected I getInstantane() {
+        return getEtat().instantane;
+    }
+
+    /**
+     * Retourne les villes correspondant à des identifiants, dans le même ordre.
+     * La table est partagée entre les instantanés : une ville retirée entre la lecture de l'instantané
+     * et celle de la table est ignorée, et une ville modifiée entre-temps y a déjà sa nouvelle version.
+     * Le filtre, qui reprend le critère de la recherche, écarte les villes qui n'y répondent plus.
+     * @param ids identifiants
+     * @param debut index de début dans ids (inclus)
+     * @param fin index de fin dans ids (exclu)
+     * @param filtre critère de la recherche
+     * @return liste de villes
+     */
+    protected List<VilleDto> villes(long[] ids, int debut, int fin, Predicate<VilleDto> filtre) {
+        ConcurrentMap<Long, VilleDto> villes = getEtat().villes;
+        List<VilleDto> resultat = new ArrayList<>(fin - debut);
+
+        for (int i = debut; i < fin; i++) {
+            VilleDto ville = villes.get(ids[i]);
+            if (ville != null && filtre.test(ville)) {
+                resultat.add(ville);
+            }
+        }
+
+        return resultat;
+    }
+
+    /**
+     * Indique si l'index a été construit.
+     * @return boolean
+     */
+    boolean estConstruit() {
+        return etat != null;
+    }
+
+    /**
+     * Construit l'index et le publie. Appelée par la table, sous son verrou.
+     * @param villes villes à indexer
+     * @param parId table des villes par identifiant
+     */
+    void charger(List<VilleDto> villes, ConcurrentMap<Long, VilleDto> parId) {
+        etat = new Etat<>(construire(villes), parId);
+    }
+
+    /**
+     * Applique une écriture à l'index construit et publie le nouvel instantané.
+     * Appelée par la table, sous son verrou, après l'ajout de la nouvelle version à la table.
+     * @param ancienne version indexée de la ville, null si elle n'était pas indexée
+     * @param ajoutee ville à ajouter, null si aucune
+     */
+    void modifier(VilleDto ancienne, VilleDto ajoutee) {
+        Etat<I> courant = etat;
+        I instantane = courant.instantane;
+
+        if (ancienne != null) {
+            instantane = retirer(instantane, ancienne);
+        }
+        if (ajoutee != null) {
+            instantane = ajouter(instantane, ajoutee);
+        }
+
+        etat = new Etat<>(instantane, courant.villes);
+    }
+
+    private Etat<I> getEtat() {
+        Etat<I> courant = etat;
+
+        if (courant == null) {
+            table.construire(this);
+            courant = etat;
+        }
+
+        return courant;
+    }
+
+    /**
+     * État publié de l'index : instantané et table des villes par identifiant.
+     * @param instantane instantané immuable
+     * @param villes villes indexées par identifiant, partagées avec les autres index
+     * @param <I> type de l'instantané
+     */
+    private record Etat<I>(I instantane, ConcurrentMap<Long, VilleDto> villes) {
+    }
+}
@@ -0,0 +1,191 @@
+package fr.diginamic.hello.index;
+
+import fr.diginamic.hello.dto.VilleDto;
+import fr.diginamic.hello.mappers.VilleMapper;
+import fr.diginamic.hello.models.Ville;
+import fr.diginamic.hello.repositories.VilleRepository;
+import fr.diginamic.hello.utils.Transactions;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Table des villes en mémoire, partagée par les index de villes.
+ * Les DTO ne sont stockés qu'une fois, indexés par identifiant : les index n'en gardent que les identifiants
+ * et leurs clés de tri. Une reconstruction lit toutes les villes en une seule requête puis reconstruit
+ * chaque index à partir de cette lecture ; une écriture ville par ville est appliquée à tous les index.
+ * Les écritures sont sérialisées par un ReentrantLock plutôt que synchronized : la reconstruction lit la base,
+ * et un thread virtuel bloqué dans un bloc synchronized immobiliserait son thread porteur (pinning).
+ */
+@Component
+public class TableVilles {
+    /** Repository utilisé pour lire les villes */
+    @Autowired
+    private VilleRepository villeRepo;
+
+    /** Index alimentés par la table, inscrits à leur création */
+    private final List<IndexVilles<?>> index = new CopyOnWriteArrayList<>();
+
+    /** Villes par identifiant, null tant que la base n'a pas été lue ; remplacée à chaque reconstruction */
+    private ConcurrentMap<Long, VilleDto> villes;
+
+    /** Verrou des écritures et des constructions d'index */
+    private final ReentrantLock verrou = new ReentrantLock();
+
+    /**
+     * Inscrit un index, qui sera construit et maintenu avec la table.
+     * @param indexVilles index à inscrire
+     */
+    void inscrire(IndexVilles<?> indexVilles) {
+        index.add(indexVilles);
+    }
+
+    /**
+     * Construit les index actifs au démarrage, pour que la première requête ne paie pas la lecture de toutes les villes.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void charger() {
+        verrou.lock();
+        try {
+            if (index.stream().anyMatch(IndexVilles::isActif)) {
+                reconstruire();
+            }
+        }
+        finally {
+            verrou.unlock();
+        }
+    }
+
+    /**
+     * Ajoute une ville aux index, après validation de la transaction en cours s'il y en a une.
+     * L'ajout remplace une éventuelle entrée de même identifiant : une reconstruction concurrente
+     * peut avoir déjà lu la ville en base.
+     * @param ville ville persistée
+     */
+    public void ajouter(Ville ville) {
+        VilleDto dto = VilleMapper.toDto(ville);
+        Transactions.apresCommit(() -> modifier(dto.getId(), dto));
+    }
+
+    /**
+     * Remplace une ville des index par sa nouvelle version.
+     * @param ville ville modifiée
+     */
+    public void remplacer(Ville ville) {
+        VilleDto dto = VilleMapper.toDto(ville);
+        Transactions.apresCommit(() -> modifier(dto.getId(), dto));
+    }
+
+    /**
+     * Retire une ville des index.
+     * @param id identifiant de la ville supprimée
+     */
+    public void retirer(long id) {
+        Transactions.apresCommit(() -> modifier(id, null));
+    }
+
+    /**
+     * Relit les villes en base et reconstruit les index, après validation de la transaction en cours.
+     * À utiliser après une écriture qui ne passe pas ville par ville (département modifié, suppression en masse...).
+     * La reconstruction est faite par le thread de l'écriture : les lectures continuent sur les instantanés précédents.
+     */
+    public void invalider() {
+        Transactions.apresCommit(() -> {
+            verrou.lock();
+            try {
+                if (villes != null || index.stream().anyMatch(IndexVilles::isActif)) {
+                    reconstruire();
+                }
+            }
+            finally {
+                verrou.unlock();
+            }
+        });
+    }
+
+    /**
+     * Construit un index qui ne l'a pas été au démarrage, à partir de la table, lue en base si besoin.
+     * @param indexVilles index à construire
+     */
+    void construire(IndexVilles<?> indexVilles) {
+        verrou.lock();
+        try {
+            if (indexVilles.estConstruit()) {
+                return;
+            }
+            if (villes == null) {
+                reconstruire();
+            }
+            if (!indexVilles.estConstruit()) {
+                indexVilles.charger(new ArrayList<>(villes.values()), villes);
+            }
+        }
+        finally {
+            verrou.unlock();
+        }
+    }
+
+    /**
+     * Lit toutes les villes en base, puis reconstruit les index actifs ou déjà construits.
+     * Appelée sous le verrou.
+     */
+    private void reconstruire() {
+        List<VilleDto> lues = villeRepo.findAllDtos();
+
+        ConcurrentMap<Long, VilleDto> parId = new ConcurrentHashMap<>(lues.size() * 4 / 3 + 1);
+        for (VilleDto ville : lues) {
+            parId.put(ville.getId(), ville);
+        }
+
+        villes = parId;
+        for (IndexVilles<?> indexVilles : index) {
+            if (indexVilles.estConstruit() || indexVilles.isActif()) {
+                indexVilles.charger(lues, parId);
+            }
+        }
+    }
+
+    /**
+     * Applique une écriture à la table puis aux index construits.
+     * La table est complétée avant la publication des instantanés et n'est purgée qu'après,
+     * pour qu'un identifiant lu dans un instantané y soit toujours présent ; une ville remplacée
+     * l'est aussi pour les lecteurs des instantanés précédents, que le filtre de leur recherche protège.
+     * Sans table lue, il n'y a rien à maintenir : la base fera foi à la construction.
+     * @param idRetire identifiant de la ville à retirer, null si aucune
+     * @param ajoutee ville à ajouter, null si aucune
+     */
+    private void modifier(Long idRetire, VilleDto ajoutee) {
+        verrou.lock();
+        try {
+            if (villes == null) {
+                return;
+            }
+
+            VilleDto ancienne = idRetire == null ? null : villes.get(idRetire);
+            if (ajoutee != null) {
+                villes.put(ajoutee.getId(), ajoutee);
+            }
+
+            for (IndexVilles<?> indexVilles : index) {
+                if (indexVilles.estConstruit()) {
+                    indexVilles.modifier(ancienne, ajoutee);
+                }
+            }
+
+            if (ancienne != null && ajoutee == null) {
+                villes.remove(idRetire);
+            }
+        }
+        finally {
+            verrou.unlock();
+        }
+    }
+}
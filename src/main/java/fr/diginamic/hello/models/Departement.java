@@ -1,26 +1,34 @@
 package fr.diginamic.hello.models;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import fr.diginamic.hello.utils.TriFrancais;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
-import org.springframework.transaction.annotation.Transactional;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.io.Serializable;
-import java.text.Collator;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Locale;
 import java.util.Objects;
 
 /**
  * Classe entité JPA Departement représentant un département
  */
 @Entity
+// Données de référence presque jamais modifiées : conservées dans le cache de second niveau
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Table(name="departement")
+// Plan de chargement explicite : les villes ne sont jointes que par les requêtes qui le demandent
+@NamedEntityGraph(name = Departement.GRAPHE_VILLES, attributeNodes = @NamedAttributeNode("villes"))
 public class Departement implements Serializable, Comparable<Departement> {
+    /** Nom du graphe d'entité chargeant les villes du département */
+    public static final String GRAPHE_VILLES = "Departement.villes";
+
     /** Identifiant du département */
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -40,10 +48,10 @@ public class Departement implements Serializable, Comparable<Departement> {
     @Size(min = 2, max = 3, message = "Le code département doit contenir 2 à 3 caractères.")
     private String code;
 
-    /** Liste de villes du département */
+    /** Liste de villes du département (chargée à la demande, cf. GRAPHE_VILLES) */
     // évite la boucle infinie à la création des objets
     @JsonIgnore
-    @OneToMany(mappedBy="departement", fetch = FetchType.EAGER)
+    @OneToMany(mappedBy="departement", fetch = FetchType.LAZY)
     private List<Ville> villes;
 
     {
@@ -95,7 +103,7 @@ public class Departement implements Serializable, Comparable<Departement> {
      */
     @Override
     public int hashCode() {
-        return Objects.hash(id, nom, code, villes);
+        return Objects.hash(id, nom, code);
     }
 
     /**
@@ -122,8 +130,7 @@ public class Departement implements Serializable, Comparable<Departement> {
      */
     @Override
     public int compareTo(Departement autreDept) {
-        Collator collator = Collator.getInstance(Locale.FRANCE);
-        return collator.compare(this.nom.toLowerCase(), autreDept.getNom().toLowerCase());
+        return TriFrancais.comparer(this.nom, autreDept.getNom());
     }
 
     /**
@@ -1,19 +1,36 @@
 package fr.diginamic.hello.models;
 
+import fr.diginamic.hello.utils.TriFrancais;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.io.Serializable;
-import java.text.Collator;
-import java.util.Locale;
 import java.util.Objects;
 
 /**
  * Classe entité JPA représentant une ville
  */
 @Entity
-@Table(name="ville")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+// Un index par forme de requête du repository (cf. db/index_ville.sql pour une base existante) :
+// la contrainte (NOM, ID_DEPT) sert aussi aux recherches par nom exact ou par préfixe
+@Table(name="ville",
+        uniqueConstraints = @UniqueConstraint(name = Ville.CONTRAINTE_NOM_DEPARTEMENT, columnNames = {"NOM", "ID_DEPT"}),
+        indexes = {
+                // Tri par nom et pagination par curseur (nom, id)
+                @Index(name = "idx_ville_nom_id", columnList = "NOM, ID"),
+                // Intervalles de population
+                @Index(name = "idx_ville_nb_habitants", columnList = "NB_HABITANTS"),
+                // Villes d'un département : filtre de population et plus peuplées d'abord
+                @Index(name = "idx_ville_departement_nb_habitants", columnList = "ID_DEPT, NB_HABITANTS DESC")
+        })
 public class Ville implements Serializable, Comparable<Ville> {
+    /** Contrainte d'unicité : une ville est identifiée par son nom dans son département */
+    public static final String CONTRAINTE_NOM_DEPARTEMENT = "uk_ville_nom_departement";
+
     /** identifiant unique et non modifiable de la ville */
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -125,8 +142,7 @@ public class Ville implements Serializable, Comparable<Ville> {
     // Critère de tri : nom de la ville (sans tenir compte de la casse)
     @Override
     public int compareTo(Ville autreVille) {
-        Collator collator = Collator.getInstance(Locale.FRANCE);
-        return collator.compare(this.nom.toLowerCase(), autreVille.getNom().toLowerCase());
+        return TriFrancais.comparer(this.nom, autreVille.getNom());
     }
 
     /**
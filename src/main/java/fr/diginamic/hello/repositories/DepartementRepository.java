@@ -1,20 +1,71 @@
 package fr.diginamic.hello.repositories;
 
+import fr.diginamic.hello.dto.DepartementDto;
 import fr.diginamic.hello.models.Departement;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface DepartementRepository extends JpaRepository<Departement, Long> {
+    // Résultats conservés dans le cache de requêtes, invalidé par Hibernate à chaque écriture sur la table
     @Query("select d from Departement d order by d.nom")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     List<Departement> findAllOrderByNom(Pageable pageable);
 
     List<Departement> findByNom(String nom);
 
     List<Departement> findByNomStartingWith(String prefixe);
 
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Optional<Departement> findByCode(String code);
+
+    List<Departement> findByCodeIn(Collection<String> codes);
+
+    // Variantes chargeant les villes du département en une seule requête (jointure)
+    @EntityGraph(Departement.GRAPHE_VILLES)
+    Optional<Departement> findWithVillesById(Long id);
+
+    @EntityGraph(Departement.GRAPHE_VILLES)
+    Optional<Departement> findWithVillesByCode(String code);
+
+    // Agrégats calculés par la base : population et nombre de villes, sans charger les entités Ville
+    @Query("select new fr.diginamic.hello.dto.DepartementDto(d.id, d.code, d.nom, coalesce(sum(v.nbHabitants), 0L), count(v)) " +
+            "from Departement d left join d.villes v group by d.id, d.code, d.nom")
+    List<DepartementDto> findAllWithPopulation();
+
+    @Query("select new fr.diginamic.hello.dto.DepartementDto(d.id, d.code, d.nom, coalesce(sum(v.nbHabitants), 0L), count(v)) " +
+            "from Departement d left join d.villes v group by d.id, d.code, d.nom order by d.nom, d.id")
+    List<DepartementDto> findAllWithPopulationOrderByNom(Pageable pageable);
+
+    // Pagination par clé (keyset) sur le couple (nom, id)
+    @Query("select new fr.diginamic.hello.dto.DepartementDto(d.id, d.code, d.nom, coalesce(sum(v.nbHabitants), 0L), count(v)) " +
+            "from Departement d left join d.villes v where d.nom > :nom or (d.nom = :nom and d.id > :id) " +
+            "group by d.id, d.code, d.nom order by d.nom, d.id")
+    List<DepartementDto> findAllWithPopulationAfterNomAndId(String nom, long id, Pageable pageable);
+
+    @Query("select new fr.diginamic.hello.dto.DepartementDto(d.id, d.code, d.nom, coalesce(sum(v.nbHabitants), 0L), count(v)) " +
+            "from Departement d left join d.villes v where d.id = :id group by d.id, d.code, d.nom")
+    Optional<DepartementDto> findWithPopulationById(long id);
+
+    @Query("select new fr.diginamic.hello.dto.DepartementDto(d.id, d.code, d.nom, coalesce(sum(v.nbHabitants), 0L), count(v)) " +
+            "from Departement d left join d.villes v where d.code = :code group by d.id, d.code, d.nom")
+    Optional<DepartementDto> findWithPopulationByCode(String code);
+
+    @Query("select d from Departement d")
+    Stream<Departement> streamAll();
+
+    // Suppression sans chargement préalable de l'entité ; les villes doivent avoir été supprimées avant
+    @Modifying
+    @Query("delete from Departement d where d.id = :id")
+    int deleteDepartementById(long id);
 }
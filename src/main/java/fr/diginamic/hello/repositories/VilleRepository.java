@@ -1,32 +1,98 @@
 package fr.diginamic.hello.repositories;
 
+import fr.diginamic.hello.dto.VilleDto;
 import fr.diginamic.hello.models.Ville;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
-public interface VilleRepository extends JpaRepository<Ville, Long> {
-    @Query("select v from Ville v order by v.nom")
-    List<Ville> findAllOrderByNom(Pageable pageable);
+public interface VilleRepository extends JpaRepository<Ville, Long>, VilleRepositoryCustom {
+    // Les noms sont comparés selon la collation de la colonne : sous MariaDB (_ci), sans casse ni accents
+    List<Ville> findByNomIn(Collection<String> noms);
 
-    List<Ville> findByNom(String nom);
+    Optional<Ville> findByNomAndDepartementId(String nom, long idDepartement);
 
-    List<Ville> findByNomStartingWith(String prefixe);
+    boolean existsByNbHabitantsGreaterThan(int minHabitants);
 
-    List<Ville> findByNbHabitantsGreaterThan(int minHabitants);
+    long countByNbHabitantsGreaterThan(int minHabitants);
 
-    List<Ville> findByNbHabitantsBetween(int minHabitants, int maxHabitants);
+    boolean existsByDepartementCode(String departementCode);
 
-    @Query("select v from Ville v where v.departement.code = :departementCode and v.nbHabitants > :minHabitants")
-    List<Ville> findByDepartementCodeAndNbHabitantsGreaterThan(String departementCode, int minHabitants);
+    long countByDepartementCode(String departementCode);
 
-    @Query("select v from Ville v where v.departement.code = :departementCode and v.nbHabitants between :minHabitants and :maxHabitants")
-    List<Ville> findByDepartementCodeAndNbHabitantsBetween(String departementCode, int minHabitants, int maxHabitants);
+    // Projections DTO des lectures : le département est joint dans la même requête et aucune entité
+    // n'entre dans le contexte de persistance
+    String SELECT_DTO = "select new fr.diginamic.hello.dto.VilleDto(v.id, v.nom, v.nbHabitants, d.code, d.nom) from Ville v join v.departement d";
 
-    @Query("select v from Ville v where v.departement.code = :departementCode order by v.nbHabitants desc")
-    List<Ville> findByDepartementCodeOrderByNbHabitantsDesc(String departementCode, Pageable pageable);
+    @Query(SELECT_DTO)
+    List<VilleDto> findAllDtos();
+
+    // L'id départage les homonymes : l'ordre (nom, id) est total, ce qui permet la pagination par curseur
+    @Query(SELECT_DTO + " order by v.nom, v.id")
+    List<VilleDto> findAllDtosOrderByNom(Pageable pageable);
+
+    // Pagination par clé (keyset) : reprend après le couple (nom, id) du dernier élément de la page précédente
+    @Query(SELECT_DTO + " where v.nom > :nom or (v.nom = :nom and v.id > :id) order by v.nom, v.id")
+    List<VilleDto> findAllDtosAfterNomAndId(String nom, long id, Pageable pageable);
+
+    @Query(SELECT_DTO + " where v.id = :id")
+    Optional<VilleDto> findDtoById(long id);
+
+    @Query(SELECT_DTO + " where v.nom = :nom")
+    List<VilleDto> findDtosByNom(String nom);
+
+    // Le préfixe doit être échappé par l'appelant (\, % et _) : il est recherché tel quel, sans jokers
+    @Query(SELECT_DTO + " where v.nom like concat(:prefixe, '%') escape '\\'")
+    List<VilleDto> findDtosByNomStartingWith(String prefixe);
+
+    @Query(SELECT_DTO + " where v.nbHabitants > :minHabitants")
+    List<VilleDto> findDtosByNbHabitantsGreaterThan(int minHabitants);
+
+    @Query(SELECT_DTO + " where v.nbHabitants between :minHabitants and :maxHabitants")
+    List<VilleDto> findDtosByNbHabitantsBetween(int minHabitants, int maxHabitants);
+
+    @Query(SELECT_DTO + " where d.code = :departementCode and v.nbHabitants > :minHabitants")
+    List<VilleDto> findDtosByDepartementCodeAndNbHabitantsGreaterThan(String departementCode, int minHabitants);
+
+    @Query(SELECT_DTO + " where d.code = :departementCode and v.nbHabitants between :minHabitants and :maxHabitants")
+    List<VilleDto> findDtosByDepartementCodeAndNbHabitantsBetween(String departementCode, int minHabitants, int maxHabitants);
+
+    @Query(SELECT_DTO + " where d.code = :departementCode order by v.nbHabitants desc")
+    List<VilleDto> findDtosByDepartementCodeOrderByNbHabitantsDesc(String departementCode, Pageable pageable);
+
+    // Suppressions ensemblistes : une seule requête DELETE, sans charger les entités
+    @Modifying
+    @Query("delete from Ville v where v.departement.id = :idDepartement")
+    int deleteByDepartementId(long idDepartement);
+
+    // Un filtre null est ignoré ; les jointures étant interdites dans un DELETE, le département passe par une sous-requête
+    @Modifying
+    @Query("delete from Ville v where (:codeDepartement is null or v.departement.id in (select d.id from Departement d where d.code = :codeDepartement)) "
+            + "and (:minHabitants is null or v.nbHabitants >= :minHabitants) and (:maxHabitants is null or v.nbHabitants <= :maxHabitants)")
+    int deleteByFiltre(String codeDepartement, Integer minHabitants, Integer maxHabitants);
+
+    // Lectures en flux pour les exports : projections DTO (hors contexte de persistance),
+    // lues par paquets grâce au fetch size, à consommer dans une transaction
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query(SELECT_DTO)
+    Stream<VilleDto> streamAllDtos();
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query(SELECT_DTO + " where v.nbHabitants > :minHabitants")
+    Stream<VilleDto> streamDtosByNbHabitantsGreaterThan(int minHabitants);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query(SELECT_DTO + " where d.code = :departementCode order by v.nbHabitants desc")
+    Stream<VilleDto> streamDtosByDepartementCodeOrderByNbHabitantsDesc(String departementCode);
 }
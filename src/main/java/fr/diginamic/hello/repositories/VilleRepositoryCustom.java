@@ -0,0 +1,23 @@
+package fr.diginamic.hello.repositories;
+
+import fr.diginamic.hello.models.Ville;
+
+import java.util.List;
+
+/**
+ * Opérations du repository des villes qui ne passent pas par JPA.
+ */
+public interface VilleRepositoryCustom {
+    /**
+     * Insère des villes par lots JDBC. Les identifiants générés ne sont pas relus dans les entités.
+     * @param villes villes à insérer, département renseigné
+     */
+    void insererEnLot(List<Ville> villes);
+
+    /**
+     * Insère une ville ou, si le couple (nom, département) existe déjà, met à jour son nombre d'habitants,
+     * en une seule requête s'appuyant sur la contrainte d'unicité.
+     * @param ville ville à enregistrer, département renseigné
+     */
+    void upsert(Ville ville);
+}
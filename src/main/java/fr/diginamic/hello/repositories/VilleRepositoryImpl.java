@@ -0,0 +1,58 @@
+package fr.diginamic.hello.repositories;
+
+import fr.diginamic.hello.models.Ville;
+import fr.diginamic.hello.utils.Transactions;
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+/**
+ * Implémentation des opérations JDBC du repository des villes.
+ * L'id de Ville est en IDENTITY, ce qui empêche Hibernate de regrouper les insertions :
+ * l'import en masse passe donc directement par des lots JDBC.
+ * Ces écritures contournent Hibernate : le cache de second niveau des villes doit être purgé
+ * lorsqu'elles modifient des lignes existantes.
+ */
+public class VilleRepositoryImpl implements VilleRepositoryCustom {
+    /** Nombre de lignes envoyées par lot */
+    private static final int TAILLE_LOT = 500;
+
+    /** Requête d'insertion d'une ville */
+    private static final String INSERT_VILLE = "insert into ville (nom, nb_habitants, id_dept) values (?, ?, ?)";
+
+    /** Insertion ou mise à jour selon la contrainte d'unicité (nom, id_dept), syntaxe MariaDB */
+    private static final String UPSERT_VILLE = INSERT_VILLE + " on duplicate key update nb_habitants = values(nb_habitants)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Override
+    public void insererEnLot(List<Ville> villes) {
+        jdbcTemplate.batchUpdate(INSERT_VILLE, villes, TAILLE_LOT, (ps, ville) -> {
+            ps.setString(1, ville.getNom());
+            ps.setInt(2, ville.getNbHabitants());
+            ps.setLong(3, ville.getDepartement().getId());
+        });
+    }
+
+    @Override
+    public void upsert(Ville ville) {
+        jdbcTemplate.update(UPSERT_VILLE, ville.getNom(), ville.getNbHabitants(), ville.getDepartement().getId());
+        purgerCacheVilles();
+    }
+
+    /**
+     * Purge les villes du cache de second niveau, où la ville mise à jour peut figurer avec son ancien
+     * nombre d'habitants : tout de suite, puis après le commit pour écarter une relecture concurrente
+     * de l'ancienne valeur.
+     */
+    private void purgerCacheVilles() {
+        entityManagerFactory.getCache().evict(Ville.class);
+        Transactions.apresCommit(() -> entityManagerFactory.getCache().evict(Ville.class));
+    }
+}
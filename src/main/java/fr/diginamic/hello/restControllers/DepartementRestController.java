@@ -1,28 +1,40 @@
 package fr.diginamic.hello.restControllers;
 
+import fr.diginamic.hello.config.FormatsBinairesConfig;
 import fr.diginamic.hello.dto.DepartementDto;
+import fr.diginamic.hello.dto.PageCurseurDto;
 import fr.diginamic.hello.exceptions.RequeteIncorrecteException;
 import fr.diginamic.hello.exceptions.RessourceExistanteException;
 import fr.diginamic.hello.exceptions.RessourceNotFoundException;
 import fr.diginamic.hello.mappers.DepartementMapper;
 import fr.diginamic.hello.models.Departement;
+import fr.diginamic.hello.services.ArtefactsExportService;
 import fr.diginamic.hello.services.DepartementService;
-import fr.diginamic.hello.utils.CSVGenerator;
+import fr.diginamic.hello.services.ExportService;
+import fr.diginamic.hello.services.VersionDonneesService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
-import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindingResult;
 import org.springframework.validation.ObjectError;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -37,28 +49,48 @@ public class DepartementRestController {
     @Autowired
     private DepartementService deptService;
 
-    /** Classe utilitaire permettant de mapper les propriétés des entités en fichier CSV */
+    /** Service d'export des données en fichiers */
     @Autowired
-    private CSVGenerator csvGenerator;
+    private ExportService exportService;
+
+    /** Service des exports complets précompressés */
+    @Autowired
+    private ArtefactsExportService artefactsExport;
+
+    /** Version des données, qui sert d'ETag aux listes et aux exports */
+    @Autowired
+    private VersionDonneesService versionDonnees;
 
     /**
      * Récupère une liste d'objets Departement.
-     * @return liste de départements
+     * Réponse conditionnelle : 304 si la version des données n'a pas changé depuis l'ETag envoyé par le client.
+     * @param triNom trie les départements par nom selon l'ordre alphabétique français
+     * @param requete requête HTTP, pour l'en-tête If-None-Match
+     * @return liste de départements, null si le client est à jour
      * @throws RessourceNotFoundException il n'y a pas de département à retourner
      */
     @Operation(summary = "Récupération des départements")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200",
-                description = "Retourne un tableau JSON des départements",
+                description = "Retourne un tableau des départements, en JSON ou en CBOR/Smile selon l'en-tête Accept",
                 content = {@Content(mediaType = "application/json",
+                    schema = @Schema(implementation = DepartementDto.class)),
+                    @Content(mediaType = FormatsBinairesConfig.APPLICATION_CBOR,
+                    schema = @Schema(implementation = DepartementDto.class)),
+                    @Content(mediaType = FormatsBinairesConfig.APPLICATION_SMILE,
                     schema = @Schema(implementation = DepartementDto.class))}),
+            @ApiResponse(responseCode = "304",
+                description = "Les départements n'ont pas changé depuis la version connue du client"),
             @ApiResponse(responseCode = "404",
                 description = "Aucun département n'a été trouvé")
     })
     @GetMapping("/liste")
-    public List<DepartementDto> getDepartements() throws RessourceNotFoundException {
-        List<Departement> departements = deptService.getDepartements();
-        return DepartementMapper.toDtos(departements);
+    public List<DepartementDto> getDepartements(@RequestParam(defaultValue = "false") boolean triNom, WebRequest requete) throws RessourceNotFoundException {
+        if (versionDonnees.estAJour(requete, triNom ? "departements-tri-nom" : "departements")) {
+            return null;
+        }
+
+        return triNom ? deptService.getDepartementsAvecPopulationTriesParNom() : deptService.getDepartementsAvecPopulation();
     }
 
     /**
@@ -82,8 +114,31 @@ public class DepartementRestController {
     })
     @GetMapping("/liste/pagination")
     public List<DepartementDto> getDepartementsPagination(@RequestParam int n) throws RessourceNotFoundException, RequeteIncorrecteException {
-        List<Departement> departements = deptService.getDepartementsPagination(n);
-        return DepartementMapper.toDtos(departements);
+        return deptService.getDepartementsAvecPopulationPagination(n);
+    }
+
+    /**
+     * Récupère une page de départements triés par nom avec une pagination par curseur.
+     * @param after curseur renvoyé avec la page précédente (absent pour la première page)
+     * @param size nombre d'éléments de la page
+     * @return page de départements et curseur de la page suivante
+     * @throws RessourceNotFoundException il n'y a pas de département à retourner
+     * @throws RequeteIncorrecteException les paramètres de pagination donnés sont invalides
+     */
+    @Operation(summary = "Récupération des départements avec pagination par curseur")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200",
+                    description = "Retourne une page JSON de départements et le curseur de la page suivante (null sur la dernière page)",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = PageCurseurDto.class))}),
+            @ApiResponse(responseCode = "404",
+                    description = "Aucun département n'a été trouvé"),
+            @ApiResponse(responseCode = "400",
+                    description = "Erreur dans les paramètres donnés par le client")
+    })
+    @GetMapping(value = "/liste/pagination", params = "size")
+    public PageCurseurDto<DepartementDto> getDepartementsPaginationCurseur(@RequestParam(required = false) String after, @RequestParam int size) throws RessourceNotFoundException, RequeteIncorrecteException {
+        return deptService.getDepartementsAvecPopulationPaginationCurseur(after, size);
     }
 
     /**
@@ -107,8 +162,7 @@ public class DepartementRestController {
     // URL paramétrée
     @GetMapping("/{id}")
     public DepartementDto getDepartementById(@PathVariable Long id) throws RessourceNotFoundException, RequeteIncorrecteException {
-        Departement dept = deptService.getDepartementById(id);
-        return DepartementMapper.toDto(dept);
+        return deptService.getDepartementAvecPopulationById(id);
     }
 
     /**
@@ -132,25 +186,31 @@ public class DepartementRestController {
     @GetMapping("/code")
     // requête paramétrée
     public DepartementDto getDepartementByCode(@RequestParam String code) throws RessourceNotFoundException, RequeteIncorrecteException {
-        Departement dept = deptService.getDepartementByCode(code);
-        return DepartementMapper.toDto(dept);
+        return deptService.getDepartementAvecPopulationByCode(code);
     }
 
     /**
      * Ajoute un objet Departement aux départements enregistrés.
+     * Par défaut, tous les départements sont renvoyés ; avec l'en-tête Prefer: return=representation (RFC 7240),
+     * seul le département créé est renvoyé, avec un statut 201 et son URL dans l'en-tête Location.
      * @param dept département
      * @param result objet injecté par Spring Validation pour vérifier la validité des champs de VilleDTO
-     * @return une liste de départements et le statut HTTP de la requête accompagné d'un message
+     * @param prefer valeurs de l'en-tête Prefer, null s'il est absent
+     * @return une liste de départements, ou le département créé
      * @throws RessourceNotFoundException s'il n'y a pas de départements à renvoyer
      * @throws RequeteIncorrecteException les informations données en paramètre sont invalides
      * @throws RessourceExistanteException le département à ajouter existe déjà dans la base de données
      */
-    @Operation(summary = "Création et ajout d'un département")
+    @Operation(summary = "Création et ajout d'un département (réponse limitée au département créé avec l'en-tête Prefer: return=representation)")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200",
                     description = "Retourne un tableau JSON de départements, département ajouté inclus",
                     content = {@Content(mediaType = "application/json",
                             schema = @Schema(implementation = DepartementDto.class))}),
+            @ApiResponse(responseCode = "201",
+                    description = "Retourne le département créé ; son URL est dans l'en-tête Location",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = DepartementDto.class))}),
             @ApiResponse(responseCode = "404",
                     description = "Aucun département n'a été trouvé"),
             @ApiResponse(responseCode = "400",
@@ -159,15 +219,50 @@ public class DepartementRestController {
                     description = "Une ressource identique existe déjà")
     })
     @PostMapping
-    public ResponseEntity<List<DepartementDto>> addDepartement(@Valid @RequestBody DepartementDto dept, BindingResult result) throws RessourceNotFoundException, RequeteIncorrecteException, RessourceExistanteException {
+    public ResponseEntity<?> addDepartement(@Valid @RequestBody DepartementDto dept, BindingResult result,
+                                            @RequestHeader(value = PreferenceRetour.PREFER, required = false) List<String> prefer) throws RessourceNotFoundException, RequeteIncorrecteException, RessourceExistanteException {
         if (result.hasErrors()) {
             throw new RequeteIncorrecteException(result.getAllErrors().stream().map(ObjectError::getDefaultMessage).collect(Collectors.joining(", ")));
         }
 
-        deptService.insertDepartement(DepartementMapper.toEntity(dept));
+        Departement departement = deptService.insertDepartement(DepartementMapper.toEntity(dept));
 
-        List<Departement> departements = deptService.getDepartements();
-        return ResponseEntity.ok(DepartementMapper.toDtos(departements));
+        if (PreferenceRetour.demandeRepresentation(prefer)) {
+            URI location = ServletUriComponentsBuilder.fromCurrentRequest().path("/{id}").buildAndExpand(departement.getId()).toUri();
+            return ResponseEntity.created(location)
+                    .header(PreferenceRetour.PREFERENCE_APPLIED, PreferenceRetour.RETURN_REPRESENTATION)
+                    .body(DepartementMapper.toDto(departement));
+        }
+        return ResponseEntity.ok(deptService.getDepartementsAvecPopulation());
+    }
+
+    /**
+     * Ajoute un lot de départements en une transaction et ne renvoie que les départements créés.
+     * Le lot est refusé en entier si un département est invalide ou existe déjà.
+     * @param depts liste de départements
+     * @return les départements créés, avec un statut 201
+     * @throws RequeteIncorrecteException le lot est vide
+     * @throws RessourceExistanteException un département du lot existe déjà
+     */
+    @Operation(summary = "Création d'un lot de départements, réponse limitée aux départements créés")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "201",
+                    description = "Retourne un tableau JSON des départements créés",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = DepartementDto.class))}),
+            @ApiResponse(responseCode = "400",
+                    description = "Erreur dans les paramètres donnés par le client"),
+            @ApiResponse(responseCode = "409",
+                    description = "Une ressource identique existe déjà")
+    })
+    @PostMapping("/lot")
+    public ResponseEntity<List<DepartementDto>> addDepartements(@RequestBody List<@Valid DepartementDto> depts) throws RequeteIncorrecteException, RessourceExistanteException {
+        List<Departement> departements = new ArrayList<>();
+        for (DepartementDto dept : depts) {
+            departements.add(DepartementMapper.toEntity(dept));
+        }
+
+        return ResponseEntity.status(HttpStatus.CREATED).body(DepartementMapper.toDtos(deptService.insertDepartements(departements)));
     }
 
     /**
@@ -226,8 +321,13 @@ public class DepartementRestController {
     }
 
     /**
-     * Convertit les données des départements en fichier CSV.
-     * @return fichier CSV
+     * Convertit les données des départements en fichier CSV, généré une fois par version des données
+     * et envoyé compressé en gzip si le client l'accepte.
+     * Réponse conditionnelle : 304 si la version des données n'a pas changé depuis l'ETag envoyé par le client.
+     * @param requete requête HTTP, pour l'en-tête If-None-Match
+     * @param request requête HTTP, pour l'en-tête Accept-Encoding
+     * @param response réponse HTTP dans laquelle le fichier CSV est écrit
+     * @throws IOException exception liée à une erreur I/O
      * @throws RessourceNotFoundException il n'y a de département à retourner
      */
     @Operation(summary = "Conversion des départements en fichier CSV")
@@ -238,14 +338,17 @@ public class DepartementRestController {
                     description = "Une ressource n'a pas été trouvée")
     })
     @GetMapping("/csv")
-    public ResponseEntity<String> generateCsvFile() throws RessourceNotFoundException {
-        List<Departement> departements = deptService.getDepartements();
+    public void generateCsvFile(WebRequest requete, HttpServletRequest request, HttpServletResponse response) throws IOException, RessourceNotFoundException {
+        if (versionDonnees.estAJour(requete, artefactsExport.getVariante("departements-csv", request))) {
+            return;
+        }
 
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
-        headers.setContentDispositionFormData("attachment", "departements.csv");
+        exportService.verifierExportDepartements();
 
-        String csvBytes = csvGenerator.generateCSVDepartement(departements);
-        return new ResponseEntity<>(csvBytes, headers, HttpStatus.OK);
+        response.setContentType("text/csv");
+        response.setCharacterEncoding(StandardCharsets.UTF_8);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.formData().name("attachment").filename("departements.csv").build().toString());
+        artefactsExport.envoyer("departements-csv", exportService::exporterDepartementsCsv, request, response);
+        response.flushBuffer();
     }
 }
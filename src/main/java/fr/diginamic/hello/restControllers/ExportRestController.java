@@ -0,0 +1,166 @@
+package fr.diginamic.hello.restControllers;
+
+import fr.diginamic.hello.dto.TacheExportDto;
+import fr.diginamic.hello.exceptions.RequeteIncorrecteException;
+import fr.diginamic.hello.exceptions.RessourceNotFoundException;
+import fr.diginamic.hello.exceptions.ServiceSatureException;
+import fr.diginamic.hello.services.TacheExportService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import java.io.IOException;
+import java.net.URI;
+
+/**
+ * Classe Controller gérant les exports asynchrones : soumission, suivi et téléchargement.
+ * Contrairement aux exports de /api/villes et /api/departements, le fichier n'est pas écrit
+ * pendant la requête : la soumission répond 202 avec l'adresse de la tâche à interroger.
+ */
+@RestController
+@RequestMapping("/api/exports")
+public class ExportRestController {
+
+    /** Service des exports asynchrones */
+    @Autowired
+    private TacheExportService tacheExportService;
+
+    /**
+     * Soumet l'export CSV des villes, toutes ou celles de plus de N habitants.
+     * @param min nombre minimum d'habitants, toutes les villes si absent
+     * @return tâche créée, avec son adresse dans l'en-tête Location
+     * @throws RessourceNotFoundException aucune ville à exporter
+     * @throws RequeteIncorrecteException le nombre minimum d'habitants est incorrect
+     * @throws ServiceSatureException trop d'exports sont en attente
+     */
+    @Operation(summary = "Soumission de l'export CSV des villes")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202",
+                    description = "Retourne la tâche d'export créée",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = TacheExportDto.class))}),
+            @ApiResponse(responseCode = "404",
+                    description = "Une ressource n'a pas été trouvée"),
+            @ApiResponse(responseCode = "400",
+                    description = "Erreur dans les paramètres donnés par le client"),
+            @ApiResponse(responseCode = "503",
+                    description = "Trop d'exports sont en attente, la soumission peut être renvoyée plus tard")
+    })
+    @PostMapping("/villes/csv")
+    public ResponseEntity<TacheExportDto> soumettreVillesCsv(@RequestParam(required = false) Integer min) throws RessourceNotFoundException, RequeteIncorrecteException, ServiceSatureException {
+        return accepter(tacheExportService.soumettreVillesCsv(min));
+    }
+
+    /**
+     * Soumet l'export CSV des départements.
+     * @return tâche créée, avec son adresse dans l'en-tête Location
+     * @throws RessourceNotFoundException aucun département à exporter
+     * @throws ServiceSatureException trop d'exports sont en attente
+     */
+    @Operation(summary = "Soumission de l'export CSV des départements")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202",
+                    description = "Retourne la tâche d'export créée",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = TacheExportDto.class))}),
+            @ApiResponse(responseCode = "404",
+                    description = "Une ressource n'a pas été trouvée"),
+            @ApiResponse(responseCode = "503",
+                    description = "Trop d'exports sont en attente, la soumission peut être renvoyée plus tard")
+    })
+    @PostMapping("/departements/csv")
+    public ResponseEntity<TacheExportDto> soumettreDepartementsCsv() throws RessourceNotFoundException, ServiceSatureException {
+        return accepter(tacheExportService.soumettreDepartementsCsv());
+    }
+
+    /**
+     * Soumet l'export PDF des villes d'un département.
+     * @param codeDept code du département
+     * @return tâche créée, avec son adresse dans l'en-tête Location
+     * @throws RessourceNotFoundException le département n'a pas été trouvé
+     * @throws RequeteIncorrecteException le code département est incorrect
+     * @throws ServiceSatureException trop d'exports sont en attente
+     */
+    @Operation(summary = "Soumission de l'export PDF des villes d'un département")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202",
+                    description = "Retourne la tâche d'export créée",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = TacheExportDto.class))}),
+            @ApiResponse(responseCode = "404",
+                    description = "Une ressource n'a pas été trouvée"),
+            @ApiResponse(responseCode = "400",
+                    description = "Erreur dans les paramètres donnés par le client"),
+            @ApiResponse(responseCode = "503",
+                    description = "Trop d'exports sont en attente, la soumission peut être renvoyée plus tard")
+    })
+    @PostMapping("/villes/pdf")
+    public ResponseEntity<TacheExportDto> soumettreVillesPdf(@RequestParam("code_dep") String codeDept) throws RessourceNotFoundException, RequeteIncorrecteException, ServiceSatureException {
+        return accepter(tacheExportService.soumettreVillesPdf(codeDept));
+    }
+
+    /**
+     * Récupère l'état et l'avancement d'une tâche d'export.
+     * @param id identifiant de la tâche
+     * @return tâche
+     * @throws RessourceNotFoundException la tâche n'existe pas ou a expiré
+     */
+    @Operation(summary = "Suivi d'une tâche d'export")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200",
+                    description = "Retourne l'état de la tâche d'export",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = TacheExportDto.class))}),
+            @ApiResponse(responseCode = "404",
+                    description = "Une ressource n'a pas été trouvée")
+    })
+    @GetMapping("/{id}")
+    public TacheExportDto getTache(@PathVariable String id) throws RessourceNotFoundException {
+        return tacheExportService.getTache(id);
+    }
+
+    /**
+     * Télécharge le fichier d'une tâche d'export terminée.
+     * @param id identifiant de la tâche
+     * @param response réponse HTTP dans laquelle le fichier est écrit
+     * @throws IOException exception liée à une erreur I/O
+     * @throws RessourceNotFoundException la tâche n'existe pas ou a expiré
+     * @throws RequeteIncorrecteException la tâche n'est pas terminée
+     */
+    @Operation(summary = "Téléchargement du fichier d'une tâche d'export")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200",
+                    description = "Retourne le fichier CSV ou PDF de l'export"),
+            @ApiResponse(responseCode = "404",
+                    description = "Une ressource n'a pas été trouvée"),
+            @ApiResponse(responseCode = "400",
+                    description = "L'export n'est pas terminé")
+    })
+    @GetMapping("/{id}/fichier")
+    public void telechargerFichier(@PathVariable String id, HttpServletResponse response) throws IOException, RessourceNotFoundException, RequeteIncorrecteException {
+        tacheExportService.envoyerFichier(id, response);
+        response.flushBuffer();
+    }
+
+    /**
+     * Réponse 202 d'une soumission, avec l'adresse de la tâche.
+     * @param tache tâche créée
+     * @return réponse
+     */
+    private ResponseEntity<TacheExportDto> accepter(TacheExportDto tache) {
+        URI location = ServletUriComponentsBuilder.fromCurrentContextPath().path("/api/exports/{id}").buildAndExpand(tache.getId()).toUri();
+        return ResponseEntity.accepted().location(location).body(tache);
+    }
+}
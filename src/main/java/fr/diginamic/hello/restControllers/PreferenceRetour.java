@@ -0,0 +1,47 @@
+package fr.diginamic.hello.restControllers;
+
+import java.util.List;
+
+/**
+ * Lecture de l'en-tête Prefer (RFC 7240) utilisé par les créations de ressources :
+ * avec Prefer: return=representation, seule la ressource créée est renvoyée, et non la liste complète.
+ */
+final class PreferenceRetour {
+    /** En-tête de requête portant les préférences du client */
+    static final String PREFER = "Prefer";
+    /** En-tête de réponse confirmant la préférence appliquée */
+    static final String PREFERENCE_APPLIED = "Preference-Applied";
+    /** Préférence return=representation */
+    static final String RETURN_REPRESENTATION = "return=representation";
+
+    private PreferenceRetour() {
+    }
+
+    /**
+     * Indique si le client préfère recevoir la ressource créée.
+     * Chaque valeur peut porter plusieurs préférences séparées par des virgules, chacune suivie de paramètres
+     * après un point-virgule : « return=representation, respond-async » ou « return = "representation"; x=1 ».
+     * @param valeurs valeurs de l'en-tête Prefer, null s'il est absent
+     * @return boolean
+     */
+    static boolean demandeRepresentation(List<String> valeurs) {
+        if (valeurs == null) {
+            return false;
+        }
+
+        for (String valeur : valeurs) {
+            for (String preference : valeur.split(",")) {
+                String[] nomValeur = preference.split(";", 2)[0].split("=", 2);
+                if (nomValeur.length == 2 && nomValeur[0].trim().equalsIgnoreCase("return")
+                        && sansGuillemets(nomValeur[1].trim()).equalsIgnoreCase("representation")) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static String sansGuillemets(String valeur) {
+        return valeur.length() >= 2 && valeur.startsWith("\"") && valeur.endsWith("\"") ? valeur.substring(1, valeur.length() - 1) : valeur;
+    }
+}
@@ -0,0 +1,43 @@
+package fr.diginamic.hello.restControllers;
+
+import fr.diginamic.hello.dto.StatistiquesCacheDto;
+import fr.diginamic.hello.services.StatistiquesService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * Classe controller exposant les statistiques de fonctionnement de l'application
+ */
+@RestController
+@RequestMapping("/api/statistiques")
+public class StatistiquesRestController {
+
+    /** Service des statistiques */
+    @Autowired
+    private StatistiquesService statistiquesService;
+
+    /**
+     * Récupère les succès et échecs des caches de lecture et du cache Hibernate.
+     * @return statistiques par cache
+     */
+    @Operation(summary = "Statistiques des caches")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200",
+                description = "Retourne un tableau JSON des statistiques par cache",
+                content = {@Content(mediaType = "application/json",
+                    schema = @Schema(implementation = StatistiquesCacheDto.class))})
+    })
+    @GetMapping("/cache")
+    public List<StatistiquesCacheDto> getStatistiquesCache() {
+        return statistiquesService.getStatistiquesCaches();
+    }
+}
@@ -1,24 +1,30 @@
 package fr.diginamic.hello.restControllers;
 
 import com.itextpdf.text.*;
+import fr.diginamic.hello.config.FormatsBinairesConfig;
+import fr.diginamic.hello.dto.PageCurseurDto;
+import fr.diginamic.hello.dto.RapportImportDto;
 import fr.diginamic.hello.dto.VilleDto;
 import fr.diginamic.hello.exceptions.RequeteIncorrecteException;
 import fr.diginamic.hello.exceptions.RessourceExistanteException;
 import fr.diginamic.hello.exceptions.RessourceNotFoundException;
 import fr.diginamic.hello.mappers.VilleMapper;
 import fr.diginamic.hello.models.Ville;
-import fr.diginamic.hello.services.DepartementService;
+import fr.diginamic.hello.services.ArtefactsExportService;
+import fr.diginamic.hello.services.ExportService;
+import fr.diginamic.hello.services.ImportService;
+import fr.diginamic.hello.services.VersionDonneesService;
 import fr.diginamic.hello.services.VilleService;
-import fr.diginamic.hello.utils.CSVGenerator;
-import fr.diginamic.hello.utils.PDFGenerator;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -26,8 +32,14 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindingResult;
 import org.springframework.validation.ObjectError;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -42,32 +54,87 @@ public class VilleRestController {
     @Autowired
     private VilleService villeService;
 
-    /** Classe utilitaire permettant de mapper les propriétés des entités en fichier CSV */
+    /** Service d'export des données en fichiers */
     @Autowired
-    private CSVGenerator csvGenerator;
+    private ExportService exportService;
 
-    /** Service de gestion des départements */
+    /** Service des exports complets précompressés */
     @Autowired
-    private DepartementService departementService;
+    private ArtefactsExportService artefactsExport;
+
+    /** Service d'import des villes en masse */
+    @Autowired
+    private ImportService importService;
+
+    /** Version des données, qui sert d'ETag aux listes et aux exports */
+    @Autowired
+    private VersionDonneesService versionDonnees;
 
     /**
      * Récupère une liste d'objets Ville.
-     * @return liste de villes
+     * Réponse conditionnelle : 304 si la version des données n'a pas changé depuis l'ETag envoyé par le client.
+     * @param triNom trie les villes par nom selon l'ordre alphabétique français
+     * @param requete requête HTTP, pour l'en-tête If-None-Match
+     * @return liste de villes, null si le client est à jour
      * @throws RessourceNotFoundException aucune ville n'a pu être trouvée
      */
     @Operation(summary = "Récupération des villes")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200",
-                    description = "Retourne un tableau JSON des villes",
+                    description = "Retourne un tableau des villes, en JSON ou en CBOR/Smile selon l'en-tête Accept",
                     content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = VilleDto.class)),
+                            @Content(mediaType = FormatsBinairesConfig.APPLICATION_CBOR,
+                            schema = @Schema(implementation = VilleDto.class)),
+                            @Content(mediaType = FormatsBinairesConfig.APPLICATION_SMILE,
                             schema = @Schema(implementation = VilleDto.class))}),
+            @ApiResponse(responseCode = "304",
+                    description = "Les villes n'ont pas changé depuis la version connue du client"),
             @ApiResponse(responseCode = "404",
                     description = "Une ressource n'a pas été trouvée")
     })
     @GetMapping("/liste")
-    public List<VilleDto> getVilles() throws RessourceNotFoundException {
-        List<Ville> villes = villeService.getVilles();
-        return VilleMapper.toDtos(villes);
+    public List<VilleDto> getVilles(@RequestParam(defaultValue = "false") boolean triNom, WebRequest requete) throws RessourceNotFoundException {
+        if (versionDonnees.estAJour(requete, triNom ? "villes-tri-nom" : "villes")) {
+            return null;
+        }
+
+        return triNom ? villeService.getVilleDtosTrieesParNom() : villeService.getVilleDtos();
+    }
+
+    /**
+     * Récupère toutes les villes en flux NDJSON, pour un client qui envoie Accept: application/x-ndjson.
+     * Les villes sont lues par curseur et écrites au fil de l'eau, dans l'ordre de la base :
+     * la mémoire utilisée ne dépend pas du nombre de villes et le premier octet part sans attendre la dernière ville.
+     * Réponse conditionnelle : 304 si la version des données n'a pas changé depuis l'ETag envoyé par le client.
+     * @param requete requête HTTP, pour l'en-tête If-None-Match
+     * @param response réponse HTTP dans laquelle les villes sont écrites
+     * @throws IOException exception liée à une erreur I/O
+     * @throws RessourceNotFoundException aucune ville n'a pu être trouvée
+     */
+    @Operation(summary = "Récupération des villes en flux NDJSON")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200",
+                    description = "Retourne les villes, un objet JSON par ligne",
+                    content = {@Content(mediaType = MediaType.APPLICATION_NDJSON_VALUE,
+                            schema = @Schema(implementation = VilleDto.class))}),
+            @ApiResponse(responseCode = "304",
+                    description = "Les villes n'ont pas changé depuis la version connue du client"),
+            @ApiResponse(responseCode = "404",
+                    description = "Une ressource n'a pas été trouvée")
+    })
+    @GetMapping(value = "/liste", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void getVillesNdjson(WebRequest requete, HttpServletResponse response) throws IOException, RessourceNotFoundException {
+        if (versionDonnees.estAJour(requete, "villes-ndjson")) {
+            return;
+        }
+
+        exportService.verifierExportVilles();
+
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        exportService.exporterVillesNdjson(response.getOutputStream());
+        response.flushBuffer();
     }
 
     /**
@@ -90,8 +157,31 @@ public class VilleRestController {
     })
     @GetMapping("/liste/pagination")
     public List<VilleDto> getVillesPagination(@RequestParam int n) throws RessourceNotFoundException, RequeteIncorrecteException {
-        List<Ville> villes = villeService.getVillesPagination(n);
-        return VilleMapper.toDtos(villes);
+        return villeService.getVilleDtosPagination(n);
+    }
+
+    /**
+     * Récupère une page de villes triées par nom avec une pagination par curseur.
+     * @param after curseur renvoyé avec la page précédente (absent pour la première page)
+     * @param size nombre d'éléments de la page
+     * @return page de villes et curseur de la page suivante
+     * @throws RessourceNotFoundException aucune ville n'a pu être trouvée
+     * @throws RequeteIncorrecteException les paramètres de pagination donnés sont invalides
+     */
+    @Operation(summary = "Récupération des villes avec pagination par curseur")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200",
+                    description = "Retourne une page JSON de villes et le curseur de la page suivante (null sur la dernière page)",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = PageCurseurDto.class))}),
+            @ApiResponse(responseCode = "404",
+                    description = "Une ressource n'a pas été trouvée"),
+            @ApiResponse(responseCode = "400",
+                    description = "Erreur dans les paramètres donnés par le client")
+    })
+    @GetMapping(value = "/liste/pagination", params = "size")
+    public PageCurseurDto<VilleDto> getVillesPaginationCurseur(@RequestParam(required = false) String after, @RequestParam int size) throws RessourceNotFoundException, RequeteIncorrecteException {
+        return villeService.getVilleDtosPaginationCurseur(after, size);
     }
 
     /**
@@ -115,7 +205,7 @@ public class VilleRestController {
     // URL paramétrée
     @GetMapping("/{id}")
     public VilleDto getVilleById(@PathVariable long id) throws RessourceNotFoundException, RequeteIncorrecteException {
-        return VilleMapper.toDto(villeService.getVilleById(id));
+        return villeService.getVilleDtoById(id);
     }
 
     /**
@@ -138,25 +228,31 @@ public class VilleRestController {
     })
     @GetMapping("/nom/{nom}")
     public List<VilleDto> getVillesByNom(@PathVariable String nom) throws RessourceNotFoundException, RequeteIncorrecteException {
-        List<Ville> villes = villeService.getVillesByNom(nom);
-        return VilleMapper.toDtos(villes);
+        return villeService.getVilleDtosByNom(nom);
     }
 
     /**
      * Ajoute une ville aux villes enregistrées.
+     * Par défaut, toutes les villes sont renvoyées ; avec l'en-tête Prefer: return=representation (RFC 7240),
+     * seule la ville créée est renvoyée, avec un statut 201 et son URL dans l'en-tête Location.
      * @param villeDto objet DTO ville
      * @param result objet injecté par Spring Validation pour vérifier la validité des champs de ville
-     * @return une liste de villes
+     * @param prefer valeurs de l'en-tête Prefer, null s'il est absent
+     * @return une liste de villes, ou la ville créée
      * @throws RessourceNotFoundException aucune ville n'a pu être trouvée
      * @throws RequeteIncorrecteException la ville modifiée passée en paramètre n'a pas un format valide
      * @throws RessourceExistanteException la ville à ajouter existe déjà dans la base de données
      */
-    @Operation(summary = "Création et ajout d'une ville")
+    @Operation(summary = "Création et ajout d'une ville (réponse limitée à la ville créée avec l'en-tête Prefer: return=representation)")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200",
                     description = "Retourne un tableau JSON de villes, ville ajoutée incluse",
                     content = {@Content(mediaType = "application/json",
                             schema = @Schema(implementation = VilleDto.class))}),
+            @ApiResponse(responseCode = "201",
+                    description = "Retourne la ville créée ; son URL est dans l'en-tête Location",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = VilleDto.class))}),
             @ApiResponse(responseCode = "404",
                     description = "Une ressource n'a pas été trouvée"),
             @ApiResponse(responseCode = "409",
@@ -165,15 +261,125 @@ public class VilleRestController {
                     description = "Erreur dans les paramètres donnés par le client")
     })
     @PostMapping
-    public List<VilleDto> addVille(@Valid @RequestBody VilleDto villeDto, BindingResult result) throws RessourceNotFoundException, RequeteIncorrecteException, RessourceExistanteException {
+    public ResponseEntity<?> addVille(@Valid @RequestBody VilleDto villeDto, BindingResult result,
+                                      @RequestHeader(value = PreferenceRetour.PREFER, required = false) List<String> prefer) throws RessourceNotFoundException, RequeteIncorrecteException, RessourceExistanteException {
         if (result.hasErrors()) {
             throw new RequeteIncorrecteException(result.getAllErrors().stream().map(ObjectError::getDefaultMessage).collect(Collectors.joining(", ")));
         }
 
-        villeService.insertVille(VilleMapper.toEntity(villeDto));
+        Ville ville = villeService.insertVille(VilleMapper.toEntity(villeDto));
+
+        if (PreferenceRetour.demandeRepresentation(prefer)) {
+            URI location = ServletUriComponentsBuilder.fromCurrentRequest().path("/{id}").buildAndExpand(ville.getId()).toUri();
+            return ResponseEntity.created(location)
+                    .header(PreferenceRetour.PREFERENCE_APPLIED, PreferenceRetour.RETURN_REPRESENTATION)
+                    .body(VilleMapper.toDto(ville));
+        }
+        return ResponseEntity.ok(villeService.getVilleDtos());
+    }
+
+    /**
+     * Ajoute un lot de villes en une transaction et ne renvoie que les villes créées.
+     * Le lot est refusé en entier si une ville est invalide, en doublon ou rattachée à un département inconnu.
+     * @param villeDtos liste d'objets DTO ville
+     * @return les villes créées, avec un statut 201
+     * @throws RessourceNotFoundException un département n'a pas pu être trouvé
+     * @throws RequeteIncorrecteException le lot est vide
+     * @throws RessourceExistanteException une ville du lot existe déjà
+     */
+    @Operation(summary = "Création d'un lot de villes, réponse limitée aux villes créées")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "201",
+                    description = "Retourne un tableau JSON des villes créées",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = VilleDto.class))}),
+            @ApiResponse(responseCode = "404",
+                    description = "Une ressource n'a pas été trouvée"),
+            @ApiResponse(responseCode = "409",
+                    description = "Une ressource identique existe déjà"),
+            @ApiResponse(responseCode = "400",
+                    description = "Erreur dans les paramètres donnés par le client")
+    })
+    @PostMapping("/lot")
+    public ResponseEntity<List<VilleDto>> addVilles(@RequestBody List<@Valid VilleDto> villeDtos) throws RessourceNotFoundException, RequeteIncorrecteException, RessourceExistanteException {
+        List<Ville> villes = new ArrayList<>();
+        for (VilleDto villeDto : villeDtos) {
+            villes.add(VilleMapper.toEntity(villeDto));
+        }
+
+        return ResponseEntity.status(HttpStatus.CREATED).body(VilleMapper.toDtos(villeService.insertVilles(villes)));
+    }
 
-        List<Ville> villes = villeService.getVilles();
-        return VilleMapper.toDtos(villes);
+    /**
+     * Importe une liste de villes en masse. Les lignes invalides ou déjà existantes sont rejetées
+     * sans bloquer l'import des autres.
+     * @param villes liste d'objets DTO ville
+     * @return bilan de l'import
+     * @throws RequeteIncorrecteException aucune ville à importer
+     */
+    @Operation(summary = "Import en masse de villes au format JSON")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200",
+                    description = "Retourne le bilan de l'import : nombre de villes importées et lignes rejetées",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = RapportImportDto.class))}),
+            @ApiResponse(responseCode = "400",
+                    description = "Erreur dans les paramètres donnés par le client")
+    })
+    @PostMapping(value = "/import", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public RapportImportDto importerVilles(@RequestBody List<VilleDto> villes) throws RequeteIncorrecteException {
+        return importService.importerVilles(villes);
+    }
+
+    /**
+     * Importe en masse les villes d'un fichier CSV au format de l'export
+     * (nom, nombre d'habitants, code département[, nom du département]).
+     * @param fichier fichier CSV encodé en UTF-8
+     * @return bilan de l'import
+     * @throws IOException erreur de lecture du fichier
+     * @throws RequeteIncorrecteException aucune ville à importer
+     */
+    @Operation(summary = "Import en masse de villes depuis un fichier CSV")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200",
+                    description = "Retourne le bilan de l'import : nombre de villes importées et lignes rejetées",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = RapportImportDto.class))}),
+            @ApiResponse(responseCode = "400",
+                    description = "Erreur dans les paramètres donnés par le client")
+    })
+    @PostMapping(value = "/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public RapportImportDto importerVillesCsv(@RequestParam MultipartFile fichier) throws IOException, RequeteIncorrecteException {
+        return importService.importerVillesCsv(fichier.getInputStream());
+    }
+
+    /**
+     * Ajoute une ville, ou met à jour son nombre d'habitants si une ville de même nom
+     * existe déjà dans le département.
+     * @param villeDto objet DTO ville
+     * @param result objet injecté par Spring Validation pour vérifier la validité des champs de ville
+     * @return la ville enregistrée
+     * @throws RessourceNotFoundException le département de la ville n'a pas pu être trouvé
+     * @throws RequeteIncorrecteException la ville passée en paramètre n'a pas un format valide
+     */
+    @Operation(summary = "Ajout ou mise-à-jour d'une ville identifiée par son nom et son département")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200",
+                    description = "Retourne la ville enregistrée",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = VilleDto.class))}),
+            @ApiResponse(responseCode = "404",
+                    description = "Une ressource n'a pas été trouvée"),
+            @ApiResponse(responseCode = "400",
+                    description = "Erreur dans les paramètres donnés par le client")
+    })
+    @PutMapping
+    public VilleDto upsertVille(@Valid @RequestBody VilleDto villeDto, BindingResult result) throws RessourceNotFoundException, RequeteIncorrecteException {
+        if (result.hasErrors()) {
+            throw new RequeteIncorrecteException(result.getAllErrors().stream().map(ObjectError::getDefaultMessage).collect(Collectors.joining(", ")));
+        }
+
+        return VilleMapper.toDto(villeService.upsertVille(VilleMapper.toEntity(villeDto)));
     }
 
     /**
@@ -230,6 +436,32 @@ public class VilleRestController {
         return ResponseEntity.ok(String.format("La ville d'id %s a été supprimée avec succès.", id));
     }
 
+    /**
+     * Supprime en masse les villes correspondant aux filtres donnés (au moins un filtre requis).
+     * @param codeDep code du département
+     * @param min nombre minimum d'habitants (inclus)
+     * @param max nombre maximum d'habitants (inclus)
+     * @return le statut HTTP de la requête accompagné d'un message
+     * @throws RessourceNotFoundException aucune ville ne correspond aux filtres
+     * @throws RequeteIncorrecteException aucun filtre ou filtres incohérents
+     */
+    @Operation(summary = "Suppression en masse des villes correspondant à des filtres")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200",
+                    description = "Retourne un message indiquant le nombre de villes supprimées",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = String.class))}),
+            @ApiResponse(responseCode = "404",
+                    description = "Aucune ville ne correspond aux filtres"),
+            @ApiResponse(responseCode = "400",
+                    description = "Erreur dans les paramètres donnés par le client")
+    })
+    @DeleteMapping
+    public ResponseEntity<String> deleteVillesByFiltre(@RequestParam(required = false) String codeDep, @RequestParam(required = false) Integer min, @RequestParam(required = false) Integer max) throws RessourceNotFoundException, RequeteIncorrecteException {
+        int nbSupprimees = villeService.deleteVillesByFiltre(codeDep, min, max);
+        return ResponseEntity.ok(String.format("%d ville(s) supprimée(s) avec succès.", nbSupprimees));
+    }
+
     /**
      * Récupère les villes dont le nom commence par le préfixe donné.
      * @param prefixe String
@@ -250,8 +482,32 @@ public class VilleRestController {
     })
     @GetMapping("/prefixe_nom")
     public List<VilleDto> getVillesByNomStartingWith(@RequestParam String prefixe) throws RessourceNotFoundException, RequeteIncorrecteException {
-        List<Ville> villes = villeService.extractVillesByNomStartingWith(prefixe);
-        return VilleMapper.toDtos(villes);
+        return villeService.extractVilleDtosByNomStartingWith(prefixe);
+    }
+
+    /**
+     * Suggère les villes les plus peuplées dont le nom commence par un préfixe donné,
+     * sans tenir compte de la casse ni des accents.
+     * @param prefixe début du nom de la ville
+     * @param k nombre maximum de suggestions
+     * @return liste de villes triées par nombre d'habitants décroissant
+     * @throws RessourceNotFoundException aucune ville n'a pu être trouvée
+     * @throws RequeteIncorrecteException préfixe ou nombre de suggestions incorrect
+     */
+    @Operation(summary = "Autocomplétion des noms de villes, insensible à la casse et aux accents")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200",
+                    description = "Retourne un tableau JSON des villes les plus peuplées commençant par le préfixe donné",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = VilleDto.class))}),
+            @ApiResponse(responseCode = "404",
+                    description = "Une ressource n'a pas été trouvée"),
+            @ApiResponse(responseCode = "400",
+                    description = "Erreur dans les paramètres donnés par le client")
+    })
+    @GetMapping("/autocompletion")
+    public List<VilleDto> getVillesAutocompletion(@RequestParam String prefixe, @RequestParam(defaultValue = "10") int k) throws RessourceNotFoundException, RequeteIncorrecteException {
+        return villeService.autocompleterVilles(prefixe, k);
     }
 
     /**
@@ -274,8 +530,7 @@ public class VilleRestController {
     })
     @GetMapping("/nb_habitants/{min}")
     public List<VilleDto> getVillesByNbHabGreaterThan(@PathVariable int min) throws RessourceNotFoundException, RequeteIncorrecteException {
-        List<Ville> villes = villeService.extractVillesByNbHabGreaterThan(min);
-        return VilleMapper.toDtos(villes);
+        return villeService.extractVilleDtosByNbHabGreaterThan(min);
     }
 
     /**
@@ -299,8 +554,7 @@ public class VilleRestController {
     })
     @GetMapping("/nb_habitants")
     public List<VilleDto> getVillesByNbHabBetween(@RequestParam int min, @RequestParam int max) throws RessourceNotFoundException, RequeteIncorrecteException {
-        List<Ville> villes = villeService.extractVillesByNbHabBetween(min, max);
-        return VilleMapper.toDtos(villes);
+        return villeService.extractVilleDtosByNbHabBetween(min, max);
     }
 
     /**
@@ -324,8 +578,7 @@ public class VilleRestController {
     })
     @GetMapping("/dept_nb_hab/{code_dept}/{min}")
     public List<VilleDto> getVillesByDepartementAndNbHabGreaterThan(@PathVariable String code_dept, @PathVariable int min) throws RessourceNotFoundException, RequeteIncorrecteException {
-        List<Ville> villes = villeService.extractVillesByDepartementCodeAndNbHabGreaterThan(code_dept, min);
-        return VilleMapper.toDtos(villes);
+        return villeService.extractVilleDtosByDepartementCodeAndNbHabGreaterThan(code_dept, min);
     }
 
     /**
@@ -351,8 +604,7 @@ public class VilleRestController {
     })
     @GetMapping("/dept_nb_hab/{code_dept}/{min}/{max}")
     public List<VilleDto> getVillesByDepartmentCodeAndNbHabBetween(@PathVariable String code_dept, @PathVariable Integer min, @PathVariable Integer max) throws RessourceNotFoundException, RequeteIncorrecteException {
-        List<Ville> villes = villeService.extractVillesByDepartementCodeAndNbHabBetween(code_dept, min,max);
-        return VilleMapper.toDtos(villes);
+        return villeService.extractVilleDtosByDepartementCodeAndNbHabBetween(code_dept, min, max);
     }
 
     /**
@@ -376,13 +628,17 @@ public class VilleRestController {
     })
     @GetMapping("/dept_order_nb_hab/{code_dept}")
     public List<VilleDto> getNVillesByDepartmentCodeOrderByNbHabDesc(@PathVariable String code_dept, @RequestParam Integer n) throws RessourceNotFoundException, RequeteIncorrecteException {
-        List<Ville> villes = villeService.extractVillesByDepartementCodeOrderByNbHabDesc(code_dept, n);
-        return VilleMapper.toDtos(villes);
+        return villeService.extractVilleDtosByDepartementCodeOrderByNbHabDesc(code_dept, n);
     }
 
     /**
-     * Convertit les données des villes en fichier CSV.
-     * @return fichier CSV
+     * Convertit les données des villes en fichier CSV, généré une fois par version des données
+     * et envoyé compressé en gzip si le client l'accepte.
+     * Réponse conditionnelle : 304 si la version des données n'a pas changé depuis l'ETag envoyé par le client.
+     * @param requete requête HTTP, pour l'en-tête If-None-Match
+     * @param request requête HTTP, pour l'en-tête Accept-Encoding
+     * @param response réponse HTTP dans laquelle le fichier CSV est écrit
+     * @throws IOException exception liée à une erreur I/O
      * @throws RessourceNotFoundException aucune ville n'a pu être trouvée
      */
     @Operation(summary = "Conversion des villes en fichier CSV")
@@ -393,21 +649,25 @@ public class VilleRestController {
                     description = "Une ressource n'a pas été trouvée")
     })
     @GetMapping("/csv/villes")
-    public ResponseEntity<String> generateCsvFile() throws RessourceNotFoundException {
-        List<Ville> villes = villeService.getVilles();
+    public void generateCsvFile(WebRequest requete, HttpServletRequest request, HttpServletResponse response) throws IOException, RessourceNotFoundException {
+        if (versionDonnees.estAJour(requete, artefactsExport.getVariante("villes-csv", request))) {
+            return;
+        }
 
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
-        headers.setContentDispositionFormData("attachment", "all-villes.csv");
+        exportService.verifierExportVilles();
 
-        String csvBytes = csvGenerator.generateCSVVille(villes);
-        return new ResponseEntity<>(csvBytes, headers, HttpStatus.OK);
+        preparerReponseCsv(response, "all-villes.csv");
+        artefactsExport.envoyer("villes-csv", exportService::exporterVillesCsv, request, response);
+        response.flushBuffer();
     }
 
     /**
      * Convertit les données des villes de plus de N habitants en fichier CSV.
+     * Réponse conditionnelle : 304 si la version des données n'a pas changé depuis l'ETag envoyé par le client.
      * @param minHab nombre minimum d'habitants
-     * @return fichier CSV
+     * @param requete requête HTTP, pour l'en-tête If-None-Match
+     * @param response réponse HTTP dans laquelle le fichier CSV est écrit
+     * @throws IOException exception liée à une erreur I/O
      * @throws RessourceNotFoundException aucune ville n'a pu être trouvée
      * @throws RequeteIncorrecteException le nombre minimal d'habitants donné est incorrect
      */
@@ -421,20 +681,23 @@ public class VilleRestController {
                     description = "Erreur dans les paramètres donnés par le client")
     })
     @GetMapping("/csv")
-    public ResponseEntity<String> generateCsvFile(@RequestParam("min") int minHab) throws RessourceNotFoundException, RequeteIncorrecteException {
-        List<Ville> villes = villeService.extractVillesByNbHabGreaterThan(minHab);
+    public void generateCsvFile(@RequestParam("min") int minHab, WebRequest requete, HttpServletResponse response) throws IOException, RessourceNotFoundException, RequeteIncorrecteException {
+        if (versionDonnees.estAJour(requete, "villes-csv-" + minHab)) {
+            return;
+        }
 
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
-        headers.setContentDispositionFormData("attachment", String.format("villes-%shab.csv", minHab));
+        exportService.verifierExportVilles(minHab);
 
-        String csvBytes = csvGenerator.generateCSVVille(villes);
-        return new ResponseEntity<>(csvBytes, headers, HttpStatus.OK);
+        preparerReponseCsv(response, String.format("villes-%shab.csv", minHab));
+        exportService.exporterVillesCsv(minHab, response.getOutputStream());
+        response.flushBuffer();
     }
 
     /**
-     * Convertit les données des villes d'un département en document PDF.
+     * Convertit les données des villes d'un département en document PDF, écrit en flux dans la réponse.
+     * Réponse conditionnelle : 304 si la version des données n'a pas changé depuis l'ETag envoyé par le client.
      * @param codeDept code du département
+     * @param requete requête HTTP, pour l'en-tête If-None-Match
      * @param response réponse HTTP qui sera renvoyée
      * @throws IOException exception liée à une erreur I/O
      * @throws DocumentException erreur liée à la manipulation du document iText
@@ -451,11 +714,30 @@ public class VilleRestController {
                     description = "Erreur dans les paramètres donnés par le client")
     })
     @GetMapping("/pdf")
-    public void generatePdfFile(@RequestParam("code_dep") String codeDept, HttpServletResponse response) throws IOException, DocumentException, RessourceNotFoundException, RequeteIncorrecteException {
-        List<Ville> villes = villeService.extractVillesByDepartementCodeOrderByNbHabDesc(codeDept, departementService.getDepartementByCode(codeDept).getVilles().size());
-        response.setHeader("Content-Disposition", String.format("attachment; filename=\"villes-%s.pdf\"", villes.getFirst().getDepartement().getNom()));
-        PDFGenerator.generateDocumentPdfVilles(response, villes);
+    public void generatePdfFile(@RequestParam("code_dep") String codeDept, WebRequest requete, HttpServletResponse response) throws IOException, DocumentException, RessourceNotFoundException, RequeteIncorrecteException {
+        // Le code est une variante de l'URL : seuls les caractères sûrs dans un ETag sont conservés
+        if (versionDonnees.estAJour(requete, "villes-pdf-" + codeDept.replaceAll("[^0-9A-Za-z]", ""))) {
+            return;
+        }
+
+        String nomDepartement = exportService.verifierExportVillesPdf(codeDept);
+
+        response.setContentType(MediaType.APPLICATION_PDF_VALUE);
+        response.setHeader("Content-Disposition", String.format("attachment; filename=\"villes-%s.pdf\"", nomDepartement));
+        exportService.exporterVillesPdf(codeDept, nomDepartement, response.getOutputStream());
 
         response.flushBuffer();
     }
+
+    /**
+     * Positionne les en-têtes d'un téléchargement CSV, avant l'écriture du contenu en flux.
+     * @param response réponse HTTP
+     * @param nomFichier nom du fichier téléchargé
+     */
+    private void preparerReponseCsv(HttpServletResponse response, String nomFichier) {
+        // text/csv plutôt que application/octet-stream : le type est compressible par server.compression
+        response.setContentType("text/csv");
+        response.setCharacterEncoding(StandardCharsets.UTF_8);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.formData().name("attachment").filename(nomFichier).build().toString());
+    }
 }
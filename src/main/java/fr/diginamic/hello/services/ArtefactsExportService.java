@@ -0,0 +1,315 @@
+package fr.diginamic.hello.services;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Enumeration;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Classe service gérant les exports complets précompressés.
+ * Chaque export est écrit sur disque une fois par version des données, en clair et compressé en gzip,
+ * puis envoyé tel quel à chaque téléchargement : ni requête en base, ni compression à la volée.
+ * Sous Tomcat, le fichier est transmis par sendfile, sans copie dans la mémoire de l'application.
+ * Une écriture fait avancer la version des données : l'export suivant régénère les fichiers.
+ * Les fichiers remplacés sont conservés un délai de grâce : Tomcat n'ouvre le fichier envoyé par sendfile
+ * qu'après le retour du contrôleur, et un chemin déjà transmis doit encore exister à ce moment-là.
+ */
+@Service
+public class ArtefactsExportService {
+    /** Attributs de requête de Tomcat pour l'envoi d'un fichier par sendfile */
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FICHIER = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_DEBUT = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_FIN = "org.apache.tomcat.sendfile.end";
+
+    /** Encodage gzip, seul encodage précompressé */
+    private static final String GZIP = "gzip";
+
+    /** Taille du tampon d'écriture des fichiers */
+    private static final int TAILLE_TAMPON = 64 * 1024;
+
+    /** Version des données, qui date les fichiers */
+    @Autowired
+    private VersionDonneesService versionDonnees;
+
+    /** Active les exports précompressés ; à false, les exports sont écrits en flux à chaque requête */
+    @Value("${recensement.exports.precompresses.actif:false}")
+    private boolean actif;
+
+    /** Répertoire des fichiers d'export */
+    @Value("${recensement.exports.repertoire:${java.io.tmpdir}/recensement-exports}")
+    private Path repertoire;
+
+    /** Délai de conservation d'un fichier remplacé, le temps que les envois qui l'ont reçu l'ouvrent */
+    @Value("${recensement.exports.delai-suppression:5m}")
+    private Duration delaiSuppression;
+
+    /** Dernier fichier généré par export */
+    private final ConcurrentMap<String, Artefact> artefacts = new ConcurrentHashMap<>();
+
+    /** Fichiers remplacés, dans l'ordre de leur remplacement, supprimés une fois le délai de grâce écoulé */
+    private final Queue<Remplace> remplaces = new ConcurrentLinkedQueue<>();
+
+    /** Verrou par export : une seule génération à la fois, les autres requêtes attendent son résultat */
+    private final ConcurrentMap<String, ReentrantLock> verrous = new ConcurrentHashMap<>();
+
+    /**
+     * Complète la variante d'ETag d'un export par l'encodage envoyé au client,
+     * les contenus clair et compressé étant deux représentations différentes.
+     * @param variante variante de l'export
+     * @param request requête HTTP, pour l'en-tête Accept-Encoding
+     * @return variante de l'ETag
+     */
+    public String getVariante(String variante, HttpServletRequest request) {
+        return actif && accepteGzip(request) ? variante + "-" + GZIP : variante;
+    }
+
+    /**
+     * Envoie un export dans la réponse : le fichier de la version courante, généré s'il n'existe pas encore,
+     * compressé si le client accepte gzip. Les en-têtes du téléchargement doivent déjà être positionnés.
+     * @param variante variante de l'export, qui nomme ses fichiers
+     * @param export écriture de l'export dans un flux
+     * @param request requête HTTP
+     * @param response réponse HTTP
+     * @throws IOException erreur d'écriture du fichier ou de la réponse
+     */
+    public void envoyer(String variante, Export export, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (!actif) {
+            export.ecrire(response.getOutputStream());
+            return;
+        }
+
+        Artefact artefact = getArtefact(variante, export);
+        Path fichier = artefact.brut();
+        response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        // Avec un Content-Encoding déjà positionné, Tomcat ne compresse pas la réponse une seconde fois
+        if (accepteGzip(request)) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, GZIP);
+            fichier = artefact.gzip();
+        }
+
+        long taille = Files.size(fichier);
+        response.setContentLengthLong(taille);
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FICHIER, fichier.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_DEBUT, 0L);
+            request.setAttribute(SENDFILE_FIN, taille);
+        }
+        else {
+            Files.copy(fichier, response.getOutputStream());
+        }
+    }
+
+    /**
+     * Supprime les fichiers d'export à l'arrêt de l'application.
+     */
+    @PreDestroy
+    public void supprimer() {
+        artefacts.values().forEach(Artefact::supprimer);
+        remplaces.forEach(remplace -> remplace.artefact().supprimer());
+    }
+
+    /**
+     * Donne les fichiers de la version courante d'un export, en les générant si besoin.
+     * La version est lue avant la génération : une écriture concurrente rend les fichiers périmés,
+     * jamais l'inverse.
+     * @param variante variante de l'export
+     * @param export écriture de l'export dans un flux
+     * @return fichiers de l'export
+     * @throws IOException erreur d'écriture des fichiers
+     */
+    private Artefact getArtefact(String variante, Export export) throws IOException {
+        Artefact artefact = artefacts.get(variante);
+        if (artefact != null && artefact.version().equals(versionDonnees.getETag(variante))) {
+            return artefact;
+        }
+
+        // ReentrantLock plutôt que synchronized : un thread virtuel en attente libère son thread porteur
+        ReentrantLock verrou = verrous.computeIfAbsent(variante, v -> new ReentrantLock());
+        verrou.lock();
+        try {
+            String version = versionDonnees.getETag(variante);
+            artefact = artefacts.get(variante);
+            if (artefact != null && artefact.version().equals(version)) {
+                return artefact;
+            }
+
+            Artefact nouveau = generer(variante, version, export);
+            Artefact remplace = artefacts.put(variante, nouveau);
+            if (remplace != null) {
+                remplaces.add(new Remplace(remplace, Instant.now()));
+            }
+            purgerRemplaces();
+            return nouveau;
+        }
+        finally {
+            verrou.unlock();
+        }
+    }
+
+    /**
+     * Supprime les fichiers remplacés depuis plus que le délai de grâce.
+     * Plusieurs générations d'un même export peuvent coexister si les écritures s'enchaînent :
+     * aucune n'est supprimée tant qu'un envoi récent peut encore l'ouvrir.
+     * La purge a lieu à chaque génération ; sans nouvelle génération, les derniers fichiers remplacés
+     * attendent la suivante ou l'arrêt de l'application.
+     */
+    private void purgerRemplaces() {
+        Instant limite = Instant.now().minus(delaiSuppression);
+        Remplace remplace;
+        while ((remplace = remplaces.peek()) != null && remplace.date().isBefore(limite)) {
+            if (remplaces.remove(remplace)) {
+                remplace.artefact().supprimer();
+            }
+        }
+    }
+
+    /**
+     * Écrit l'export dans un fichier, puis le compresse dans un second fichier.
+     * @param variante variante de l'export
+     * @param version version des données exportées
+     * @param export écriture de l'export dans un flux
+     * @return fichiers de l'export
+     * @throws IOException erreur d'écriture des fichiers
+     */
+    private Artefact generer(String variante, String version, Export export) throws IOException {
+        Files.createDirectories(repertoire);
+        Artefact artefact = new Artefact(version, Files.createTempFile(repertoire, variante + "-", ".dat"),
+                Files.createTempFile(repertoire, variante + "-", ".gz"));
+        try {
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(artefact.brut()), TAILLE_TAMPON)) {
+                export.ecrire(out);
+            }
+
+            // Compression maximale : elle n'est payée qu'une fois par version des données
+            try (InputStream in = Files.newInputStream(artefact.brut());
+                 OutputStream out = new GZIPOutputStream(Files.newOutputStream(artefact.gzip()), TAILLE_TAMPON) {
+                     {
+                         def.setLevel(Deflater.BEST_COMPRESSION);
+                     }
+                 }) {
+                in.transferTo(out);
+            }
+            return artefact;
+        }
+        catch (IOException | RuntimeException e) {
+            artefact.supprimer();
+            throw e;
+        }
+    }
+
+    /**
+     * Indique si le client accepte une réponse compressée en gzip, d'après les codages et poids q
+     * de l'en-tête Accept-Encoding : gzip (ou x-gzip) nommé avec q > 0, ou à défaut * avec q > 0.
+     * gzip;q=0 refuse explicitement le gzip, même si * est accepté.
+     * @param request requête HTTP
+     * @return boolean
+     */
+    private static boolean accepteGzip(HttpServletRequest request) {
+        Double poidsGzip = null;
+        Double poidsTous = null;
+        Enumeration<String> valeurs = request.getHeaders(HttpHeaders.ACCEPT_ENCODING);
+        while (valeurs != null && valeurs.hasMoreElements()) {
+            for (String element : valeurs.nextElement().split(",")) {
+                String[] parties = element.split(";");
+                String codage = parties[0].trim().toLowerCase(Locale.ROOT);
+                double poids = getPoids(parties);
+                if (Double.isNaN(poids)) {
+                    continue;
+                }
+                if (codage.equals(GZIP) || codage.equals("x-" + GZIP)) {
+                    poidsGzip = poidsGzip == null ? poids : Math.max(poidsGzip, poids);
+                }
+                else if (codage.equals("*")) {
+                    poidsTous = poids;
+                }
+            }
+        }
+
+        if (poidsGzip != null) {
+            return poidsGzip > 0;
+        }
+        return poidsTous != null && poidsTous > 0;
+    }
+
+    /**
+     * Poids q d'un élément d'en-tête Accept-Encoding, 1 par défaut.
+     * @param parties codage suivi de ses paramètres
+     * @return poids, NaN s'il est incorrect
+     */
+    private static double getPoids(String[] parties) {
+        for (int i = 1; i < parties.length; i++) {
+            String parametre = parties[i].trim();
+            if (parametre.length() > 2 && Character.toLowerCase(parametre.charAt(0)) == 'q' && parametre.charAt(1) == '=') {
+                try {
+                    double poids = Double.parseDouble(parametre.substring(2));
+                    return poids >= 0 && poids <= 1 ? poids : Double.NaN;
+                }
+                catch (NumberFormatException e) {
+                    return Double.NaN;
+                }
+            }
+        }
+        return 1;
+    }
+
+    /**
+     * Écriture d'un export dans un flux.
+     */
+    @FunctionalInterface
+    public interface Export {
+        /**
+         * Écrit l'export dans le flux, sans le fermer.
+         * @param out flux de sortie
+         * @throws IOException erreur d'écriture
+         */
+        void ecrire(OutputStream out) throws IOException;
+    }
+
+    /**
+     * Fichiers d'une version d'un export.
+     * @param version ETag des données exportées
+     * @param brut fichier en clair
+     * @param gzip fichier compressé en gzip
+     */
+    private record Artefact(String version, Path brut, Path gzip) {
+        private void supprimer() {
+            try {
+                Files.deleteIfExists(brut);
+                Files.deleteIfExists(gzip);
+            }
+            catch (IOException e) {
+                // Fichier temporaire : il reste dans le répertoire d'export jusqu'à son nettoyage
+            }
+        }
+    }
+
+    /**
+     * Fichiers d'un export remplacés par une génération plus récente.
+     * @param artefact fichiers remplacés
+     * @param date date du remplacement
+     */
+    private record Remplace(Artefact artefact, Instant date) {
+    }
+}
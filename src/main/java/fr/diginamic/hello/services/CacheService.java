@@ -0,0 +1,76 @@
+package fr.diginamic.hello.services;
+
+import fr.diginamic.hello.config.CacheConfig;
+import fr.diginamic.hello.utils.Transactions;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+
+/**
+ * Classe service vidant les caches de lecture et avançant la version des données après une écriture.
+ * Les caches sont vidés après la validation de la transaction, comme les index en mémoire :
+ * une lecture concurrente ne peut pas y remettre l'ancienne valeur avant le commit.
+ */
+@Service
+public class CacheService {
+    /** Gestionnaire des caches de lecture */
+    @Autowired
+    private CacheManager cacheManager;
+
+    /** Version des données, qui sert d'ETag */
+    @Autowired
+    private VersionDonneesService versionDonnees;
+
+    /**
+     * Vide les caches touchés par l'ajout, la modification ou la suppression d'une ville :
+     * la ville elle-même, les listes de villes, et les départements dont la population change.
+     * @param id identifiant de la ville, null pour une ville créée
+     */
+    public void viderVille(Long id) {
+        Transactions.apresCommit(() -> {
+            if (id != null) {
+                evincer(CacheConfig.VILLE, id);
+            }
+            vider(CacheConfig.VILLES, CacheConfig.VILLES_RECHERCHE, CacheConfig.DEPARTEMENTS, CacheConfig.DEPARTEMENT);
+            versionDonnees.incrementer();
+        });
+    }
+
+    /**
+     * Vide tous les caches de villes et de départements, après une écriture en masse
+     * ou la modification d'un département, dont le nom figure dans chaque ville.
+     */
+    public void viderVilles() {
+        Transactions.apresCommit(() -> {
+            vider(CacheConfig.VILLE, CacheConfig.VILLES, CacheConfig.VILLES_RECHERCHE, CacheConfig.DEPARTEMENTS, CacheConfig.DEPARTEMENT);
+            versionDonnees.incrementer();
+        });
+    }
+
+    /**
+     * Vide les caches de départements, après l'ajout d'un département sans ville.
+     */
+    public void viderDepartements() {
+        Transactions.apresCommit(() -> {
+            vider(CacheConfig.DEPARTEMENTS, CacheConfig.DEPARTEMENT);
+            versionDonnees.incrementer();
+        });
+    }
+
+    private void evincer(String nomCache, Object cle) {
+        Cache cache = cacheManager.getCache(nomCache);
+        if (cache != null) {
+            cache.evict(cle);
+        }
+    }
+
+    private void vider(String... nomsCaches) {
+        for (String nomCache : nomsCaches) {
+            Cache cache = cacheManager.getCache(nomCache);
+            if (cache != null) {
+                cache.clear();
+            }
+        }
+    }
+}
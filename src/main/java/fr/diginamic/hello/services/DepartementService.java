@@ -1,24 +1,39 @@
 package fr.diginamic.hello.services;
 
+import fr.diginamic.hello.config.CacheConfig;
+import fr.diginamic.hello.dto.DepartementDto;
+import fr.diginamic.hello.dto.PageCurseurDto;
 import fr.diginamic.hello.exceptions.RequeteIncorrecteException;
 import fr.diginamic.hello.exceptions.RessourceExistanteException;
 import fr.diginamic.hello.exceptions.RessourceNotFoundException;
+import fr.diginamic.hello.index.TableVilles;
 import fr.diginamic.hello.models.Departement;
-import fr.diginamic.hello.models.Ville;
 import fr.diginamic.hello.repositories.DepartementRepository;
 import fr.diginamic.hello.repositories.VilleRepository;
+import fr.diginamic.hello.utils.Curseur;
+import fr.diginamic.hello.utils.TriFrancais;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
 
 /**
- * Classe service de traitement des requêtes du controller au repository des départements
+ * Classe service de traitement des requêtes du controller au repository des départements.
+ * Comme pour les villes, les lectures s'exécutent dans une transaction en lecture seule
+ * et chaque écriture dans une seule transaction de lecture-écriture.
  */
 @Service
+@Transactional(readOnly = true)
 public class DepartementService {
 
     /** Repository contenant les données liées aux départements */
@@ -29,6 +44,14 @@ public class DepartementService {
     @Autowired
     private VilleRepository villeRepo;
 
+    /** Table des villes en mémoire, dont les index référencent le département des villes */
+    @Autowired
+    private TableVilles tableVilles;
+
+    /** Caches de lecture à vider après une écriture */
+    @Autowired
+    private CacheService cacheService;
+
     /**
      * Récupère les départements
      * @return liste de départements
@@ -44,6 +67,17 @@ public class DepartementService {
         return departements;
     }
 
+    /**
+     * Récupère les départements avec leur population agrégée,
+     * triés par nom selon l'ordre alphabétique français.
+     * @return liste de départements
+     * @throws RessourceNotFoundException aucun département à retourner
+     */
+    @Cacheable(cacheNames = CacheConfig.DEPARTEMENTS, sync = true)
+    public List<DepartementDto> getDepartementsAvecPopulationTriesParNom() throws RessourceNotFoundException {
+        return List.copyOf(TriFrancais.trier(getDepartementsAvecPopulation(), DepartementDto::getNomDepartement));
+    }
+
     /**
      * Récupère les départements triés par nom et paginés.
      * @param n nombre d'objets à afficher sur la page
@@ -66,6 +100,131 @@ public class DepartementService {
         return departements;
     }
 
+    /**
+     * Récupère les départements avec leur population et leur nombre de villes,
+     * agrégés par la base de données en une seule requête. Le résultat est mis en cache.
+     * @return liste immuable de départements
+     * @throws RessourceNotFoundException aucun département à retourner
+     */
+    @Cacheable(cacheNames = CacheConfig.DEPARTEMENTS, sync = true)
+    public List<DepartementDto> getDepartementsAvecPopulation() throws RessourceNotFoundException {
+        List<DepartementDto> departements = departementRepo.findAllWithPopulation();
+
+        if (departements.isEmpty()) {
+            throw new RessourceNotFoundException("Aucun département n'a été trouvé.");
+        }
+
+        return List.copyOf(departements);
+    }
+
+    /**
+     * Récupère les départements triés par nom et paginés, avec leur population agrégée par la base de données.
+     * @param n nombre d'objets à afficher sur la page
+     * @return liste de départements
+     * @throws RessourceNotFoundException aucun département à retourner
+     * @throws RequeteIncorrecteException les paramètres reçus en requête sont invalides
+     */
+    @Cacheable(cacheNames = CacheConfig.DEPARTEMENTS, sync = true)
+    public List<DepartementDto> getDepartementsAvecPopulationPagination(int n) throws RessourceNotFoundException, RequeteIncorrecteException {
+        if (n <= 0) {
+            throw new RequeteIncorrecteException("Le nombre d'éléments demandé doit être supérieur à 0.");
+        }
+
+        Pageable pagination = PageRequest.of(0, n);
+        List<DepartementDto> departements = departementRepo.findAllWithPopulationOrderByNom(pagination);
+
+        if (departements.isEmpty()) {
+            throw new RessourceNotFoundException("Aucun département n'a été trouvé.");
+        }
+
+        return List.copyOf(departements);
+    }
+
+    /**
+     * Récupère une page de départements triés par nom, avec leur population agrégée,
+     * à partir d'un curseur (pagination par clé).
+     * @param curseur curseur renvoyé avec la page précédente, null pour la première page
+     * @param taille nombre d'éléments de la page
+     * @return page de départements et curseur de la page suivante
+     * @throws RessourceNotFoundException aucun département à retourner
+     * @throws RequeteIncorrecteException les paramètres reçus en requête sont invalides
+     */
+    public PageCurseurDto<DepartementDto> getDepartementsAvecPopulationPaginationCurseur(String curseur, int taille) throws RessourceNotFoundException, RequeteIncorrecteException {
+        if (taille <= 0) {
+            throw new RequeteIncorrecteException("Le nombre d'éléments demandé doit être supérieur à 0.");
+        }
+
+        // Un élément de plus que demandé indique s'il existe une page suivante
+        Pageable pagination = PageRequest.of(0, taille + 1);
+        List<DepartementDto> departements;
+
+        if (curseur == null || curseur.isEmpty()) {
+            departements = departementRepo.findAllWithPopulationOrderByNom(pagination);
+        }
+        else {
+            Curseur position = Curseur.decoder(curseur);
+            departements = departementRepo.findAllWithPopulationAfterNomAndId(position.getNom(), position.getId(), pagination);
+        }
+
+        if (departements.isEmpty()) {
+            throw new RessourceNotFoundException("Aucun département n'a été trouvé.");
+        }
+
+        if (departements.size() <= taille) {
+            return new PageCurseurDto<>(departements, null);
+        }
+
+        List<DepartementDto> page = departements.subList(0, taille);
+        DepartementDto dernier = page.getLast();
+        return new PageCurseurDto<>(page, new Curseur(dernier.getNomDepartement(), dernier.getId()).encoder());
+    }
+
+    /**
+     * Récupère un département avec sa population agrégée à partir de son ID.
+     * @param id identifiant du département
+     * @return département
+     * @throws RessourceNotFoundException le département n'a pas pu être trouvé à partir de l'ID donné
+     * @throws RequeteIncorrecteException les paramètres reçus en requête sont invalides
+     */
+    @Cacheable(cacheNames = CacheConfig.DEPARTEMENT, sync = true)
+    public DepartementDto getDepartementAvecPopulationById(Long id) throws RessourceNotFoundException, RequeteIncorrecteException {
+        if (id == null || id < 0) {
+            throw new RequeteIncorrecteException("Il faut renseigner un id.");
+        }
+
+        Optional<DepartementDto> optDept = departementRepo.findWithPopulationById(id);
+
+        if (optDept.isPresent()) {
+            return optDept.get();
+        }
+        else {
+            throw new RessourceNotFoundException(String.format("Aucun département dont l'Id est %d n'a été trouvé.", id));
+        }
+    }
+
+    /**
+     * Récupère un département avec sa population agrégée à partir de son code.
+     * @param code code du département
+     * @return département
+     * @throws RessourceNotFoundException le département n'a pas pu être trouvé à partir du code donné
+     * @throws RequeteIncorrecteException les paramètres reçus en requête sont invalides
+     */
+    @Cacheable(cacheNames = CacheConfig.DEPARTEMENT, sync = true)
+    public DepartementDto getDepartementAvecPopulationByCode(String code) throws RessourceNotFoundException, RequeteIncorrecteException {
+        if (code == null || code.isEmpty()) {
+            throw new RequeteIncorrecteException("Le code du département doit être renseigné.");
+        }
+
+        Optional<DepartementDto> optDept = departementRepo.findWithPopulationByCode(code);
+
+        if (optDept.isPresent()) {
+            return optDept.get();
+        }
+        else {
+            throw new RessourceNotFoundException(String.format("Aucun département %s n'a été trouvé.", code));
+        }
+    }
+
     /**
      * Récupère un département à partir de son ID.
      * @param id identifiant du département
@@ -110,19 +269,96 @@ public class DepartementService {
         }
     }
 
+    /**
+     * Récupère un département et ses villes à partir de son code.
+     * @param code code du département
+     * @return département
+     * @throws RessourceNotFoundException le département n'a pas pu être trouvé à partir du code donné
+     * @throws RequeteIncorrecteException les paramètres reçus en requête sont invalides
+     */
+    public Departement getDepartementByCodeAvecVilles(String code) throws RessourceNotFoundException, RequeteIncorrecteException {
+        if (code == null || code.isEmpty()) {
+            throw new RequeteIncorrecteException("Le code du département doit être renseigné.");
+        }
+
+        Optional<Departement> optDept = departementRepo.findWithVillesByCode(code);
+
+        if (optDept.isPresent()) {
+            return optDept.get();
+        }
+        else {
+            throw new RessourceNotFoundException(String.format("Aucun département %s n'a été trouvé.", code));
+        }
+    }
+
+    /**
+     * Récupère en une requête les départements correspondant aux codes donnés.
+     * @param codes codes des départements
+     * @return départements indexés par code
+     * @throws RessourceNotFoundException au moins un code ne correspond à aucun département
+     */
+    public Map<String, Departement> getDepartementsByCodes(Set<String> codes) throws RessourceNotFoundException {
+        Map<String, Departement> departements = new HashMap<>();
+        for (Departement departement : departementRepo.findByCodeIn(codes)) {
+            departements.put(departement.getCode(), departement);
+        }
+
+        if (departements.size() < codes.size()) {
+            Set<String> codesInconnus = new TreeSet<>(codes);
+            codesInconnus.removeAll(departements.keySet());
+            throw new RessourceNotFoundException(String.format("Aucun département %s n'a été trouvé.", String.join(", ", codesInconnus)));
+        }
+
+        return departements;
+    }
+
     /**
      * Ajoute un département.
      * @param dept département à ajouter
+     * @return département créé, avec son identifiant
      * @throws RessourceExistanteException le département à ajouter existe déjà dans la base de données
      */
-    public void insertDepartement(Departement dept) throws RessourceExistanteException {
+    @Transactional(rollbackFor = Exception.class)
+    public Departement insertDepartement(Departement dept) throws RessourceExistanteException {
         Optional<Departement> departementExistant = departementRepo.findByCode(dept.getCode());
 
         if (departementExistant.isPresent()) {
             throw new RessourceExistanteException(String.format("Un département de code %s existe déjà.", dept.getCode()));
         }
 
-        departementRepo.save(dept);
+        Departement departementCree = departementRepo.save(dept);
+        cacheService.viderDepartements();
+        return departementCree;
+    }
+
+    /**
+     * Ajoute un lot de départements en une transaction : tout le lot est refusé si un code est en doublon.
+     * @param departements départements à ajouter
+     * @return départements créés, avec leur identifiant, dans l'ordre reçu
+     * @throws RequeteIncorrecteException aucun département à ajouter
+     * @throws RessourceExistanteException un département du lot existe déjà ou figure deux fois dans le lot
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public List<Departement> insertDepartements(List<Departement> departements) throws RequeteIncorrecteException, RessourceExistanteException {
+        if (departements == null || departements.isEmpty()) {
+            throw new RequeteIncorrecteException("Aucun département à ajouter.");
+        }
+
+        Set<String> codes = new HashSet<>();
+        for (Departement departement : departements) {
+            if (!codes.add(departement.getCode())) {
+                throw new RessourceExistanteException(String.format("Le département de code %s figure plusieurs fois dans le lot.", departement.getCode()));
+            }
+        }
+
+        List<Departement> existants = departementRepo.findByCodeIn(codes);
+        if (!existants.isEmpty()) {
+            throw new RessourceExistanteException(String.format("Un département de code %s existe déjà.", existants.getFirst().getCode()));
+        }
+
+        List<Departement> departementsCrees = departementRepo.saveAll(departements);
+        cacheService.viderDepartements();
+        return departementsCrees;
     }
 
     /**
@@ -132,6 +368,7 @@ public class DepartementService {
      * @throws RessourceNotFoundException le département n'a pas pu être trouvé à partir de l'ID donné
      * @throws RequeteIncorrecteException les paramètres reçus en requête sont invalides
      */
+    @Transactional(rollbackFor = Exception.class)
     public void updateDepartement(Long id, Departement dept) throws RessourceNotFoundException, RequeteIncorrecteException {
         if (id == null || id < 0) {
             throw new RequeteIncorrecteException("Il faut renseigner un id.");
@@ -149,35 +386,33 @@ public class DepartementService {
         departementExistant.setVilles(dept.getVilles());
 
         departementRepo.save(departementExistant);
+        // Le code département sert de clé dans l'index
+        tableVilles.invalider();
+        cacheService.viderVilles();
     }
 
     /**
-     * Supprimer un département et les villes de ce département.
+     * Supprimer un département et les villes de ce département,
+     * par deux requêtes DELETE ensemblistes exécutées dans une même transaction.
      * @param id identifiant du département à supprimer
      * @throws RessourceNotFoundException le département n'a pas pu être trouvé à partir de l'ID donné
      * @throws RequeteIncorrecteException les paramètres reçus en requête sont invalides
      */
+    @Transactional(rollbackFor = Exception.class)
     public void deleteDepartement(Long id) throws RessourceNotFoundException, RequeteIncorrecteException {
         if (id == null || id < 0) {
             throw new RequeteIncorrecteException("Il faut renseigner un id.");
         }
 
-        Optional<Departement> optDept = departementRepo.findById(id);
-
-        if (optDept.isEmpty()) {
-            throw new RessourceNotFoundException(String.format("Aucun département dont l'Id est %d n'a été trouvé.", id));
-        }
-
-        Departement departement = optDept.get();
-
         // Gère la relation one-to-many : si on supprime le département,
         // les villes liées sont supprimées aussi
-        if (departement.getVilles() != null) {
-            for (Ville ville : departement.getVilles()) {
-                villeRepo.deleteById(ville.getId());
-            }
+        villeRepo.deleteByDepartementId(id);
+
+        if (departementRepo.deleteDepartementById(id) == 0) {
+            throw new RessourceNotFoundException(String.format("Aucun département dont l'Id est %d n'a été trouvé.", id));
         }
 
-        departementRepo.deleteById(id);
+        tableVilles.invalider();
+        cacheService.viderVilles();
     }
 }
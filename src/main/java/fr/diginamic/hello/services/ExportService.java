@@ -0,0 +1,256 @@
+package fr.diginamic.hello.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.itextpdf.text.DocumentException;
+import fr.diginamic.hello.dto.VilleDto;
+import fr.diginamic.hello.exceptions.RequeteIncorrecteException;
+import fr.diginamic.hello.exceptions.RessourceNotFoundException;
+import fr.diginamic.hello.models.Departement;
+import fr.diginamic.hello.repositories.DepartementRepository;
+import fr.diginamic.hello.repositories.VilleRepository;
+import fr.diginamic.hello.utils.CSVGenerator;
+import fr.diginamic.hello.utils.PDFGenerator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Classe service gérant les exports de fichiers en flux :
+ * les lignes sont lues par curseur et écrites directement dans le flux de sortie.
+ */
+@Service
+public class ExportService {
+    /** Taille du tampon d'écriture : seule cette quantité de données est retenue en mémoire */
+    private static final int TAILLE_TAMPON = 8 * 1024;
+
+    /** Suivi d'avancement des exports servis directement dans la réponse : aucun */
+    private static final Runnable SANS_SUIVI = () -> {
+    };
+
+    /** Repository contenant les données liées aux villes */
+    @Autowired
+    private VilleRepository villeRepo;
+
+    /** Repository contenant les données liées aux départements */
+    @Autowired
+    private DepartementRepository departementRepo;
+
+    /** Classe utilitaire permettant de mapper les propriétés des entités en fichier CSV */
+    @Autowired
+    private CSVGenerator csvGenerator;
+
+    /** ObjectMapper de Spring, pour sérialiser les villes comme les autres réponses JSON */
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * Vérifie qu'il existe des villes à exporter, avant d'écrire quoi que ce soit dans la réponse.
+     * @throws RessourceNotFoundException aucune ville à exporter
+     */
+    public void verifierExportVilles() throws RessourceNotFoundException {
+        if (villeRepo.count() == 0) {
+            throw new RessourceNotFoundException("Aucune ville n'a été trouvée.");
+        }
+    }
+
+    /**
+     * Vérifie qu'il existe des villes de plus de min habitants à exporter.
+     * @param min nombre minimum d'habitants
+     * @throws RessourceNotFoundException aucune ville à exporter
+     * @throws RequeteIncorrecteException le nombre minimum d'habitants est invalide
+     */
+    public void verifierExportVilles(int min) throws RessourceNotFoundException, RequeteIncorrecteException {
+        if (min <= 0) {
+            throw new RequeteIncorrecteException("Le nombre minimum d'habitants doit au moins être 1.");
+        }
+
+        if (!villeRepo.existsByNbHabitantsGreaterThan(min)) {
+            throw new RessourceNotFoundException(String.format("Aucune ville de plus de %d habitants n'a été trouvée.", min));
+        }
+    }
+
+    /**
+     * Vérifie qu'un département existe et contient des villes à exporter en PDF.
+     * @param codeDept code du département
+     * @return nom du département, pour le titre et le nom du fichier
+     * @throws RessourceNotFoundException département inconnu ou sans ville
+     * @throws RequeteIncorrecteException le code département est vide
+     */
+    public String verifierExportVillesPdf(String codeDept) throws RessourceNotFoundException, RequeteIncorrecteException {
+        if (codeDept == null || codeDept.isBlank()) {
+            throw new RequeteIncorrecteException("Le code du département doit être renseigné.");
+        }
+
+        Departement departement = departementRepo.findByCode(codeDept)
+                .orElseThrow(() -> new RessourceNotFoundException(String.format("Le département de code %s n'a pas été trouvé.", codeDept)));
+
+        if (!villeRepo.existsByDepartementCode(codeDept)) {
+            throw new RessourceNotFoundException(String.format("Aucune ville du département %s n'a été trouvée.", codeDept));
+        }
+        return departement.getNom();
+    }
+
+    /**
+     * Vérifie qu'il existe des départements à exporter.
+     * @throws RessourceNotFoundException aucun département à exporter
+     */
+    public void verifierExportDepartements() throws RessourceNotFoundException {
+        if (departementRepo.count() == 0) {
+            throw new RessourceNotFoundException("Aucun département n'a été trouvé.");
+        }
+    }
+
+    /**
+     * Écrit toutes les villes au format CSV dans le flux donné.
+     * @param out flux de sortie
+     * @throws IOException erreur d'écriture
+     */
+    @Transactional(readOnly = true)
+    public void exporterVillesCsv(OutputStream out) throws IOException {
+        exporterVillesCsv(out, SANS_SUIVI);
+    }
+
+    /**
+     * Écrit toutes les villes au format CSV dans le flux donné, en signalant chaque ville écrite.
+     * @param out flux de sortie
+     * @param avancement appelé après chaque ville écrite
+     * @throws IOException erreur d'écriture
+     */
+    @Transactional(readOnly = true)
+    public void exporterVillesCsv(OutputStream out, Runnable avancement) throws IOException {
+        try (Stream<VilleDto> villes = villeRepo.streamAllDtos()) {
+            Writer writer = creerWriter(out);
+            csvGenerator.writeCSVVille(villes.peek(ville -> avancement.run()), writer);
+            writer.flush();
+        }
+    }
+
+    /**
+     * Écrit les villes de plus de min habitants au format CSV dans le flux donné.
+     * @param min nombre minimum d'habitants
+     * @param out flux de sortie
+     * @throws IOException erreur d'écriture
+     */
+    @Transactional(readOnly = true)
+    public void exporterVillesCsv(int min, OutputStream out) throws IOException {
+        exporterVillesCsv(min, out, SANS_SUIVI);
+    }
+
+    /**
+     * Écrit les villes de plus de min habitants au format CSV dans le flux donné, en signalant chaque ville écrite.
+     * @param min nombre minimum d'habitants
+     * @param out flux de sortie
+     * @param avancement appelé après chaque ville écrite
+     * @throws IOException erreur d'écriture
+     */
+    @Transactional(readOnly = true)
+    public void exporterVillesCsv(int min, OutputStream out, Runnable avancement) throws IOException {
+        try (Stream<VilleDto> villes = villeRepo.streamDtosByNbHabitantsGreaterThan(min)) {
+            Writer writer = creerWriter(out);
+            csvGenerator.writeCSVVille(villes.peek(ville -> avancement.run()), writer);
+            writer.flush();
+        }
+    }
+
+    /**
+     * Écrit toutes les villes au format NDJSON (un objet JSON par ligne) dans le flux donné.
+     * Chaque ville est sérialisée dès sa lecture : ni liste de villes ni tableau JSON complet en mémoire.
+     * @param out flux de sortie
+     * @throws IOException erreur d'écriture
+     */
+    @Transactional(readOnly = true)
+    public void exporterVillesNdjson(OutputStream out) throws IOException {
+        // Pas de flush après chaque ville : le tampon n'est vidé dans la réponse qu'une fois plein
+        ObjectWriter ecrivain = objectMapper.writerFor(VilleDto.class)
+                .withRootValueSeparator("\n")
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+        try (Stream<VilleDto> villes = villeRepo.streamAllDtos()) {
+            Writer writer = creerWriter(out);
+            SequenceWriter sequence = ecrivain.writeValues(writer);
+
+            Iterator<VilleDto> iterateur = villes.iterator();
+            while (iterateur.hasNext()) {
+                sequence.write(iterateur.next());
+            }
+
+            sequence.flush();
+            writer.write('\n');
+            writer.flush();
+        }
+    }
+
+    /**
+     * Écrit les villes d'un département au format PDF dans le flux donné, de la plus peuplée à la moins peuplée.
+     * @param codeDept code du département
+     * @param nomDepartement nom du département
+     * @param out flux de sortie
+     * @throws DocumentException erreur de construction du document
+     */
+    @Transactional(readOnly = true)
+    public void exporterVillesPdf(String codeDept, String nomDepartement, OutputStream out) throws DocumentException {
+        exporterVillesPdf(codeDept, nomDepartement, out, SANS_SUIVI);
+    }
+
+    /**
+     * Écrit les villes d'un département au format PDF dans le flux donné, en signalant chaque ville écrite.
+     * Les villes sont lues une seule fois, en flux : ni liste de villes ni document complet en mémoire.
+     * @param codeDept code du département
+     * @param nomDepartement nom du département
+     * @param out flux de sortie
+     * @param avancement appelé après chaque ville écrite
+     * @throws DocumentException erreur de construction du document
+     */
+    @Transactional(readOnly = true)
+    public void exporterVillesPdf(String codeDept, String nomDepartement, OutputStream out, Runnable avancement) throws DocumentException {
+        try (Stream<VilleDto> villes = villeRepo.streamDtosByDepartementCodeOrderByNbHabitantsDesc(codeDept)) {
+            PDFGenerator.writePdfVilles(nomDepartement, villes.peek(ville -> avancement.run()), out);
+        }
+    }
+
+    /**
+     * Écrit les départements au format CSV dans le flux donné.
+     * @param out flux de sortie
+     * @throws IOException erreur d'écriture
+     */
+    @Transactional(readOnly = true)
+    public void exporterDepartementsCsv(OutputStream out) throws IOException {
+        exporterDepartementsCsv(out, SANS_SUIVI);
+    }
+
+    /**
+     * Écrit les départements au format CSV dans le flux donné, en signalant chaque département écrit.
+     * @param out flux de sortie
+     * @param avancement appelé après chaque département écrit
+     * @throws IOException erreur d'écriture
+     */
+    @Transactional(readOnly = true)
+    public void exporterDepartementsCsv(OutputStream out, Runnable avancement) throws IOException {
+        try (Stream<Departement> departements = departementRepo.streamAll()) {
+            Writer writer = creerWriter(out);
+            csvGenerator.writeCSVDepartement(departements.peek(departement -> avancement.run()), writer);
+            writer.flush();
+        }
+    }
+
+    /**
+     * Crée un writer UTF-8 à tampon borné sur le flux de sortie.
+     * @param out flux de sortie
+     * @return writer
+     */
+    private Writer creerWriter(OutputStream out) {
+        return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), TAILLE_TAMPON);
+    }
+}
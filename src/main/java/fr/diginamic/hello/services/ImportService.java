@@ -0,0 +1,338 @@
+package fr.diginamic.hello.services;
+
+import fr.diginamic.hello.dto.ErreurImportDto;
+import fr.diginamic.hello.dto.RapportImportDto;
+import fr.diginamic.hello.dto.VilleDto;
+import fr.diginamic.hello.exceptions.RequeteIncorrecteException;
+import fr.diginamic.hello.index.TableVilles;
+import fr.diginamic.hello.models.Departement;
+import fr.diginamic.hello.models.Ville;
+import fr.diginamic.hello.repositories.DepartementRepository;
+import fr.diginamic.hello.repositories.VilleRepository;
+import fr.diginamic.hello.utils.Contraintes;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Classe service gérant les imports de villes en masse.
+ * Les départements et les villes existantes sont chargés une seule fois, les doublons sont détectés en mémoire
+ * et les villes valides sont insérées par lots JDBC. Une ligne invalide est rejetée sans bloquer les autres,
+ * y compris lorsque c'est la base qui la refuse.
+ */
+@Service
+public class ImportService {
+    /** Repository contenant les données liées aux villes */
+    @Autowired
+    private VilleRepository villeRepo;
+
+    /** Repository contenant les données liées aux départements */
+    @Autowired
+    private DepartementRepository departementRepo;
+
+    /** Validation des villes, que l'insertion JDBC ne fait pas */
+    @Autowired
+    private Validator validator;
+
+    /** Table des villes en mémoire, qui maintient les index */
+    @Autowired
+    private TableVilles tableVilles;
+
+    /** Caches de lecture à vider après l'import */
+    @Autowired
+    private CacheService cacheService;
+
+    /**
+     * Importe une liste de villes.
+     * @param villes villes à importer, la ligne d'une ville est sa position dans la liste
+     * @return bilan de l'import
+     * @throws RequeteIncorrecteException aucune ville à importer
+     */
+    @Transactional
+    public RapportImportDto importerVilles(List<VilleDto> villes) throws RequeteIncorrecteException {
+        if (villes == null || villes.isEmpty()) {
+            throw new RequeteIncorrecteException("Aucune ville à importer.");
+        }
+
+        List<Ligne> lignes = new ArrayList<>();
+        for (int i = 0; i < villes.size(); i++) {
+            VilleDto ville = villes.get(i);
+            lignes.add(ville == null ? new Ligne(i + 1, null, "La ville est vide.") : new Ligne(i + 1, ville, null));
+        }
+
+        return importer(lignes);
+    }
+
+    /**
+     * Importe des villes depuis un fichier CSV au format de l'export :
+     * nom, nombre d'habitants, code département[, nom du département].
+     * Les colonnes suivent la RFC 4180 : entre guillemets, une colonne peut contenir des virgules,
+     * des sauts de ligne et des guillemets doublés.
+     * La ligne d'en-tête et les lignes vides sont ignorées.
+     * @param in contenu du fichier, encodé en UTF-8
+     * @return bilan de l'import, la ligne d'une ville est la ligne du fichier où elle commence
+     * @throws IOException erreur de lecture
+     * @throws RequeteIncorrecteException aucune ville à importer
+     */
+    @Transactional
+    public RapportImportDto importerVillesCsv(InputStream in) throws IOException, RequeteIncorrecteException {
+        List<Ligne> lignes = new ArrayList<>();
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        String contenu;
+        int numero = 0;
+        while ((contenu = reader.readLine()) != null) {
+            numero++;
+            if (contenu.isBlank() || (numero == 1 && contenu.toLowerCase().startsWith("nom"))) {
+                continue;
+            }
+
+            // Un guillemet ouvert sur cette ligne se referme sur une ligne suivante
+            int debut = numero;
+            List<String> colonnes = decouperCsv(contenu);
+            String suite;
+            while (colonnes == null && (suite = reader.readLine()) != null) {
+                numero++;
+                contenu = contenu + "\n" + suite;
+                colonnes = decouperCsv(contenu);
+            }
+            lignes.add(lireLigneCsv(debut, colonnes));
+        }
+
+        if (lignes.isEmpty()) {
+            throw new RequeteIncorrecteException("Aucune ville à importer.");
+        }
+
+        return importer(lignes);
+    }
+
+    /**
+     * Valide les lignes, écarte les doublons puis insère les villes restantes par lots.
+     * @param lignes lignes à importer
+     * @return bilan de l'import
+     */
+    private RapportImportDto importer(List<Ligne> lignes) {
+        Map<String, Departement> departements = new HashMap<>();
+        for (Departement departement : departementRepo.findAll()) {
+            departements.put(departement.getCode(), departement);
+        }
+
+        Set<String> villesConnues = new HashSet<>();
+        for (VilleDto ville : villeRepo.findAllDtos()) {
+            villesConnues.add(cle(ville.getNom(), ville.getCodeDepartement()));
+        }
+
+        List<Insertion> insertions = new ArrayList<>();
+        List<ErreurImportDto> erreurs = new ArrayList<>();
+
+        for (Ligne ligne : lignes) {
+            if (ligne.erreur() != null) {
+                erreurs.add(new ErreurImportDto(ligne.numero(), ligne.erreur()));
+                continue;
+            }
+
+            VilleDto villeDto = ligne.ville();
+            Departement departement = departements.get(villeDto.getCodeDepartement());
+            if (departement == null) {
+                erreurs.add(new ErreurImportDto(ligne.numero(), String.format("Aucun département %s n'a été trouvé.", villeDto.getCodeDepartement())));
+                continue;
+            }
+
+            Ville ville = new Ville(0L, villeDto.getNom(), villeDto.getNbHabitants(), departement);
+            Set<ConstraintViolation<Ville>> violations = validator.validate(ville);
+            if (!violations.isEmpty()) {
+                erreurs.add(new ErreurImportDto(ligne.numero(), violations.stream().map(ConstraintViolation::getMessage).distinct().sorted().collect(Collectors.joining(", "))));
+                continue;
+            }
+
+            if (!villesConnues.add(cle(ville.getNom(), departement.getCode()))) {
+                erreurs.add(new ErreurImportDto(ligne.numero(), String.format("La ville de nom %s dans le département %s existe déjà.", ville.getNom(), departement.getNom())));
+                continue;
+            }
+
+            insertions.add(new Insertion(ligne.numero(), ville));
+        }
+
+        int nbImportees = insertions.isEmpty() ? 0 : inserer(insertions, erreurs);
+        if (nbImportees > 0) {
+            tableVilles.invalider();
+            cacheService.viderVilles();
+        }
+
+        erreurs.sort(Comparator.comparingInt(ErreurImportDto::getLigne));
+        return new RapportImportDto(lignes.size(), nbImportees, erreurs);
+    }
+
+    /**
+     * Insère les villes par lots.
+     * Si la base refuse un lot (ville insérée entre-temps par une autre requête, règle de comparaison
+     * que la détection en mémoire ne reproduit pas...), la transaction revient au point de sauvegarde
+     * pris avant le lot et les villes sont reprises une par une : seules les lignes refusées sont rejetées.
+     * @param insertions villes à insérer avec leur numéro de ligne
+     * @param erreurs erreurs de l'import, complétées des lignes refusées
+     * @return nombre de villes insérées
+     */
+    private int inserer(List<Insertion> insertions, List<ErreurImportDto> erreurs) {
+        TransactionStatus transaction = TransactionAspectSupport.currentTransactionStatus();
+
+        Object avantLot = transaction.createSavepoint();
+        try {
+            villeRepo.insererEnLot(insertions.stream().map(Insertion::ville).toList());
+            transaction.releaseSavepoint(avantLot);
+            return insertions.size();
+        }
+        catch (DataIntegrityViolationException e) {
+            transaction.rollbackToSavepoint(avantLot);
+            transaction.releaseSavepoint(avantLot);
+        }
+
+        int nbInserees = 0;
+        for (Insertion insertion : insertions) {
+            Object avantVille = transaction.createSavepoint();
+            try {
+                villeRepo.insererEnLot(List.of(insertion.ville()));
+                nbInserees++;
+            }
+            catch (DataIntegrityViolationException e) {
+                transaction.rollbackToSavepoint(avantVille);
+                erreurs.add(new ErreurImportDto(insertion.numero(), messageRefus(e, insertion.ville())));
+            }
+            transaction.releaseSavepoint(avantVille);
+        }
+
+        return nbInserees;
+    }
+
+    /**
+     * Message d'une ligne refusée par la base.
+     * @param e erreur d'intégrité levée à l'insertion
+     * @param ville ville refusée
+     * @return message
+     */
+    private static String messageRefus(DataIntegrityViolationException e, Ville ville) {
+        if (e instanceof DuplicateKeyException) {
+            return String.format("La ville de nom %s dans le département %s existe déjà.", ville.getNom(), ville.getDepartement().getNom());
+        }
+        return "La ville ne respecte pas les contraintes de la base de données.";
+    }
+
+    /**
+     * Lit les colonnes d'une ligne CSV.
+     * @param numero numéro de la ligne dans le fichier
+     * @param colonnes colonnes de la ligne, null si un guillemet n'est pas refermé
+     * @return ligne lue, ou en erreur si son format est invalide
+     */
+    private Ligne lireLigneCsv(int numero, List<String> colonnes) {
+        if (colonnes == null) {
+            return new Ligne(numero, null, "Un guillemet ouvert n'est pas refermé avant la fin du fichier.");
+        }
+
+        if (colonnes.size() < 3 || colonnes.size() > 4) {
+            return new Ligne(numero, null, "La ligne doit comporter 3 ou 4 colonnes : nom, nombre d'habitants, code département[, nom du département].");
+        }
+
+        int nbHabitants;
+        try {
+            nbHabitants = Integer.parseInt(colonnes.get(1).trim());
+        }
+        catch (NumberFormatException e) {
+            return new Ligne(numero, null, String.format("Le nombre d'habitants %s n'est pas un entier.", colonnes.get(1).trim()));
+        }
+
+        String nomDepartement = colonnes.size() == 4 ? colonnes.get(3).trim() : null;
+        return new Ligne(numero, new VilleDto(0L, colonnes.get(0).trim(), nbHabitants, colonnes.get(2).trim(), nomDepartement), null);
+    }
+
+    /**
+     * Découpe un enregistrement CSV en colonnes (RFC 4180).
+     * Une colonne qui commence par un guillemet, espaces exceptés, se termine au guillemet fermant :
+     * les virgules et sauts de ligne qu'elle contient en font partie, "" y vaut un guillemet.
+     * @param contenu enregistrement, sur une ou plusieurs lignes
+     * @return colonnes, ou null si le dernier guillemet ouvert n'est pas refermé
+     */
+    private static List<String> decouperCsv(String contenu) {
+        List<String> colonnes = new ArrayList<>();
+        StringBuilder colonne = new StringBuilder();
+        boolean entreGuillemets = false;
+
+        for (int i = 0; i < contenu.length(); i++) {
+            char c = contenu.charAt(i);
+            if (entreGuillemets) {
+                if (c != '"') {
+                    colonne.append(c);
+                }
+                else if (i + 1 < contenu.length() && contenu.charAt(i + 1) == '"') {
+                    colonne.append('"');
+                    i++;
+                }
+                else {
+                    entreGuillemets = false;
+                }
+            }
+            else if (c == '"' && colonne.isEmpty()) {
+                entreGuillemets = true;
+            }
+            else if (c == ',') {
+                colonnes.add(colonne.toString());
+                colonne.setLength(0);
+            }
+            else if (c != ' ' || !colonne.isEmpty()) {
+                colonne.append(c);
+            }
+        }
+
+        if (entreGuillemets) {
+            return null;
+        }
+        colonnes.add(colonne.toString());
+        return colonnes;
+    }
+
+    /**
+     * Clé d'unicité d'une ville : son nom dans son département, replié comme la base compare les noms
+     * (casse et accents ignorés) pour que deux noms en conflit dans la base le soient aussi en mémoire.
+     * @param nom nom de la ville
+     * @param codeDepartement code du département
+     * @return clé
+     */
+    private static String cle(String nom, String codeDepartement) {
+        return codeDepartement + '\u0000' + Contraintes.replier(nom);
+    }
+
+    /**
+     * Ligne à importer : soit une ville, soit l'erreur rencontrée en la lisant.
+     * @param numero numéro de la ligne
+     * @param ville ville lue
+     * @param erreur erreur de lecture
+     */
+    private record Ligne(int numero, VilleDto ville, String erreur) {
+    }
+
+    /**
+     * Ville validée, à insérer.
+     * @param numero numéro de sa ligne
+     * @param ville ville à insérer
+     */
+    private record Insertion(int numero, Ville ville) {
+    }
+}
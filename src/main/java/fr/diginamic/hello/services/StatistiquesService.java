@@ -0,0 +1,82 @@
+package fr.diginamic.hello.services;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import fr.diginamic.hello.dto.StatistiquesCacheDto;
+import fr.diginamic.hello.models.Departement;
+import fr.diginamic.hello.models.Ville;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Classe service exposant les statistiques des caches de l'application.
+ */
+@Service
+public class StatistiquesService {
+    /** Préfixe des caches Hibernate dans les statistiques, pour les distinguer des caches de lecture */
+    public static final String PREFIXE_HIBERNATE = "hibernate.";
+
+    /** Nom du cache de requêtes Hibernate dans les statistiques */
+    public static final String CACHE_REQUETES = PREFIXE_HIBERNATE + "requetes";
+
+    /** Fabrique JPA, dont Hibernate tient les statistiques */
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    /** Gestionnaire des caches de lecture des services */
+    @Autowired
+    private CacheManager cacheManager;
+
+    /**
+     * Récupère les statistiques de tous les caches : caches de lecture des services,
+     * puis cache de second niveau Hibernate.
+     * @return statistiques par cache
+     */
+    public List<StatistiquesCacheDto> getStatistiquesCaches() {
+        List<StatistiquesCacheDto> caches = getStatistiquesCachesLecture();
+        caches.addAll(getStatistiquesCacheHibernate());
+        return caches;
+    }
+
+    /**
+     * Récupère les succès, échecs et chargements des caches de lecture des services.
+     * Seuls les caches Caffeine tiennent des statistiques : aucun n'est listé quand le cache est désactivé.
+     * @return statistiques par cache
+     */
+    public List<StatistiquesCacheDto> getStatistiquesCachesLecture() {
+        List<StatistiquesCacheDto> caches = new ArrayList<>();
+        for (String nomCache : cacheManager.getCacheNames()) {
+            if (cacheManager.getCache(nomCache) instanceof CaffeineCache cache) {
+                CacheStats stats = cache.getNativeCache().stats();
+                caches.add(new StatistiquesCacheDto(nomCache, stats.hitCount(), stats.missCount(), stats.loadSuccessCount()));
+            }
+        }
+        return caches;
+    }
+
+    /**
+     * Récupère les succès et échecs du cache de second niveau Hibernate :
+     * une entrée par entité en cache, puis une pour le cache de requêtes.
+     * @return statistiques des caches, à zéro si hibernate.generate_statistics est désactivé
+     */
+    public List<StatistiquesCacheDto> getStatistiquesCacheHibernate() {
+        Statistics statistiques = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        List<StatistiquesCacheDto> caches = new ArrayList<>();
+        for (Class<?> entite : List.of(Departement.class, Ville.class)) {
+            CacheRegionStatistics region = statistiques.getDomainDataRegionStatistics(entite.getName());
+            caches.add(new StatistiquesCacheDto(PREFIXE_HIBERNATE + entite.getSimpleName(), region.getHitCount(), region.getMissCount(), region.getPutCount()));
+        }
+        caches.add(new StatistiquesCacheDto(CACHE_REQUETES, statistiques.getQueryCacheHitCount(), statistiques.getQueryCacheMissCount(), statistiques.getQueryCachePutCount()));
+
+        return caches;
+    }
+}
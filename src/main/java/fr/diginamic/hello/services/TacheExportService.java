@@ -0,0 +1,343 @@
+package fr.diginamic.hello.services;
+
+import fr.diginamic.hello.dto.TacheExportDto;
+import fr.diginamic.hello.dto.TacheExportDto.Statut;
+import fr.diginamic.hello.exceptions.RequeteIncorrecteException;
+import fr.diginamic.hello.exceptions.RessourceNotFoundException;
+import fr.diginamic.hello.exceptions.ServiceSatureException;
+import fr.diginamic.hello.repositories.DepartementRepository;
+import fr.diginamic.hello.repositories.VilleRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Classe service gérant les exports asynchrones : l'export est soumis, écrit dans un fichier par un exécuteur,
+ * puis téléchargé une fois terminé. La requête de soumission rend la main aussitôt, avec l'identifiant de la tâche.
+ * Le nombre d'exports simultanés et la file d'attente sont bornés : au-delà, la soumission est refusée.
+ * Les fichiers sont supprimés une fois la durée de rétention écoulée après la fin de la tâche.
+ */
+@Service
+public class TacheExportService {
+    /** Types d'export */
+    public static final String VILLES_CSV = "villes-csv";
+    public static final String DEPARTEMENTS_CSV = "departements-csv";
+    public static final String VILLES_PDF = "villes-pdf";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TacheExportService.class);
+
+    /** Message d'échec renvoyé au client : la cause, qui peut citer la base ou le disque, reste dans les logs */
+    private static final String MESSAGE_ECHEC = "L'export a échoué, veuillez le soumettre à nouveau.";
+
+    /** Intervalle entre deux purges des tâches expirées */
+    private static final Duration PERIODE_PURGE = Duration.ofMinutes(1);
+
+    /** Taille du tampon d'écriture des fichiers */
+    private static final int TAILLE_TAMPON = 64 * 1024;
+
+    /** Service d'export des données en fichiers */
+    @Autowired
+    private ExportService exportService;
+
+    /** Repository contenant les données liées aux villes */
+    @Autowired
+    private VilleRepository villeRepo;
+
+    /** Repository contenant les données liées aux départements */
+    @Autowired
+    private DepartementRepository departementRepo;
+
+    /** Nombre d'exports exécutés simultanément */
+    @Value("${recensement.exports.taches.paralleles:2}")
+    private int paralleles;
+
+    /** Nombre d'exports en attente au-delà duquel les soumissions sont refusées */
+    @Value("${recensement.exports.taches.file-max:20}")
+    private int fileMax;
+
+    /** Durée de conservation d'une tâche et de son fichier après sa fin */
+    @Value("${recensement.exports.taches.retention:1h}")
+    private Duration retention;
+
+    /** Répertoire des fichiers d'export */
+    @Value("${recensement.exports.taches.repertoire:${java.io.tmpdir}/recensement-taches}")
+    private Path repertoire;
+
+    /** Tâches soumises, par identifiant */
+    private final ConcurrentMap<String, Tache> taches = new ConcurrentHashMap<>();
+
+    /** Exécuteur des exports, sur threads virtuels */
+    private ThreadPoolExecutor executeur;
+
+    /** Purge périodique des tâches expirées */
+    private ScheduledExecutorService purge;
+
+    /**
+     * Démarre l'exécuteur des exports et la purge des tâches expirées.
+     */
+    @PostConstruct
+    public void demarrer() {
+        // Le nombre de threads borne la charge des exports sur la base, la file bornée la mémoire des tâches en attente
+        executeur = new ThreadPoolExecutor(paralleles, paralleles, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(fileMax),
+                Thread.ofVirtual().name("export-", 1).factory());
+        purge = Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual().name("purge-exports").factory());
+        purge.scheduleWithFixedDelay(this::purger, PERIODE_PURGE.toMillis(), PERIODE_PURGE.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Interrompt les exports en cours et supprime les fichiers à l'arrêt de l'application.
+     */
+    @PreDestroy
+    public void arreter() {
+        executeur.shutdownNow();
+        purge.shutdownNow();
+        taches.values().forEach(Tache::supprimerFichier);
+    }
+
+    /**
+     * Soumet l'export CSV des villes, toutes ou celles de plus de min habitants.
+     * @param min nombre minimum d'habitants, null pour toutes les villes
+     * @return tâche créée
+     * @throws RessourceNotFoundException aucune ville à exporter
+     * @throws RequeteIncorrecteException le nombre minimum d'habitants est invalide
+     * @throws ServiceSatureException la file des exports est pleine
+     */
+    public TacheExportDto soumettreVillesCsv(Integer min) throws RessourceNotFoundException, RequeteIncorrecteException, ServiceSatureException {
+        if (min == null) {
+            exportService.verifierExportVilles();
+            return soumettre(VILLES_CSV, "all-villes.csv", (tache, out) -> {
+                tache.nbLignesTotal = villeRepo.count();
+                exportService.exporterVillesCsv(out, tache::avancer);
+            });
+        }
+
+        exportService.verifierExportVilles(min);
+        return soumettre(VILLES_CSV, String.format("villes-%shab.csv", min), (tache, out) -> {
+            tache.nbLignesTotal = villeRepo.countByNbHabitantsGreaterThan(min);
+            exportService.exporterVillesCsv(min, out, tache::avancer);
+        });
+    }
+
+    /**
+     * Soumet l'export CSV des départements.
+     * @return tâche créée
+     * @throws RessourceNotFoundException aucun département à exporter
+     * @throws ServiceSatureException la file des exports est pleine
+     */
+    public TacheExportDto soumettreDepartementsCsv() throws RessourceNotFoundException, ServiceSatureException {
+        exportService.verifierExportDepartements();
+        return soumettre(DEPARTEMENTS_CSV, "departements.csv", (tache, out) -> {
+            tache.nbLignesTotal = departementRepo.count();
+            exportService.exporterDepartementsCsv(out, tache::avancer);
+        });
+    }
+
+    /**
+     * Soumet l'export PDF des villes d'un département, triées par nombre d'habitants décroissant.
+     * @param codeDept code du département
+     * @return tâche créée
+     * @throws RessourceNotFoundException le département n'existe pas ou n'a pas de ville
+     * @throws RequeteIncorrecteException le code département est vide
+     * @throws ServiceSatureException la file des exports est pleine
+     */
+    public TacheExportDto soumettreVillesPdf(String codeDept) throws RessourceNotFoundException, RequeteIncorrecteException, ServiceSatureException {
+        String nomDepartement = exportService.verifierExportVillesPdf(codeDept);
+
+        String nomFichier = String.format("villes-%s.pdf", nomDepartement);
+        return soumettre(VILLES_PDF, nomFichier, (tache, out) -> {
+            tache.nbLignesTotal = villeRepo.countByDepartementCode(codeDept);
+            exportService.exporterVillesPdf(codeDept, nomDepartement, out, tache::avancer);
+        });
+    }
+
+    /**
+     * Donne l'état d'une tâche.
+     * @param id identifiant de la tâche
+     * @return tâche
+     * @throws RessourceNotFoundException la tâche n'existe pas ou a expiré
+     */
+    public TacheExportDto getTache(String id) throws RessourceNotFoundException {
+        return trouver(id).toDto();
+    }
+
+    /**
+     * Envoie le fichier d'une tâche terminée dans la réponse.
+     * @param id identifiant de la tâche
+     * @param response réponse HTTP
+     * @throws RessourceNotFoundException la tâche n'existe pas ou a expiré
+     * @throws RequeteIncorrecteException la tâche n'est pas terminée
+     * @throws IOException erreur de lecture du fichier ou d'écriture de la réponse
+     */
+    public void envoyerFichier(String id, HttpServletResponse response) throws RessourceNotFoundException, RequeteIncorrecteException, IOException {
+        Tache tache = trouver(id);
+        Path fichier = tache.fichier;
+        if (tache.statut != Statut.TERMINEE || fichier == null) {
+            throw new RequeteIncorrecteException(String.format("L'export %s n'est pas disponible (statut %s).", id, tache.statut));
+        }
+
+        if (tache.nomFichier.endsWith(".pdf")) {
+            response.setContentType(MediaType.APPLICATION_PDF_VALUE);
+        }
+        else {
+            response.setContentType("text/csv");
+            response.setCharacterEncoding(StandardCharsets.UTF_8);
+        }
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(tache.nomFichier, StandardCharsets.UTF_8).build().toString());
+        response.setContentLengthLong(Files.size(fichier));
+        Files.copy(fichier, response.getOutputStream());
+    }
+
+    /**
+     * Supprime les tâches finies depuis plus longtemps que la durée de rétention, et leurs fichiers.
+     */
+    public void purger() {
+        Instant limite = Instant.now().minus(retention);
+        taches.values().removeIf(tache -> {
+            Instant fin = tache.dateFin;
+            if (fin != null && fin.isBefore(limite)) {
+                tache.supprimerFichier();
+                return true;
+            }
+            return false;
+        });
+    }
+
+    /**
+     * Enregistre une tâche et la confie à l'exécuteur.
+     * @param type type d'export
+     * @param nomFichier nom du fichier téléchargé
+     * @param travail écriture de l'export
+     * @return tâche créée
+     * @throws ServiceSatureException la file des exports est pleine
+     */
+    private TacheExportDto soumettre(String type, String nomFichier, Travail travail) throws ServiceSatureException {
+        Tache tache = new Tache(UUID.randomUUID().toString(), type, nomFichier);
+        taches.put(tache.id, tache);
+        try {
+            executeur.execute(() -> executer(tache, travail));
+        }
+        catch (RejectedExecutionException e) {
+            taches.remove(tache.id);
+            throw new ServiceSatureException("Trop d'exports sont en attente, veuillez réessayer plus tard.");
+        }
+        return tache.toDto();
+    }
+
+    /**
+     * Écrit l'export dans un fichier et met à jour l'état de la tâche.
+     * @param tache tâche
+     * @param travail écriture de l'export
+     */
+    private void executer(Tache tache, Travail travail) {
+        tache.statut = Statut.EN_COURS;
+        Path fichier = null;
+        try {
+            Files.createDirectories(repertoire);
+            fichier = Files.createTempFile(repertoire, tache.type + "-", ".tmp");
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(fichier), TAILLE_TAMPON)) {
+                travail.ecrire(tache, out);
+            }
+            // Le statut est écrit en dernier : une tâche lue TERMINEE a son fichier et sa date de fin
+            tache.fichier = fichier;
+            tache.dateFin = Instant.now();
+            tache.statut = Statut.TERMINEE;
+        }
+        catch (Exception e) {
+            supprimer(fichier);
+            LOGGER.error("Échec de l'export {} ({})", tache.id, tache.type, e);
+            tache.message = MESSAGE_ECHEC;
+            tache.dateFin = Instant.now();
+            tache.statut = Statut.ECHEC;
+        }
+    }
+
+    private Tache trouver(String id) throws RessourceNotFoundException {
+        Tache tache = taches.get(id);
+        if (tache == null) {
+            throw new RessourceNotFoundException(String.format("L'export %s n'a pas été trouvé.", id));
+        }
+        return tache;
+    }
+
+    private static void supprimer(Path fichier) {
+        if (fichier == null) {
+            return;
+        }
+
+        try {
+            Files.deleteIfExists(fichier);
+        }
+        catch (IOException e) {
+            // Fichier temporaire : il reste dans le répertoire des exports jusqu'à son nettoyage
+        }
+    }
+
+    /**
+     * Écriture d'un export dans le fichier d'une tâche.
+     */
+    @FunctionalInterface
+    private interface Travail {
+        void ecrire(Tache tache, OutputStream out) throws Exception;
+    }
+
+    /**
+     * État d'une tâche, modifié par le thread d'export et lu par les requêtes de suivi.
+     */
+    private static final class Tache {
+        private final String id;
+        private final String type;
+        private final String nomFichier;
+        private final Instant dateCreation = Instant.now();
+        private final AtomicLong nbLignesEcrites = new AtomicLong();
+        private volatile long nbLignesTotal;
+        private volatile Statut statut = Statut.EN_ATTENTE;
+        private volatile Path fichier;
+        private volatile String message;
+        private volatile Instant dateFin;
+
+        private Tache(String id, String type, String nomFichier) {
+            this.id = id;
+            this.type = type;
+            this.nomFichier = nomFichier;
+        }
+
+        private void avancer() {
+            nbLignesEcrites.incrementAndGet();
+        }
+
+        private void supprimerFichier() {
+            supprimer(fichier);
+        }
+
+        private TacheExportDto toDto() {
+            return new TacheExportDto(id, type, statut, nbLignesEcrites.get(), nbLignesTotal, dateCreation, dateFin, message);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package fr.diginamic.hello.services;
+
+import fr.diginamic.hello.config.FormatsBinairesConfig;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.WebRequest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Classe service tenant la version des données, avancée par CacheService après chaque écriture validée.
+ * Elle sert d'ETag aux listes et aux exports : un client qui renvoie l'ETag reçu obtient une réponse 304
+ * sans que la base soit interrogée ni la réponse sérialisée.
+ */
+@Service
+public class VersionDonneesService {
+    /** Formats binaires des listes */
+    private static final MediaType CBOR = MediaType.valueOf(FormatsBinairesConfig.APPLICATION_CBOR);
+    private static final MediaType SMILE = MediaType.valueOf(FormatsBinairesConfig.APPLICATION_SMILE);
+
+    /** Formats servis par les listes, dans l'ordre des convertisseurs de Spring MVC */
+    private static final List<MediaType> FORMATS = List.of(MediaType.APPLICATION_JSON, SMILE, CBOR);
+
+    /** Date de démarrage, qui distingue les versions de deux démarrages successifs */
+    private final long demarrage = System.currentTimeMillis();
+
+    /** Numéro de version des données depuis le démarrage */
+    private final AtomicLong version = new AtomicLong();
+
+    /** Date de la dernière écriture, en millisecondes */
+    private volatile long derniereModification = demarrage;
+
+    /**
+     * Avance la version après une écriture.
+     */
+    public void incrementer() {
+        derniereModification = System.currentTimeMillis();
+        version.incrementAndGet();
+    }
+
+    /**
+     * Construit l'ETag fort d'une représentation des données dans leur version courante.
+     * Il date les fichiers d'export ; les réponses le portent en ETag faible, voir estAJour.
+     * @param variante représentation servie par l'URL (tri, filtre, format...), sans guillemets
+     * @return ETag entre guillemets
+     */
+    public String getETag(String variante) {
+        return String.format("\"%d-%d-%s\"", demarrage, version.get(), variante);
+    }
+
+    /**
+     * Getter
+     * @return date de la dernière écriture, en millisecondes
+     */
+    public long getDerniereModification() {
+        return derniereModification;
+    }
+
+    /**
+     * Compare la version connue du client (If-None-Match) à la version courante.
+     * Si le client est à jour, la réponse est passée en 304 : le controller doit alors s'arrêter là.
+     * Sinon, l'en-tête ETag est positionné sur la réponse.
+     * L'ETag est faible (W/) : Tomcat ne compresse pas à la volée une réponse qui porte un ETag fort,
+     * les octets compressés n'étant pas ceux que l'ETag fort désigne. La comparaison faible suffit à un GET.
+     * Pas de Last-Modified : une date HTTP est à la seconde, deux écritures dans la même seconde
+     * donneraient un 304 sur une liste périmée à un client qui ne renverrait que If-Modified-Since.
+     * Une même URL pouvant être servie en JSON, CBOR ou Smile selon l'en-tête Accept,
+     * le format fait partie de l'ETag et la réponse varie selon Accept.
+     * @param requete requête HTTP
+     * @param variante représentation servie par l'URL
+     * @return true si le client est à jour
+     */
+    public boolean estAJour(WebRequest requete, String variante) {
+        if (requete instanceof ServletWebRequest requeteServlet && requeteServlet.getResponse() != null) {
+            requeteServlet.getResponse().addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        }
+        return requete.checkNotModified("W/" + getETag(variante + getSuffixeFormat(requete)));
+    }
+
+    /**
+     * Suffixe d'ETag du format choisi pour le client, vide pour JSON.
+     * Le choix reproduit la négociation de Spring MVC : chaque type accepté est croisé avec les formats
+     * servis, en gardant son poids q, puis le plus spécifique et le mieux pondéré l'emporte.
+     * Ainsi « application/json, application/cbor;q=0.1 » reste du JSON.
+     * @param requete requête HTTP
+     * @return suffixe
+     */
+    private static String getSuffixeFormat(WebRequest requete) {
+        String[] accept = requete.getHeaderValues(HttpHeaders.ACCEPT);
+        if (accept == null) {
+            return "";
+        }
+
+        List<MediaType> compatibles = new ArrayList<>();
+        try {
+            for (MediaType accepte : MediaType.parseMediaTypes(Arrays.asList(accept))) {
+                for (MediaType format : FORMATS) {
+                    if (accepte.isCompatibleWith(format)) {
+                        compatibles.add(format.copyQualityValue(accepte));
+                    }
+                }
+            }
+            MimeTypeUtils.sortBySpecificity(compatibles);
+        }
+        catch (IllegalArgumentException e) {
+            // En-tête Accept incorrect : Spring MVC le rejettera, le suffixe n'a pas d'importance
+            return "";
+        }
+
+        if (compatibles.isEmpty()) {
+            return "";
+        }
+        else if (compatibles.getFirst().isCompatibleWith(CBOR)) {
+            return "-cbor";
+        }
+        else if (compatibles.getFirst().isCompatibleWith(SMILE)) {
+            return "-smile";
+        }
+        return "";
+    }
+}
@@ -1,23 +1,42 @@
 package fr.diginamic.hello.services;
 
+import fr.diginamic.hello.config.CacheConfig;
+import fr.diginamic.hello.dto.PageCurseurDto;
+import fr.diginamic.hello.dto.VilleDto;
 import fr.diginamic.hello.exceptions.RequeteIncorrecteException;
 import fr.diginamic.hello.exceptions.RessourceExistanteException;
 import fr.diginamic.hello.exceptions.RessourceNotFoundException;
+import fr.diginamic.hello.index.IndexNoms;
+import fr.diginamic.hello.index.IndexPopulation;
+import fr.diginamic.hello.index.TableVilles;
 import fr.diginamic.hello.models.Departement;
 import fr.diginamic.hello.models.Ville;
 import fr.diginamic.hello.repositories.VilleRepository;
+import fr.diginamic.hello.utils.Contraintes;
+import fr.diginamic.hello.utils.Curseur;
+import fr.diginamic.hello.utils.TriFrancais;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 /**
- * Classe service de traitement des requêtes du controller au repository des villes
+ * Classe service de traitement des requêtes du controller au repository des villes.
+ * Chaque méthode s'exécute dans une seule transaction, en lecture seule par défaut : Hibernate charge alors
+ * les entités en lecture seule, sans copie pour la détection des modifications, et ne flushe pas la session.
+ * Les écritures ouvrent une transaction de lecture-écriture qui regroupe vérifications et enregistrement.
  */
 @Service
+@Transactional(readOnly = true)
 public class VilleService {
     /** Repository contenant les données liées aux villes */
     @Autowired
@@ -27,48 +46,28 @@ public class VilleService {
     @Autowired
     private DepartementService deptService;
 
-    /**
-     * Demande au repository les villes contenues en base de données.
-     * @return liste de villes
-     */
-    public List<Ville> getVilles() throws RessourceNotFoundException {
-        List<Ville> villes = villeRepo.findAll();
-
-        if (villes.isEmpty()) {
-            throw new RessourceNotFoundException("Aucune ville n'a été trouvée.");
-        }
-
-        return villes;
-    }
-
-    /**
-     * Demande au repository les villes contenues en base de données triées par nom.
-     * @param n nombre d'éléments à afficher
-     * @return liste de villes
-     */
-    public List<Ville> getVillesPagination(int n) throws RessourceNotFoundException, RequeteIncorrecteException {
-        if (n <= 0) {
-            throw new RequeteIncorrecteException("Le nombre d'éléments demandé doit être supérieur à 0.");
-        }
+    /** Index en mémoire des villes par nombre d'habitants */
+    @Autowired
+    private IndexPopulation indexPopulation;
 
-        Pageable pagination = PageRequest.of(0, n);
-        List<Ville> villes = villeRepo.findAllOrderByNom(pagination);
+    /** Index en mémoire des noms de villes */
+    @Autowired
+    private IndexNoms indexNoms;
 
-        if (villes.isEmpty()) {
-            throw new RessourceNotFoundException("Aucune ville n'a été trouvée.");
-        }
+    /** Table des villes en mémoire, qui maintient les index */
+    @Autowired
+    private TableVilles tableVilles;
 
-        return villes;
-    }
+    /** Caches de lecture à vider après une écriture */
+    @Autowired
+    private CacheService cacheService;
 
     /**
      * Méthode permettant de demander une ville au repository à partir de son id.
      * @return ville
      */
     public Ville getVilleById(Long id) throws RessourceNotFoundException, RequeteIncorrecteException {
-        if (id == null || id < 0) {
-            throw new RequeteIncorrecteException("Il faut renseigner un id.");
-        }
+        verifierId(id);
 
         Optional<Ville> optVille = villeRepo.findById(id);
 
@@ -81,43 +80,99 @@ public class VilleService {
     }
 
     /**
-     * Méthode permettant de demander une ville au repository à partir de son nom.
-     * @return ville
+     * Méthode permettant de donner une ville au repository à ajouter en base de données.
+     * L'unicité du couple (nom, département) est garantie par une contrainte en base :
+     * pas de lecture préalable des homonymes, et pas de doublon possible entre deux insertions concurrentes.
+     * @param ville ville à ajouter
+     * @return ville créée, avec son identifiant
      */
-    public List<Ville> getVillesByNom(String nom) throws RessourceNotFoundException, RequeteIncorrecteException {
-        if (nom == null || nom.isEmpty()) {
-            throw new RequeteIncorrecteException("Il faut indiquer un nom.");
+    @Transactional(rollbackFor = Exception.class)
+    public Ville insertVille(Ville ville) throws RessourceNotFoundException, RequeteIncorrecteException, RessourceExistanteException {
+        // Ajoute le département complet à la ville
+        Departement departement = deptService.getDepartementByCode(ville.getDepartement().getCode());
+        ville.setDepartement(departement);
+
+        Ville villeCreee;
+        try {
+            villeCreee = villeRepo.save(ville);
+        }
+        catch (DataIntegrityViolationException e) {
+            throw traduireDoublon(e, String.format("La ville de nom %s dans le département %s existe déjà.", ville.getNom(), ville.getDepartement().getNom()));
         }
 
-        List<Ville> villes = villeRepo.findByNom(nom);
+        tableVilles.ajouter(villeCreee);
+        cacheService.viderVille(null);
+        return villeCreee;
+    }
 
-        if (villes.isEmpty()) {
-            throw new RessourceNotFoundException(String.format("Aucune ville portant le nom %s n'a été trouvée.", nom));
-        }
+    /**
+     * Ajoute une ville, ou met à jour son nombre d'habitants si une ville de même nom existe déjà
+     * dans le département, en une seule requête INSERT ... ON DUPLICATE KEY UPDATE.
+     * @param ville ville à ajouter ou à mettre à jour
+     * @return ville enregistrée, avec son identifiant
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public Ville upsertVille(Ville ville) throws RessourceNotFoundException, RequeteIncorrecteException {
+        Departement departement = deptService.getDepartementByCode(ville.getDepartement().getCode());
+        ville.setDepartement(departement);
 
-        return villes;
+        villeRepo.upsert(ville);
+
+        Ville villeEnregistree = villeRepo.findByNomAndDepartementId(ville.getNom(), departement.getId())
+                .orElseThrow(() -> new RessourceNotFoundException(String.format("La ville de nom %s n'a pas pu être enregistrée.", ville.getNom())));
+
+        tableVilles.remplacer(villeEnregistree);
+        cacheService.viderVille(villeEnregistree.getId());
+        return villeEnregistree;
     }
 
     /**
-     * Méthode permettant de donner une ville au repository à ajouter en base de données.
-     * @param ville ville à ajouter
+     * Ajoute un lot de villes en une transaction : tout le lot est refusé si une ville est en doublon
+     * ou si un département est inconnu. Les départements et les homonymes sont lus en une requête chacun.
+     * @param villes villes à ajouter
+     * @return villes créées, avec leur identifiant, dans l'ordre reçu
      */
-    public void insertVille(Ville ville) throws RessourceNotFoundException, RequeteIncorrecteException, RessourceExistanteException {
-        List<Ville> villesHomonymes = villeRepo.findByNom(ville.getNom());
-
-        // check si une ville identique existe déjà
-        for (Ville v : villesHomonymes) {
-            if (v.getNom().equals(ville.getNom())
-            && v.getDepartement().getCode().equals(ville.getDepartement().getCode())) {
-                throw new RessourceExistanteException(String.format("La ville de nom %s dans le département %s existe déjà.", ville.getNom(), ville.getDepartement().getNom()));
-            }
+    @Transactional(rollbackFor = Exception.class)
+    public List<Ville> insertVilles(List<Ville> villes) throws RessourceNotFoundException, RequeteIncorrecteException, RessourceExistanteException {
+        if (villes == null || villes.isEmpty()) {
+            throw new RequeteIncorrecteException("Aucune ville à ajouter.");
         }
 
-        // Ajoute le département complet à la ville
-        Departement departement = deptService.getDepartementByCode(ville.getDepartement().getCode());
-        ville.setDepartement(departement);
+        Set<String> codes = new HashSet<>();
+        Set<String> noms = new HashSet<>();
+        for (Ville ville : villes) {
+            codes.add(ville.getDepartement().getCode());
+            noms.add(ville.getNom());
+        }
+
+        Map<String, Departement> departements = deptService.getDepartementsByCodes(codes);
+
+        // Villes déjà connues, puis villes du lot : le couple (nom, département) doit rester unique,
+        // en ignorant la casse et les accents comme la contrainte d'unicité de la base
+        Set<String> villesConnues = new HashSet<>();
+        for (Ville homonyme : villeRepo.findByNomIn(noms)) {
+            villesConnues.add(homonyme.getDepartement().getCode() + '\u0000' + Contraintes.replier(homonyme.getNom()));
+        }
+
+        for (Ville ville : villes) {
+            Departement departement = departements.get(ville.getDepartement().getCode());
+            if (!villesConnues.add(departement.getCode() + '\u0000' + Contraintes.replier(ville.getNom()))) {
+                throw new RessourceExistanteException(String.format("La ville de nom %s dans le département %s existe déjà.", ville.getNom(), departement.getNom()));
+            }
+            ville.setDepartement(departement);
+        }
 
-        villeRepo.save(ville);
+        List<Ville> villesCreees;
+        try {
+            villesCreees = villeRepo.saveAll(villes);
+        }
+        catch (DataIntegrityViolationException e) {
+            // Ville insérée par une requête concurrente depuis la vérification : l'erreur ne dit pas laquelle
+            throw traduireDoublon(e, "Une des villes du lot existe déjà dans son département.");
+        }
+        tableVilles.invalider();
+        cacheService.viderVilles();
+        return villesCreees;
     }
 
     /**
@@ -127,10 +182,9 @@ public class VilleService {
      * @param id identifiant de la ville à modifier
      * @param ville objet ville contenant les nouvelles informations
      */
+    @Transactional(rollbackFor = Exception.class)
     public void updateVille(Long id, Ville ville) throws RessourceNotFoundException, RequeteIncorrecteException {
-        if (id == null || id < 0) {
-            throw new RequeteIncorrecteException("Il faut renseigner un id.");
-        }
+        verifierId(id);
 
         Optional<Ville> optVille = villeRepo.findById(id);
 
@@ -148,6 +202,8 @@ public class VilleService {
             villeExistante.setDepartement(departement);
         }
         villeRepo.save(villeExistante);
+        tableVilles.remplacer(villeExistante);
+        cacheService.viderVille(id);
     }
 
     /**
@@ -155,10 +211,9 @@ public class VilleService {
      * et de le donner au repository pour le supprimer.
      * @param id identifiant de la ville à supprimer
      */
+    @Transactional(rollbackFor = Exception.class)
     public void deleteVille(Long id) throws RessourceNotFoundException, RequeteIncorrecteException {
-        if (id == null || id < 0) {
-            throw new RequeteIncorrecteException("Il faut renseigner un id.");
-        }
+        verifierId(id);
 
         Optional<Ville> optVille = villeRepo.findById(id);
 
@@ -167,144 +222,336 @@ public class VilleService {
         }
 
         villeRepo.deleteById(id);
+        tableVilles.retirer(id);
+        cacheService.viderVille(id);
     }
 
     /**
-     * Demande au repository la liste des villes dont le nom commence par le préfixe donné.
-     * @param prefixe String
-     * @return liste de villes
+     * Supprime en une seule requête les villes correspondant aux filtres donnés.
+     * Un filtre null est ignoré, mais au moins un filtre doit être renseigné.
+     * @param codeDep code du département
+     * @param min nombre minimum d'habitants (inclus)
+     * @param max nombre maximum d'habitants (inclus)
+     * @return nombre de villes supprimées
      */
-    public List<Ville> extractVillesByNomStartingWith(String prefixe) throws RessourceNotFoundException, RequeteIncorrecteException {
-        if (prefixe == null || prefixe.isEmpty()) {
-            throw new RequeteIncorrecteException("Le préfixe doit comporter au moins un caractères.");
+    @Transactional(rollbackFor = Exception.class)
+    public int deleteVillesByFiltre(String codeDep, Integer min, Integer max) throws RessourceNotFoundException, RequeteIncorrecteException {
+        if ((codeDep == null || codeDep.isBlank()) && min == null && max == null) {
+            throw new RequeteIncorrecteException("Il faut renseigner au moins un filtre : code du département, nombre minimum ou maximum d'habitants.");
         }
 
-        List<Ville> villes = villeRepo.findByNomStartingWith(prefixe);
+        if (min != null && max != null && min > max) {
+            throw new RequeteIncorrecteException("Le nombre minimum d'habitants doit être inférieur au nombre maximum.");
+        }
 
-        if (villes.isEmpty()) {
-            throw new RessourceNotFoundException(String.format("Aucune ville dont le nom commence par %s n'a été trouvée.", prefixe));
+        int nbSupprimees = villeRepo.deleteByFiltre(codeDep == null || codeDep.isBlank() ? null : codeDep, min, max);
+
+        if (nbSupprimees == 0) {
+            throw new RessourceNotFoundException("Aucune ville ne correspond aux filtres donnés.");
         }
 
-        return villes;
+        tableVilles.invalider();
+        cacheService.viderVilles();
+        return nbSupprimees;
     }
 
     /**
-     * Demande au repository la liste des villes dont le nombre d'habitants
-     * est supérieur à un seuil donné.
-     * @param min nombre minimum d'habitants
-     * @return liste de villes
+     * Recherche dans l'index des noms les villes les plus peuplées dont le nom commence par le préfixe donné,
+     * sans tenir compte de la casse ni des accents ("bezi" trouve "Béziers").
+     * @param prefixe début du nom
+     * @param k nombre maximum de villes retournées
+     * @return liste de villes triées par nombre d'habitants décroissant
      */
-    public List<Ville> extractVillesByNbHabGreaterThan(int min) throws RessourceNotFoundException, RequeteIncorrecteException {
-        if (min <= 0) {
-            throw new RequeteIncorrecteException("Le nombre minimum d'habitants doit au moins être 1.");
+    public List<VilleDto> autocompleterVilles(String prefixe, int k) throws RessourceNotFoundException, RequeteIncorrecteException {
+        if (prefixe == null || prefixe.isBlank()) {
+            throw new RequeteIncorrecteException("Le préfixe doit comporter au moins un caractère.");
+        }
+
+        if (k <= 0 || k > 100) {
+            throw new RequeteIncorrecteException("Le nombre de suggestions doit être compris entre 1 et 100.");
         }
 
-        List<Ville> villes = villeRepo.findByNbHabitantsGreaterThan(min);
+        List<VilleDto> villes = indexNoms.chercher(prefixe.stripLeading(), k);
 
         if (villes.isEmpty()) {
-            throw new RessourceNotFoundException(String.format("Aucune ville de plus de %d habitants n'a été trouvée.", min));
+            throw new RessourceNotFoundException(String.format("Aucune ville dont le nom commence par %s n'a été trouvée.", prefixe));
         }
 
         return villes;
     }
 
+    /*
+     * Lectures des controllers : les villes sont lues directement en DTO par des projections JPQL,
+     * sans charger d'entité dans le contexte de persistance, puis mises en cache dans des listes immuables.
+     * Les caches sont vidés par CacheService après chaque écriture.
+     */
+
     /**
-     * Demande au repository la liste des N plus grandes villes d'un département.
-     * @param codeDep code du département
+     * Demande au repository les villes contenues en base de données.
+     * @return liste immuable de villes
+     */
+    @Cacheable(cacheNames = CacheConfig.VILLES, sync = true)
+    public List<VilleDto> getVilleDtos() throws RessourceNotFoundException {
+        return nonVide(villeRepo.findAllDtos(), "Aucune ville n'a été trouvée.");
+    }
+
+    /**
+     * Demande au repository les villes contenues en base de données,
+     * triées par nom selon l'ordre alphabétique français.
+     * @return liste immuable de villes triées par nom
+     */
+    @Cacheable(cacheNames = CacheConfig.VILLES, sync = true)
+    public List<VilleDto> getVilleDtosTrieesParNom() throws RessourceNotFoundException {
+        return List.copyOf(TriFrancais.trier(getVilleDtos(), VilleDto::getNom));
+    }
+
+    /**
+     * Demande au repository les villes contenues en base de données triées par nom.
      * @param n nombre d'éléments à afficher
-     * @return liste de villes
+     * @return liste immuable de villes
      */
-    public List<Ville> extractVillesByDepartementCodeOrderByNbHabDesc(String codeDep, int n) throws RessourceNotFoundException, RequeteIncorrecteException {
-        if (n <= 0) {
-            throw new RequeteIncorrecteException("Le nombre d'éléments demandé doit être supérieur à 0.");
+    @Cacheable(cacheNames = CacheConfig.VILLES, sync = true)
+    public List<VilleDto> getVilleDtosPagination(int n) throws RessourceNotFoundException, RequeteIncorrecteException {
+        verifierTaille(n);
+        return nonVide(villeRepo.findAllDtosOrderByNom(PageRequest.of(0, n)), "Aucune ville n'a été trouvée.");
+    }
+
+    /**
+     * Demande au repository une page de villes triées par nom, à partir d'un curseur (pagination par clé).
+     * Le coût d'une page reste proportionnel à sa taille, quelle que soit sa position dans la liste.
+     * Les pages ne sont pas mises en cache : les curseurs sont trop nombreux.
+     * @param curseur curseur renvoyé avec la page précédente, null pour la première page
+     * @param taille nombre d'éléments de la page
+     * @return page de villes et curseur de la page suivante
+     */
+    public PageCurseurDto<VilleDto> getVilleDtosPaginationCurseur(String curseur, int taille) throws RessourceNotFoundException, RequeteIncorrecteException {
+        verifierTaille(taille);
+
+        // Un élément de plus que demandé indique s'il existe une page suivante
+        Pageable pagination = PageRequest.of(0, taille + 1);
+        List<VilleDto> villes;
+
+        if (curseur == null || curseur.isEmpty()) {
+            villes = villeRepo.findAllDtosOrderByNom(pagination);
         }
-        else if (codeDep == null || codeDep.isEmpty()) {
-            throw new RequeteIncorrecteException("Le code du département doit être renseigné.");
+        else {
+            Curseur position = Curseur.decoder(curseur);
+            villes = villeRepo.findAllDtosAfterNomAndId(position.getNom(), position.getId(), pagination);
         }
 
-        Pageable pagination = PageRequest.of(0, n);
-        List<Ville> villes = villeRepo.findByDepartementCodeOrderByNbHabitantsDesc(codeDep, pagination);
-
         if (villes.isEmpty()) {
-            throw new RessourceNotFoundException(String.format("Aucune ville du département %s n'a été trouvée.", codeDep));
+            throw new RessourceNotFoundException("Aucune ville n'a été trouvée.");
         }
 
-        return villes;
+        if (villes.size() <= taille) {
+            return new PageCurseurDto<>(villes, null);
+        }
+
+        List<VilleDto> page = villes.subList(0, taille);
+        VilleDto derniere = page.getLast();
+        return new PageCurseurDto<>(page, new Curseur(derniere.getNom(), derniere.getId()).encoder());
     }
 
     /**
-     * Demande au repository la liste des villes dont le nombre d'habitants est compris
-     * dans un intervalle donné.
+     * Demande au repository une ville à partir de son id.
+     * Mise en cache par identifiant pour pouvoir n'évincer que la ville modifiée.
+     * @param id identifiant de la ville
+     * @return ville
+     */
+    @Cacheable(cacheNames = CacheConfig.VILLE, key = "#id", sync = true)
+    public VilleDto getVilleDtoById(Long id) throws RessourceNotFoundException, RequeteIncorrecteException {
+        verifierId(id);
+        return villeRepo.findDtoById(id)
+                .orElseThrow(() -> new RessourceNotFoundException(String.format("Aucune ville d'id %d n'a été trouvée.", id)));
+    }
+
+    /**
+     * Demande au repository les villes portant le nom donné.
+     * @param nom nom de la ville
+     * @return liste immuable de villes
+     */
+    @Cacheable(cacheNames = CacheConfig.VILLES_RECHERCHE, sync = true)
+    public List<VilleDto> getVilleDtosByNom(String nom) throws RessourceNotFoundException, RequeteIncorrecteException {
+        verifierNom(nom);
+        return nonVide(villeRepo.findDtosByNom(nom), String.format("Aucune ville portant le nom %s n'a été trouvée.", nom));
+    }
+
+    /**
+     * Demande au repository la liste des villes dont le nom commence par le préfixe donné.
+     * @param prefixe début du nom
+     * @return liste immuable de villes
+     */
+    @Cacheable(cacheNames = CacheConfig.VILLES_RECHERCHE, sync = true)
+    public List<VilleDto> extractVilleDtosByNomStartingWith(String prefixe) throws RessourceNotFoundException, RequeteIncorrecteException {
+        verifierPrefixe(prefixe);
+        return nonVide(villeRepo.findDtosByNomStartingWith(echapperLike(prefixe)), String.format("Aucune ville dont le nom commence par %s n'a été trouvée.", prefixe));
+    }
+
+    /**
+     * Demande à l'index, ou au repository s'il n'est pas actif, la liste des villes dont le nombre d'habitants
+     * est supérieur à un seuil donné.
+     * @param min nombre minimum d'habitants
+     * @return liste immuable de villes
+     */
+    @Cacheable(cacheNames = CacheConfig.VILLES_RECHERCHE, sync = true)
+    public List<VilleDto> extractVilleDtosByNbHabGreaterThan(int min) throws RessourceNotFoundException, RequeteIncorrecteException {
+        verifierMinimum(min);
+
+        List<VilleDto> villes = indexPopulation.isActif()
+                ? indexPopulation.chercherPlusDe(min)
+                : villeRepo.findDtosByNbHabitantsGreaterThan(min);
+
+        return nonVide(villes, String.format("Aucune ville de plus de %d habitants n'a été trouvée.", min));
+    }
+
+    /**
+     * Demande au repository la liste des N plus grandes villes d'un département.
+     * @param codeDep code du département
+     * @param n nombre d'éléments à afficher
+     * @return liste immuable de villes
+     */
+    @Cacheable(cacheNames = CacheConfig.VILLES_RECHERCHE, sync = true)
+    public List<VilleDto> extractVilleDtosByDepartementCodeOrderByNbHabDesc(String codeDep, int n) throws RessourceNotFoundException, RequeteIncorrecteException {
+        verifierTaille(n);
+        verifierCodeDepartement(codeDep);
+        return nonVide(villeRepo.findDtosByDepartementCodeOrderByNbHabitantsDesc(codeDep, PageRequest.of(0, n)), String.format("Aucune ville du département %s n'a été trouvée.", codeDep));
+    }
+
+    /**
+     * Demande à l'index, ou au repository s'il n'est pas actif, la liste des villes dont le nombre d'habitants
+     * est compris dans un intervalle donné.
      * @param min nombre minimum d'habitants
      * @param max nombre maximum d'habitants
-     * @return liste de villes
+     * @return liste immuable de villes
      */
-    public List<Ville> extractVillesByNbHabBetween(int min, int max) throws RessourceNotFoundException, RequeteIncorrecteException {
-        if (min >= max) {
-            throw new RequeteIncorrecteException("Le minimum d'habitants doit être strictement inférieur au maximum d'habitants.");
-        }
-        else if (min <= 0) {
-            throw new RequeteIncorrecteException("Le nombre minimum et maximum d'habitants doivent être supérieur à 0.");
-        }
+    @Cacheable(cacheNames = CacheConfig.VILLES_RECHERCHE, sync = true)
+    public List<VilleDto> extractVilleDtosByNbHabBetween(int min, int max) throws RessourceNotFoundException, RequeteIncorrecteException {
+        verifierIntervalle(min, max);
 
-        List<Ville> villes = villeRepo.findByNbHabitantsBetween(min, max);
+        List<VilleDto> villes = indexPopulation.isActif()
+                ? indexPopulation.chercherEntre(min, max)
+                : villeRepo.findDtosByNbHabitantsBetween(min, max);
 
-        if (villes.isEmpty()) {
-            throw new RessourceNotFoundException(String.format("Aucune ville dont la population est comprise entre %d et %d n'a été trouvée.", min, max));
-        }
+        return nonVide(villes, String.format("Aucune ville dont la population est comprise entre %d et %d n'a été trouvée.", min, max));
+    }
 
-        return villes;
+    /**
+     * Demande à l'index, ou au repository s'il n'est pas actif, la liste des villes d'un département
+     * dont le nombre d'habitants est supérieur à un minimum donné.
+     * @param codeDep code du département
+     * @param min nombre minimum d'habitants
+     * @return liste immuable de villes
+     */
+    @Cacheable(cacheNames = CacheConfig.VILLES_RECHERCHE, sync = true)
+    public List<VilleDto> extractVilleDtosByDepartementCodeAndNbHabGreaterThan(String codeDep, int min) throws RessourceNotFoundException, RequeteIncorrecteException {
+        verifierMinimum(min);
+        verifierCodeDepartement(codeDep);
+
+        List<VilleDto> villes = indexPopulation.isActif()
+                ? indexPopulation.chercherPlusDe(codeDep, min)
+                : villeRepo.findDtosByDepartementCodeAndNbHabitantsGreaterThan(codeDep, min);
+
+        return nonVide(villes, String.format("Aucune ville du département %s dont la population est supérieure à %d n'a été trouvée.", codeDep, min));
     }
 
     /**
-     * Demande au repository la liste des villes d'un département dont le nombre d'habitants
-     * est supérieur à un minimum donné.
+     * Demande à l'index, ou au repository s'il n'est pas actif, la liste des villes d'un département
+     * dont le nombre d'habitants est compris dans un intervalle donné.
      * @param codeDep code du département
      * @param min nombre minimum d'habitants
-     * @return liste des villes
+     * @param max nombre maximum d'habitants
+     * @return liste immuable de villes
      */
-    public List<Ville> extractVillesByDepartementCodeAndNbHabGreaterThan(String codeDep, int min) throws RessourceNotFoundException, RequeteIncorrecteException {
-        if (min <= 0) {
-            throw new RequeteIncorrecteException("Le nombre minimum d'habitants doit être supérieur à 0.");
-        }
-        else if (codeDep == null || codeDep.isEmpty()) {
-            throw new RequeteIncorrecteException("Le code du département doit être renseigné.");
-        }
+    @Cacheable(cacheNames = CacheConfig.VILLES_RECHERCHE, sync = true)
+    public List<VilleDto> extractVilleDtosByDepartementCodeAndNbHabBetween(String codeDep, int min, int max) throws RessourceNotFoundException, RequeteIncorrecteException {
+        verifierIntervalle(min, max);
+        verifierCodeDepartement(codeDep);
+
+        List<VilleDto> villes = indexPopulation.isActif()
+                ? indexPopulation.chercherEntre(codeDep, min, max)
+                : villeRepo.findDtosByDepartementCodeAndNbHabitantsBetween(codeDep, min, max);
 
-        List<Ville> villes = villeRepo.findByDepartementCodeAndNbHabitantsGreaterThan(codeDep, min);
+        return nonVide(villes, String.format("Aucune ville du département %s dont la population est comprise entre %d à %d n'a été trouvée.", codeDep, min, max));
+    }
 
+    /**
+     * Vérifie qu'une lecture a trouvé des villes, et les rend immuables avant leur mise en cache.
+     * @param villes villes lues
+     * @param message message de l'exception si aucune ville n'a été trouvée
+     * @return liste immuable de villes
+     */
+    private static List<VilleDto> nonVide(List<VilleDto> villes, String message) throws RessourceNotFoundException {
         if (villes.isEmpty()) {
-            throw new RessourceNotFoundException(String.format("Aucune ville du département %s dont la population est supérieure à %d n'a été trouvée.", codeDep, min));
+            throw new RessourceNotFoundException(message);
         }
+        return List.copyOf(villes);
+    }
 
-        return villes;
+    private static void verifierId(Long id) throws RequeteIncorrecteException {
+        if (id == null || id < 0) {
+            throw new RequeteIncorrecteException("Il faut renseigner un id.");
+        }
+    }
+
+    private static void verifierNom(String nom) throws RequeteIncorrecteException {
+        if (nom == null || nom.isEmpty()) {
+            throw new RequeteIncorrecteException("Il faut indiquer un nom.");
+        }
     }
 
     /**
-     * Demande au repository la liste des villes d'un département dont le nombre d'habitants
-     * est compris dans un intervalle donné.
-     * @param codeDep code du département
-     * @param min nombre minimum d'habitants
-     * @param max nombre maximum d'habitants
-     * @return liste de villes
+     * Échappe les caractères spéciaux de LIKE (\, % et _), pour qu'un préfixe soit recherché littéralement.
+     * @param valeur valeur saisie
+     * @return valeur échappée avec \
      */
-    public List<Ville> extractVillesByDepartementCodeAndNbHabBetween(String codeDep, int min, int max) throws RessourceNotFoundException, RequeteIncorrecteException {
-        if (min >= max) {
-            throw new RequeteIncorrecteException("Le minimum d'habitants doit être strictement inférieur au maximum d'habitants.");
+    private static String echapperLike(String valeur) {
+        return valeur.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    private static void verifierPrefixe(String prefixe) throws RequeteIncorrecteException {
+        if (prefixe == null || prefixe.isEmpty()) {
+            throw new RequeteIncorrecteException("Le préfixe doit comporter au moins un caractère.");
         }
-        else if (min <= 0) {
-            throw new RequeteIncorrecteException("Le nombre minimum d'habitants doit être supérieur à 0.");
+    }
+
+    private static void verifierTaille(int n) throws RequeteIncorrecteException {
+        if (n <= 0) {
+            throw new RequeteIncorrecteException("Le nombre d'éléments demandé doit être supérieur à 0.");
         }
-        else if (codeDep == null || codeDep.isEmpty()) {
+    }
+
+    private static void verifierCodeDepartement(String codeDep) throws RequeteIncorrecteException {
+        if (codeDep == null || codeDep.isEmpty()) {
             throw new RequeteIncorrecteException("Le code du département doit être renseigné.");
         }
+    }
 
-        List<Ville> villes = villeRepo.findByDepartementCodeAndNbHabitantsBetween(codeDep, min, max);
+    private static void verifierMinimum(int min) throws RequeteIncorrecteException {
+        if (min <= 0) {
+            throw new RequeteIncorrecteException("Le nombre minimum d'habitants doit être supérieur à 0.");
+        }
+    }
 
-        if (villes.isEmpty()) {
-            throw new RessourceNotFoundException(String.format("Aucune ville du département %s dont la population est comprise entre %d à %d n'a été trouvée.", codeDep, min, max));
+    private static void verifierIntervalle(int min, int max) throws RequeteIncorrecteException {
+        if (min >= max) {
+            throw new RequeteIncorrecteException("Le minimum d'habitants doit être strictement inférieur au maximum d'habitants.");
         }
+        else if (min <= 0) {
+            throw new RequeteIncorrecteException("Le nombre minimum et maximum d'habitants doivent être supérieur à 0.");
+        }
+    }
 
-        return villes;
+    /**
+     * Traduit la violation de la contrainte d'unicité (nom, département) en RessourceExistanteException.
+     * Toute autre erreur d'intégrité est relancée telle quelle.
+     * @param e erreur d'intégrité levée par l'insertion
+     * @param message message de l'exception
+     * @return exception à lever
+     */
+    private RessourceExistanteException traduireDoublon(DataIntegrityViolationException e, String message) {
+        if (!Contraintes.estViolee(e, Ville.CONTRAINTE_NOM_DEPARTEMENT)) {
+            throw e;
+        }
+        return new RessourceExistanteException(message);
     }
 }
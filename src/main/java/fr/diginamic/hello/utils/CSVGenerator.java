@@ -1,10 +1,15 @@
 package fr.diginamic.hello.utils;
 
+import fr.diginamic.hello.dto.VilleDto;
 import fr.diginamic.hello.models.Departement;
 import fr.diginamic.hello.models.Ville;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Iterator;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Component
 public class CSVGenerator {
@@ -16,10 +21,10 @@ public class CSVGenerator {
         csvContent.append(CSV_HEADER_VILLE);
 
         for (Ville ville : villes) {
-            csvContent.append(ville.getNom()).append(',')
+            csvContent.append(champ(ville.getNom())).append(',')
                     .append(ville.getNbHabitants()).append(',')
                     .append(ville.getDepartement().getCode()).append(',')
-                    .append(ville.getDepartement().getNom()).append("\n");
+                    .append(champ(ville.getDepartement().getNom())).append("\n");
         }
 
         return csvContent.toString();
@@ -31,9 +36,59 @@ public class CSVGenerator {
 
         for (Departement dept : departements) {
             csvContent.append(dept.getCode()).append(',')
-                    .append(dept.getNom()).append('\n');
+                    .append(champ(dept.getNom())).append('\n');
         }
 
         return csvContent.toString();
     }
+
+    /**
+     * Écrit les villes au format CSV au fur et à mesure de leur lecture,
+     * sans construire le fichier complet en mémoire.
+     * @param villes flux de villes
+     * @param writer destination (idéalement bufferisée)
+     * @throws IOException erreur d'écriture
+     */
+    public void writeCSVVille(Stream<VilleDto> villes, Writer writer) throws IOException {
+        writer.write(CSV_HEADER_VILLE);
+
+        Iterator<VilleDto> iterator = villes.iterator();
+        while (iterator.hasNext()) {
+            VilleDto ville = iterator.next();
+            writer.append(champ(ville.getNom())).append(',')
+                    .append(String.valueOf(ville.getNbHabitants())).append(',')
+                    .append(ville.getCodeDepartement()).append(',')
+                    .append(champ(ville.getNomDepartement())).append('\n');
+        }
+    }
+
+    /**
+     * Écrit les départements au format CSV au fur et à mesure de leur lecture.
+     * @param departements flux de départements
+     * @param writer destination (idéalement bufferisée)
+     * @throws IOException erreur d'écriture
+     */
+    public void writeCSVDepartement(Stream<Departement> departements, Writer writer) throws IOException {
+        writer.write(CSV_HEADER_DEPT);
+
+        Iterator<Departement> iterator = departements.iterator();
+        while (iterator.hasNext()) {
+            Departement dept = iterator.next();
+            writer.append(dept.getCode()).append(',')
+                    .append(champ(dept.getNom())).append('\n');
+        }
+    }
+
+    /**
+     * Colonne CSV (RFC 4180) : mise entre guillemets si elle contient une virgule, un guillemet ou un saut de ligne,
+     * pour que l'import la relise telle quelle.
+     * @param valeur valeur de la colonne
+     * @return colonne
+     */
+    private static String champ(String valeur) {
+        if (valeur == null || valeur.chars().noneMatch(c -> c == ',' || c == '"' || c == '\n' || c == '\r')) {
+            return valeur;
+        }
+        return '"' + valeur.replace("\"", "\"\"") + '"';
+    }
 }
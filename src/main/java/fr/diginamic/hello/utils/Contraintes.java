@@ -0,0 +1,48 @@
+package fr.diginamic.hello.utils;
+
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Classe utilitaire d'analyse des violations de contraintes remontées par la base de données.
+ */
+public final class Contraintes {
+    /** Marques diacritiques isolées par la décomposition Unicode */
+    private static final Pattern ACCENTS = Pattern.compile("\\p{M}+");
+
+    private Contraintes() {
+    }
+
+    /**
+     * Indique si une erreur d'intégrité provient de la contrainte donnée.
+     * Le nom renvoyé par la base varie selon le SGBD (préfixe de schéma, suffixe d'index, casse) :
+     * il suffit qu'il contienne le nom de la contrainte.
+     * @param ex erreur d'intégrité
+     * @param contrainte nom de la contrainte
+     * @return boolean
+     */
+    public static boolean estViolee(DataIntegrityViolationException ex, String contrainte) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException violation) {
+                String nom = violation.getConstraintName();
+                return nom != null && nom.toLowerCase(Locale.ROOT).contains(contrainte.toLowerCase(Locale.ROOT));
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Replie un texte comme la collation _ci de la base compare les colonnes d'une contrainte d'unicité :
+     * sans accents, en minuscules et sans espaces finaux. Deux textes de même forme repliée entrent en conflit.
+     * @param texte texte à replier
+     * @return forme repliée
+     */
+    public static String replier(String texte) {
+        String sansAccents = ACCENTS.matcher(Normalizer.normalize(texte, Normalizer.Form.NFD)).replaceAll("");
+        return sansAccents.toLowerCase(Locale.ROOT).stripTrailing();
+    }
+}
@@ -0,0 +1,71 @@
+package fr.diginamic.hello.utils;
+
+import fr.diginamic.hello.exceptions.RequeteIncorrecteException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Position opaque dans une pagination par clé (keyset) : couple (nom, id) du dernier élément renvoyé.
+ */
+public class Curseur {
+    /** Séparateur entre l'id et le nom dans la forme décodée du curseur */
+    private static final char SEPARATEUR = ':';
+
+    /** Nom du dernier élément de la page */
+    private final String nom;
+    /** Identifiant du dernier élément de la page */
+    private final long id;
+
+    /**
+     * Constructeur
+     * @param nom nom du dernier élément de la page
+     * @param id identifiant du dernier élément de la page
+     */
+    public Curseur(String nom, long id) {
+        this.nom = nom;
+        this.id = id;
+    }
+
+    /**
+     * Encode le curseur en chaîne opaque (Base64 URL) transmissible au client.
+     * @return curseur encodé
+     */
+    public String encoder() {
+        String brut = String.valueOf(id) + SEPARATEUR + nom;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(brut.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Décode un curseur reçu du client.
+     * @param curseur curseur encodé
+     * @return curseur
+     * @throws RequeteIncorrecteException le curseur n'a pas été produit par l'API
+     */
+    public static Curseur decoder(String curseur) throws RequeteIncorrecteException {
+        try {
+            String brut = new String(Base64.getUrlDecoder().decode(curseur), StandardCharsets.UTF_8);
+            int separateur = brut.indexOf(SEPARATEUR);
+            return new Curseur(brut.substring(separateur + 1), Long.parseLong(brut.substring(0, separateur)));
+        }
+        catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new RequeteIncorrecteException("Le curseur de pagination est invalide.");
+        }
+    }
+
+    /**
+     * Getter
+     * @return nom
+     */
+    public String getNom() {
+        return nom;
+    }
+
+    /**
+     * Getter
+     * @return id
+     */
+    public long getId() {
+        return id;
+    }
+}
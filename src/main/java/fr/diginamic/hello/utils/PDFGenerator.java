@@ -1,33 +1,77 @@
 package fr.diginamic.hello.utils;
 
 import com.itextpdf.text.*;
-import com.itextpdf.text.pdf.BaseFont;
+import com.itextpdf.text.pdf.PdfPTable;
 import com.itextpdf.text.pdf.PdfWriter;
-import fr.diginamic.hello.models.Ville;
-import jakarta.servlet.http.HttpServletResponse;
+import fr.diginamic.hello.dto.VilleDto;
 
-import java.io.IOException;
-import java.util.List;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.stream.Stream;
 
 public class PDFGenerator {
-    public static void generateDocumentPdfVilles(HttpServletResponse response, List<Ville> villes) throws IOException, DocumentException {
+    /** Polices partagées par tous les documents : aucune n'est créée par ville */
+    private static final Font POLICE_TITRE = new Font(Font.FontFamily.HELVETICA, 16, Font.BOLD, new BaseColor(235, 64, 52));
+    private static final Font POLICE_ENTETE = new Font(Font.FontFamily.HELVETICA, 12, Font.BOLD, BaseColor.WHITE);
+    private static final Font POLICE_VILLE = new Font(Font.FontFamily.HELVETICA, 11, Font.NORMAL, new BaseColor(0, 51, 80));
+
+    /** Couleur de fond de l'en-tête du tableau */
+    private static final BaseColor FOND_ENTETE = new BaseColor(0, 51, 80);
+
+    /** Nombre de villes ajoutées au tableau avant son écriture dans le document */
+    private static final int VILLES_PAR_ECRITURE = 100;
+
+    private PDFGenerator() {
+    }
+
+    /**
+     * Écrit les villes d'un département dans un tableau PDF au fur et à mesure de leur lecture.
+     * Le tableau est déclaré incomplet et ajouté au document toutes les 100 villes :
+     * les lignes déjà mises en page sont écrites dans le flux et libérées, l'en-tête est répété sur chaque page.
+     * @param nomDepartement nom du département, pour le titre
+     * @param villes flux de villes
+     * @param out destination
+     * @throws DocumentException erreur de construction du document
+     */
+    public static void writePdfVilles(String nomDepartement, Stream<VilleDto> villes, OutputStream out) throws DocumentException {
         Document doc = new Document(PageSize.A4);
-        // Ecrit les données binaires dans la réponse HTTP
-        PdfWriter.getInstance(doc, response.getOutputStream());
+        PdfWriter.getInstance(doc, out);
 
         doc.open();
-        doc.addTitle(String.format("fiche_villes_%s", villes.getFirst().getDepartement().getNom()));
-        doc.newPage();
-        BaseFont baseFont = BaseFont.createFont(BaseFont.HELVETICA, BaseFont.WINANSI, BaseFont.EMBEDDED);
+        doc.addTitle(String.format("fiche_villes_%s", nomDepartement));
 
-        Phrase title = new Phrase(String.format("Liste des villes du département %s (France) :\n\n", villes.getFirst().getDepartement().getNom()), new Font(baseFont, 16, 1, new BaseColor(235, 64, 52)));
-        doc.add(title);
+        Paragraph titre = new Paragraph(String.format("Liste des villes du département %s (France) :", nomDepartement), POLICE_TITRE);
+        titre.setSpacingAfter(12);
+        doc.add(titre);
 
-        for (Ville ville: villes) {
-            Phrase p = new Phrase(ville.toString(), new Font(baseFont, 12, 1, new BaseColor(0, 51, 80)));
-            doc.add(p);
+        PdfPTable table = new PdfPTable(new float[] {1.5f, 5, 2.5f});
+        table.setWidthPercentage(100);
+        table.setHeaderRows(1);
+        table.setComplete(false);
+
+        table.getDefaultCell().setBackgroundColor(FOND_ENTETE);
+        table.addCell(new Phrase("Id", POLICE_ENTETE));
+        table.addCell(new Phrase("Nom", POLICE_ENTETE));
+        table.addCell(new Phrase("Nombre d'habitants", POLICE_ENTETE));
+        table.getDefaultCell().setBackgroundColor(null);
+
+        int nbVilles = 0;
+        Iterator<VilleDto> iterator = villes.iterator();
+        while (iterator.hasNext()) {
+            VilleDto ville = iterator.next();
+            table.getDefaultCell().setHorizontalAlignment(Element.ALIGN_LEFT);
+            table.addCell(new Phrase(String.valueOf(ville.getId()), POLICE_VILLE));
+            table.addCell(new Phrase(ville.getNom(), POLICE_VILLE));
+            table.getDefaultCell().setHorizontalAlignment(Element.ALIGN_RIGHT);
+            table.addCell(new Phrase(String.valueOf(ville.getNbHabitants()), POLICE_VILLE));
+
+            if (++nbVilles % VILLES_PAR_ECRITURE == 0) {
+                doc.add(table);
+            }
         }
-        
+
+        table.setComplete(true);
+        doc.add(table);
         doc.close();
     }
 }
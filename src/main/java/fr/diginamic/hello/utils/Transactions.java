@@ -0,0 +1,31 @@
+package fr.diginamic.hello.utils;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Classe utilitaire de synchronisation avec la transaction courante.
+ */
+public final class Transactions {
+    private Transactions() {
+    }
+
+    /**
+     * Exécute l'action après la validation de la transaction courante, ou immédiatement hors transaction,
+     * pour ne jamais exposer dans un index ou un cache une écriture annulée.
+     * @param action action à exécuter
+     */
+    public static void apresCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        }
+        else {
+            action.run();
+        }
+    }
+}
@@ -0,0 +1,16 @@
+-- Index et contrainte d'unicité de la table ville, pour une base créée avant leur déclaration dans l'entité Ville
+-- (les bases créées par Hibernate les ont déjà). Syntaxe MariaDB.
+
+-- Tri par nom et pagination par curseur (nom, id)
+CREATE INDEX IF NOT EXISTS idx_ville_nom_id ON ville (NOM, ID);
+
+-- Intervalles de population
+CREATE INDEX IF NOT EXISTS idx_ville_nb_habitants ON ville (NB_HABITANTS);
+
+-- Villes d'un département : filtre de population et plus peuplées d'abord.
+-- Sert aussi d'index à la clé étrangère ID_DEPT.
+CREATE INDEX IF NOT EXISTS idx_ville_departement_nb_habitants ON ville (ID_DEPT, NB_HABITANTS DESC);
+
+-- Unicité du nom dans un département (contrainte uk_ville_nom_departement de l'entité Ville).
+-- La collation _ci de la colonne NOM la rend insensible à la casse et aux accents.
+ALTER TABLE ville ADD CONSTRAINT uk_ville_nom_departement UNIQUE (NOM, ID_DEPT);
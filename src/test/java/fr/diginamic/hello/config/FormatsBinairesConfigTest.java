@@ -0,0 +1,78 @@
+package fr.diginamic.hello.config;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.diginamic.hello.dto.VilleDto;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Les tailles comparées sont celles d'une liste de villes telle que servie par /api/villes/liste
+@SpringBootTest
+@ActiveProfiles("test")
+class FormatsBinairesConfigTest {
+    /** Type des listes de villes relues */
+    private static final TypeReference<List<VilleDto>> LISTE_VILLES = new TypeReference<>() {
+    };
+
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private MappingJackson2CborHttpMessageConverter cborConverter;
+    @Autowired
+    private MappingJackson2SmileHttpMessageConverter smileConverter;
+
+    private final List<VilleDto> villes = genererVilles(1000);
+
+    @Test
+    void testCborPlusCompactQueJson() throws IOException {
+        byte[] json = objectMapper.writeValueAsBytes(villes);
+        byte[] cbor = cborConverter.getObjectMapper().writeValueAsBytes(villes);
+
+        assertTrue(cbor.length < json.length, String.format("CBOR %d octets, JSON %d octets", cbor.length, json.length));
+        assertRelu(cborConverter.getObjectMapper(), cbor);
+    }
+
+    @Test
+    void testSmilePlusCompactQueJson() throws IOException {
+        byte[] json = objectMapper.writeValueAsBytes(villes);
+        byte[] smile = smileConverter.getObjectMapper().writeValueAsBytes(villes);
+
+        // Smile partage les noms de propriétés répétés : il doit aussi battre CBOR sur une longue liste
+        byte[] cbor = cborConverter.getObjectMapper().writeValueAsBytes(villes);
+        assertTrue(smile.length < json.length, String.format("Smile %d octets, JSON %d octets", smile.length, json.length));
+        assertTrue(smile.length < cbor.length, String.format("Smile %d octets, CBOR %d octets", smile.length, cbor.length));
+        assertRelu(smileConverter.getObjectMapper(), smile);
+    }
+
+    private void assertRelu(ObjectMapper mapper, byte[] contenu) throws IOException {
+        List<VilleDto> villesLues = mapper.readValue(contenu, LISTE_VILLES);
+        assertEquals(villes.size(), villesLues.size());
+        for (int i = 0; i < villes.size(); i++) {
+            assertEquals(villes.get(i).getId(), villesLues.get(i).getId());
+            assertEquals(villes.get(i).getNom(), villesLues.get(i).getNom());
+            assertEquals(villes.get(i).getNbHabitants(), villesLues.get(i).getNbHabitants());
+            assertEquals(villes.get(i).getCodeDepartement(), villesLues.get(i).getCodeDepartement());
+            assertEquals(villes.get(i).getNomDepartement(), villesLues.get(i).getNomDepartement());
+        }
+    }
+
+    private static List<VilleDto> genererVilles(int nb) {
+        List<VilleDto> villes = new ArrayList<>(nb);
+        for (int i = 0; i < nb; i++) {
+            String code = String.format("%02d", i % 95 + 1);
+            villes.add(new VilleDto(i + 1, "Ville-" + i, 1000 + i * 37, code, "Département " + code));
+        }
+        return villes;
+    }
+}
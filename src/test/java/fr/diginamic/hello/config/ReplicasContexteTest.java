@@ -0,0 +1,76 @@
+package fr.diginamic.hello.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import fr.diginamic.hello.dto.VilleDto;
+import fr.diginamic.hello.exceptions.RequeteIncorrecteException;
+import fr.diginamic.hello.exceptions.RessourceExistanteException;
+import fr.diginamic.hello.exceptions.RessourceNotFoundException;
+import fr.diginamic.hello.models.Departement;
+import fr.diginamic.hello.services.DepartementService;
+import fr.diginamic.hello.services.VilleService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// Le réplica est une seconde base H2 qui ne contient qu'une ville, absente de la primaire :
+// une lecture qui la trouve est passée par le réplica, une lecture des villes de data.sql par la primaire.
+// retard-max à 0 : les lectures ne restent pas sur la primaire après le démarrage ou une écriture.
+@SpringBootTest(properties = "recensement.replicas.retard-max=0s")
+@ActiveProfiles("test")
+class ReplicasContexteTest {
+    private static final String URL_REPLICA = "jdbc:h2:mem:replica-contexte;MODE=MariaDB;DB_CLOSE_DELAY=-1";
+
+    @Autowired
+    private VilleService villeService;
+    @Autowired
+    private DepartementService departementService;
+    @Autowired
+    private HikariDataSource primaire;
+
+    private final JdbcTemplate replica = new JdbcTemplate(new DriverManagerDataSource(URL_REPLICA));
+
+    @DynamicPropertySource
+    static void configurerReplica(DynamicPropertyRegistry registry) {
+        registry.add("recensement.replicas.urls", () -> {
+            new JdbcTemplate(new DriverManagerDataSource(URL_REPLICA)).batchUpdate(
+                    "create table if not exists departement(id bigint primary key, code varchar(255), nom varchar(255))",
+                    "create table if not exists ville(id bigint primary key, nom varchar(255), nb_habitants int, id_dept bigint)",
+                    "merge into departement key(id) values (1, '01', 'Ain')",
+                    "merge into ville key(id) values (99001, 'Ville du réplica', 1234, 1)");
+            return URL_REPLICA;
+        });
+    }
+
+    @AfterEach
+    void nettoyer() {
+        new JdbcTemplate(primaire).update("delete from departement where code = '98'");
+    }
+
+    @Test
+    void testLectureSeuleSurReplica() throws RessourceNotFoundException, RequeteIncorrecteException {
+        List<VilleDto> villes = villeService.getVilleDtosByNom("Ville du réplica");
+        assertEquals(99001, villes.getFirst().getId());
+
+        // Oyonnax n'existe que sur la primaire
+        assertThrows(RessourceNotFoundException.class, () -> villeService.getVilleDtosByNom("Oyonnax"));
+    }
+
+    @Test
+    void testEcritureSurPrimaire() throws RessourceExistanteException {
+        departementService.insertDepartement(new Departement("Département de test", "98"));
+
+        assertEquals(1, new JdbcTemplate(primaire).queryForObject("select count(*) from departement where code = '98'", Integer.class));
+        assertEquals(0, replica.queryForObject("select count(*) from departement where code = '98'", Integer.class));
+    }
+}
@@ -0,0 +1,109 @@
+package fr.diginamic.hello.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Deux bases H2 en mémoire tiennent lieu de primaire et de réplica :
+// chacune contient son nom, et le retard de réplication simulé pour le réplica
+class ReplicasDataSourceTest {
+    private final DataSource primaire = creerBase("primaire");
+    private final DataSource replica = creerBase("replica");
+
+    private ReplicasDataSource replicas;
+
+    @AfterEach
+    void fermer() throws IOException {
+        replicas.close();
+    }
+
+    @Test
+    void testLectureSeuleSurReplica() throws SQLException {
+        replicas = new ReplicasDataSource(primaire, List.of(replica), "select retard from base", Duration.ofSeconds(5), () -> 0L);
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(primaire);
+        dataSource.setReadOnlyDataSource(replicas);
+
+        // Le mode lecture seule est positionné avant la première requête, comme au début d'une transaction
+        try (Connection connexion = dataSource.getConnection()) {
+            connexion.setReadOnly(true);
+            assertEquals("replica", lireNom(connexion));
+        }
+
+        try (Connection connexion = dataSource.getConnection()) {
+            assertEquals("primaire", lireNom(connexion));
+        }
+    }
+
+    @Test
+    void testReplicaEnRetard() throws SQLException {
+        replicas = new ReplicasDataSource(primaire, List.of(replica), "select retard from base", Duration.ofSeconds(5), () -> 0L);
+        executer(replica, "update base set retard = 60");
+
+        replicas.verifier();
+
+        try (Connection connexion = replicas.getConnection()) {
+            assertEquals("primaire", lireNom(connexion));
+        }
+    }
+
+    @Test
+    void testReplicaIndisponible() throws SQLException {
+        DataSource absent = new DriverManagerDataSource("jdbc:h2:mem:absent;IFEXISTS=TRUE");
+        replicas = new ReplicasDataSource(primaire, List.of(absent, replica), "", Duration.ofSeconds(5), () -> 0L);
+
+        // Le réplica absent est écarté dès la première connexion refusée : les lectures vont au réplica restant
+        for (int i = 0; i < 3; i++) {
+            try (Connection connexion = replicas.getConnection()) {
+                assertEquals("replica", lireNom(connexion));
+            }
+        }
+    }
+
+    @Test
+    void testLectureApresEcritureSurPrimaire() throws SQLException {
+        replicas = new ReplicasDataSource(primaire, List.of(replica), "select retard from base", Duration.ofSeconds(5), System::currentTimeMillis);
+
+        // Écriture à l'instant : le réplica ne l'a peut-être pas encore reçue
+        try (Connection connexion = replicas.getConnection()) {
+            assertEquals("primaire", lireNom(connexion));
+        }
+    }
+
+    private static DataSource creerBase(String nom) {
+        DataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:" + nom + ";DB_CLOSE_DELAY=-1");
+        executer(dataSource, "create table if not exists base(nom varchar(20), retard int)",
+                "delete from base",
+                "insert into base values ('" + nom + "', 0)");
+        return dataSource;
+    }
+
+    private static void executer(DataSource dataSource, String... requetes) {
+        try (Connection connexion = dataSource.getConnection(); Statement statement = connexion.createStatement()) {
+            for (String requete : requetes) {
+                statement.execute(requete);
+            }
+        }
+        catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String lireNom(Connection connexion) throws SQLException {
+        try (Statement statement = connexion.createStatement(); ResultSet resultat = statement.executeQuery("select nom from base")) {
+            resultat.next();
+            return resultat.getString(1);
+        }
+    }
+}
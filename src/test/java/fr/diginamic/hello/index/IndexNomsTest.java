@@ -0,0 +1,93 @@
+package fr.diginamic.hello.index;
+
+import fr.diginamic.hello.dto.VilleDto;
+import fr.diginamic.hello.mappers.VilleMapper;
+import fr.diginamic.hello.models.Departement;
+import fr.diginamic.hello.models.Ville;
+import fr.diginamic.hello.repositories.VilleRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class IndexNomsTest {
+    @Autowired
+    private IndexNoms indexNoms;
+
+    @Autowired
+    private TableVilles tableVilles;
+
+    @MockitoBean
+    private VilleRepository villeRepository;
+
+    // Data
+    private final List<Departement> departements = List.of(new Departement(1, "Ain", "01"), new Departement(2, "Hérault", "34"));
+
+    private final List<Ville> villes = List.of(new Ville(13497, "Bourg-en-Bresse", 41365, departements.getFirst()),
+            new Ville(14007, "Ambérieu-en-Bugey", 14081, departements.getFirst()),
+            new Ville(14101, "Saint-Genis-Pouilly", 13298, departements.getFirst()),
+            new Ville(15020, "Béziers", 78683, departements.get(1)),
+            new Ville(15021, "Bessan", 5040, departements.get(1)),
+            new Ville(15022, "Bédarieux", 5821, departements.get(1)));
+
+    @BeforeEach
+    void reconstruireIndex() {
+        Mockito.when(villeRepository.findAllDtos()).thenReturn(VilleMapper.toDtos(villes));
+        tableVilles.invalider();
+    }
+
+    @Test
+    void testChercherSansAccentsOk() {
+        assertEquals(List.of(15020L), ids(indexNoms.chercher("Bezi", 10)));
+        assertEquals(List.of(14007L), ids(indexNoms.chercher("AMBE", 10)));
+        assertEquals(List.of(14101L), ids(indexNoms.chercher("saint g", 10)));
+        assertTrue(indexNoms.chercher("Montp", 10).isEmpty());
+    }
+
+    @Test
+    void testChercherTopKOk() {
+        // Triées par nombre d'habitants décroissant, limitées à k
+        assertEquals(List.of(15020L, 13497L, 15022L), ids(indexNoms.chercher("b", 3)));
+        assertEquals(List.of(15020L, 15022L, 15021L), ids(indexNoms.chercher("be", 10)));
+    }
+
+    @Test
+    void testMaintenanceOk() {
+        Mockito.clearInvocations(villeRepository);
+
+        Ville agde = new Ville(20000, "Agde", 29613, departements.get(1));
+        tableVilles.ajouter(agde);
+        assertEquals(List.of(20000L, 14007L), ids(indexNoms.chercher("a", 10)));
+
+        Ville bessan = new Ville(15021, "Bessan", 90000, departements.get(1));
+        tableVilles.remplacer(bessan);
+        assertEquals(List.of(15021L), ids(indexNoms.chercher("b", 1)));
+        assertEquals(90000, indexNoms.chercher("bess", 1).getFirst().getNbHabitants());
+
+        // Renommée : retirée sous son ancien nom, insérée sous le nouveau
+        Ville bedarieux = new Ville(15022, "Saint-Bédarieux", 5821, departements.get(1));
+        tableVilles.remplacer(bedarieux);
+        assertEquals(List.of(15021L, 15020L), ids(indexNoms.chercher("be", 10)));
+        assertEquals(List.of(14101L, 15022L), ids(indexNoms.chercher("saint", 10)));
+
+        tableVilles.retirer(20000);
+        assertEquals(List.of(14007L), ids(indexNoms.chercher("a", 10)));
+
+        // Les écritures sont appliquées à l'index sans relire la base
+        Mockito.verify(villeRepository, Mockito.never()).findAllDtos();
+    }
+
+    private static List<Long> ids(List<VilleDto> villes) {
+        return villes.stream().map(VilleDto::getId).toList();
+    }
+}
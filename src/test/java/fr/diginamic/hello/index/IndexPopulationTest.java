@@ -0,0 +1,128 @@
+package fr.diginamic.hello.index;
+
+import fr.diginamic.hello.dto.VilleDto;
+import fr.diginamic.hello.mappers.VilleMapper;
+import fr.diginamic.hello.models.Departement;
+import fr.diginamic.hello.models.Ville;
+import fr.diginamic.hello.repositories.VilleRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = "recensement.index-population.actif=true")
+@ActiveProfiles("test")
+class IndexPopulationTest {
+    @Autowired
+    private IndexPopulation indexPopulation;
+
+    @Autowired
+    private IndexNoms indexNoms;
+
+    @Autowired
+    private TableVilles tableVilles;
+
+    @MockitoBean
+    private VilleRepository villeRepository;
+
+    // Data
+    private final List<Departement> departements = List.of(new Departement(1, "Ain", "01"), new Departement(2, "Alpes-de-Haute-Provence", "04"));
+
+    private final List<Ville> villes = List.of(new Ville(13497, "Bourg-en-Bresse", 41365, departements.getFirst()),
+            new Ville(13721, "Oyonnax", 22559, departements.getFirst()),
+            new Ville(13738, "Manosque", 21868, departements.get(1)),
+            new Ville(13904, "Digne-les-Bains", 16186, departements.get(1)),
+            new Ville(14007, "Ambérieu-en-Bugey", 14081, departements.getFirst()));
+
+    @BeforeEach
+    void reconstruireIndex() {
+        Mockito.when(villeRepository.findAllDtos()).thenReturn(VilleMapper.toDtos(villes));
+        tableVilles.invalider();
+    }
+
+    @Test
+    void testChercherPlusDeOk() {
+        // Résultats triés par id, comme la requête JPA
+        assertEquals(List.of(13497L, 13721L, 13738L), ids(indexPopulation.chercherPlusDe(20000)));
+        // Borne exclue
+        assertEquals(List.of(13497L), ids(indexPopulation.chercherPlusDe(22559)));
+        assertTrue(indexPopulation.chercherPlusDe(Integer.MAX_VALUE).isEmpty());
+    }
+
+    @Test
+    void testChercherEntreOk() {
+        // Bornes incluses
+        assertEquals(List.of(13721L, 13738L, 13904L), ids(indexPopulation.chercherEntre(16186, 22559)));
+        assertTrue(indexPopulation.chercherEntre(50000, 100000).isEmpty());
+    }
+
+    @Test
+    void testChercherParDepartementOk() {
+        assertEquals(List.of(13497L, 13721L), ids(indexPopulation.chercherPlusDe("01", 20000)));
+        assertEquals(List.of(13904L), ids(indexPopulation.chercherEntre("04", 15000, 20000)));
+        assertTrue(indexPopulation.chercherPlusDe("34", 0).isEmpty());
+    }
+
+    @Test
+    void testMaintenanceOk() {
+        Mockito.clearInvocations(villeRepository);
+
+        Ville barcelonnette = new Ville(20000, "Barcelonnette", 2539, departements.get(1));
+        tableVilles.ajouter(barcelonnette);
+        assertEquals(List.of(20000L), ids(indexPopulation.chercherEntre("04", 2000, 3000)));
+        assertEquals("Barcelonnette", indexPopulation.chercherEntre(2000, 3000).getFirst().getNom());
+
+        // La ville change de rang : retirée à son ancienne population, insérée à la nouvelle
+        Ville oyonnax = new Ville(13721, "Oyonnax", 60000, departements.getFirst());
+        tableVilles.remplacer(oyonnax);
+        assertEquals(List.of(13721L), ids(indexPopulation.chercherPlusDe(50000)));
+        assertEquals(60000, indexPopulation.chercherPlusDe("01", 50000).getFirst().getNbHabitants());
+        assertTrue(indexPopulation.chercherEntre(22000, 23000).isEmpty());
+
+        // Même population que Manosque : départagée par l'id
+        Ville sisteron = new Ville(20001, "Sisteron", 21868, departements.get(1));
+        tableVilles.ajouter(sisteron);
+        assertEquals(List.of(13738L, 20001L), ids(indexPopulation.chercherEntre("04", 21868, 21868)));
+
+        tableVilles.retirer(20000);
+        tableVilles.retirer(13738);
+        assertTrue(indexPopulation.chercherEntre(2000, 3000).isEmpty());
+        assertEquals(List.of(20001L), ids(indexPopulation.chercherEntre(21868, 21868)));
+
+        // Les écritures sont appliquées à l'index sans relire la base
+        Mockito.verify(villeRepository, Mockito.never()).findAllDtos();
+    }
+
+    @Test
+    void testAjouterVilleDejaIndexeeOk() {
+        // Ville lue par une reconstruction concurrente avant que son ajout ne soit appliqué
+        tableVilles.ajouter(villes.get(1));
+        assertEquals(List.of(13721L), ids(indexPopulation.chercherEntre(22559, 22559)));
+        assertEquals(List.of(13497L, 13721L), ids(indexPopulation.chercherPlusDe("01", 20000)));
+    }
+
+    @Test
+    void testInvaliderUneLecturePourLesDeuxIndexOk() {
+        Mockito.clearInvocations(villeRepository);
+
+        tableVilles.invalider();
+
+        // Les deux index sont reconstruits depuis une seule lecture et partagent leurs villes
+        Mockito.verify(villeRepository, Mockito.times(1)).findAllDtos();
+        VilleDto oyonnax = indexPopulation.chercherEntre(22559, 22559).getFirst();
+        assertSame(oyonnax, indexNoms.chercher("oyo", 1).getFirst());
+    }
+
+    private static List<Long> ids(List<VilleDto> villes) {
+        return villes.stream().map(VilleDto::getId).toList();
+    }
+}
@@ -0,0 +1,42 @@
+package fr.diginamic.hello.repositories;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Inspecteur Hibernate qui retient les requêtes SQL envoyées à la base, telles que générées,
+ * avec leurs paramètres JDBC (?). Déclaré par la propriété hibernate.session_factory.statement_inspector.
+ */
+public class CaptureRequetes implements StatementInspector {
+    /** Requêtes capturées depuis le dernier appel à vider */
+    private static final List<String> REQUETES = new ArrayList<>();
+
+    @Override
+    public String inspect(String sql) {
+        synchronized (REQUETES) {
+            REQUETES.add(sql);
+        }
+        return sql;
+    }
+
+    /**
+     * Oublie les requêtes capturées.
+     */
+    static void vider() {
+        synchronized (REQUETES) {
+            REQUETES.clear();
+        }
+    }
+
+    /**
+     * Retourne les requêtes capturées depuis le dernier appel à vider.
+     * @return requêtes SQL
+     */
+    static List<String> getRequetes() {
+        synchronized (REQUETES) {
+            return List.copyOf(REQUETES);
+        }
+    }
+}
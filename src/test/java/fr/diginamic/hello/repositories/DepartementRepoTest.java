@@ -1,10 +1,15 @@
 package fr.diginamic.hello.repositories;
 
+import fr.diginamic.hello.dto.DepartementDto;
 import fr.diginamic.hello.exceptions.RequeteIncorrecteException;
 import fr.diginamic.hello.exceptions.RessourceExistanteException;
 import fr.diginamic.hello.exceptions.RessourceNotFoundException;
 import fr.diginamic.hello.models.Departement;
 import fr.diginamic.hello.services.DepartementService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Hibernate;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -13,8 +18,7 @@ import org.springframework.test.context.ActiveProfiles;
 import java.util.ArrayList;
 import java.util.List;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.*;
 
 @SpringBootTest
 @ActiveProfiles("test")
@@ -22,6 +26,9 @@ public class DepartementRepoTest {
     @Autowired
     private DepartementService departementService;
 
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
     // Data
     List<Departement> departements = List.of(new Departement(1, "Ain", "01"), new Departement(2, "Alpes-de-Haute-Provence", "04"));
 
@@ -49,6 +56,70 @@ public class DepartementRepoTest {
         assertEquals(this.departements.get(1), departementAlpes);
     }
 
+    @Test
+    void testGetDepartementByCodeCacheRequetes() throws RessourceNotFoundException, RequeteIncorrecteException {
+        Statistics statistiques = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        departementService.getDepartementByCode("04");
+        long nbSucces = statistiques.getQueryCacheHitCount();
+
+        // Deuxième appel : résultat lu dans le cache de requêtes, sans interroger la base
+        Departement departementAlpes = departementService.getDepartementByCode("04");
+        assertEquals(this.departements.get(1), departementAlpes);
+        assertEquals(nbSucces + 1, statistiques.getQueryCacheHitCount());
+    }
+
+    @Test
+    void testGetDepartementByCodeApresModificationOk() throws RessourceNotFoundException, RequeteIncorrecteException {
+        // Met le résultat en cache, puis vérifie que la modification l'invalide
+        departementService.getDepartementByCode("04");
+
+        Departement departementAModifier = new Departement("Alpes-de-Haute-Provence", "04");
+        departementAModifier.setNom("Alpes-de-Haute-Provence modifié");
+        departementService.updateDepartement(2L, departementAModifier);
+
+        assertEquals("Alpes-de-Haute-Provence modifié", departementService.getDepartementByCode("04").getNom());
+
+        // Rétablit la base de données dans l'état dans lequel elle était avant la modification
+        departementAModifier.setNom("Alpes-de-Haute-Provence");
+        departementService.updateDepartement(2L, departementAModifier);
+    }
+
+    @Test
+    void testGetDepartementByCodeSansVilles() throws RessourceNotFoundException, RequeteIncorrecteException {
+        // Plan de chargement par défaut : les villes ne sont pas chargées
+        Departement departementAin = departementService.getDepartementByCode("01");
+        assertFalse(Hibernate.isInitialized(departementAin.getVilles()));
+    }
+
+    @Test
+    void testGetDepartementByCodeAvecVillesOk() throws RessourceNotFoundException, RequeteIncorrecteException {
+        Departement departementAin = departementService.getDepartementByCodeAvecVilles("01");
+        assertTrue(Hibernate.isInitialized(departementAin.getVilles()));
+        assertEquals(6, departementAin.getVilles().size());
+    }
+
+    @Test
+    void testGetDepartementsAvecPopulationOk() throws RessourceNotFoundException {
+        List<DepartementDto> departements = departementService.getDepartementsAvecPopulation();
+        assertEquals(2, departements.size());
+    }
+
+    @Test
+    void testGetDepartementAvecPopulationByCodeOk() throws RessourceNotFoundException, RequeteIncorrecteException {
+        // Somme des habitants des 6 villes de l'Ain, calculée par la base de données
+        DepartementDto departementAin = departementService.getDepartementAvecPopulationByCode("01");
+        assertEquals(114215, departementAin.getNbHabitants());
+        assertEquals(6, departementAin.getNbVilles());
+    }
+
+    @Test
+    void testGetDepartementsAvecPopulationPaginationOk() throws RessourceNotFoundException, RequeteIncorrecteException {
+        List<DepartementDto> departements = departementService.getDepartementsAvecPopulationPagination(1);
+        assertEquals("Ain", departements.getFirst().getNomDepartement());
+        assertEquals(38054, departementService.getDepartementAvecPopulationById(2L).getNbHabitants());
+    }
+
     @Test
     void testInsertDepartementOk() throws RessourceNotFoundException, RequeteIncorrecteException, RessourceExistanteException {
         Departement nouveauDepartement = new Departement("Ariège", "09");
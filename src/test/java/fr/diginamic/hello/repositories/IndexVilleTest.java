@@ -0,0 +1,139 @@
+package fr.diginamic.hello.repositories;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Vérifie sur le plan d'exécution H2 (EXPLAIN) que chaque requête de VilleRepository
+// lit la table ville par l'index prévu pour elle, et non par un parcours complet.
+// Les requêtes sont celles générées par Hibernate, capturées par CaptureRequetes lors de l'appel
+// au repository, puis expliquées avec les mêmes valeurs de paramètres.
+// Transactionnel : la suppression testée est annulée à la fin du test.
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector=fr.diginamic.hello.repositories.CaptureRequetes")
+@ActiveProfiles("test")
+@Transactional
+class IndexVilleTest {
+    /** Parcours complet de la table dans un plan H2 */
+    private static final String PARCOURS_COMPLET = "VILLE.tableScan";
+
+    private static final String IDX_NOM_ID = "IDX_VILLE_NOM_ID";
+    private static final String IDX_NB_HABITANTS = "IDX_VILLE_NB_HABITANTS";
+    private static final String IDX_DEPARTEMENT_NB_HABITANTS = "IDX_VILLE_DEPARTEMENT_NB_HABITANTS";
+    private static final String UK_NOM_DEPARTEMENT = "UK_VILLE_NOM_DEPARTEMENT";
+
+    @Autowired
+    private VilleRepository villeRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        CaptureRequetes.vider();
+    }
+
+    @Test
+    void testFindAllDtosParcoursComplet() {
+        // Témoin : sans filtre, la table est parcourue en entier
+        villeRepository.findAllDtos();
+        assertTrue(expliquer().contains(PARCOURS_COMPLET));
+    }
+
+    @Test
+    void testFindAllDtosOrderByNomIndex() {
+        villeRepository.findAllDtosOrderByNom(PageRequest.of(0, 5));
+        assertIndex(expliquer(5), IDX_NOM_ID);
+    }
+
+    @Test
+    void testFindAllDtosAfterNomAndIdIndex() {
+        villeRepository.findAllDtosAfterNomAndId("Gex", 14089L, PageRequest.of(0, 3));
+        assertIndex(expliquer("Gex", "Gex", 14089L, 3), IDX_NOM_ID);
+    }
+
+    @Test
+    void testFindDtosByNomIndex() {
+        // Nom exact : l'index (NOM, ID) et la contrainte (NOM, ID_DEPT) conviennent tous deux
+        villeRepository.findDtosByNom("Oyonnax");
+        assertIndex(expliquer("Oyonnax"), IDX_NOM_ID, UK_NOM_DEPARTEMENT);
+    }
+
+    @Test
+    void testFindDtosByNomStartingWithIndex() {
+        villeRepository.findDtosByNomStartingWith("Bo");
+        assertIndex(expliquer("Bo"), IDX_NOM_ID, UK_NOM_DEPARTEMENT);
+    }
+
+    @Test
+    void testFindDtosByNbHabitantsGreaterThanIndex() {
+        villeRepository.findDtosByNbHabitantsGreaterThan(20000);
+        assertIndex(expliquer(20000), IDX_NB_HABITANTS);
+    }
+
+    @Test
+    void testFindDtosByNbHabitantsBetweenIndex() {
+        villeRepository.findDtosByNbHabitantsBetween(20000, 40000);
+        assertIndex(expliquer(20000, 40000), IDX_NB_HABITANTS);
+    }
+
+    @Test
+    void testFindDtosByDepartementCodeAndNbHabitantsGreaterThanIndex() {
+        // Le département peut être lu d'abord (index composite) ou la population filtrée d'abord
+        villeRepository.findDtosByDepartementCodeAndNbHabitantsGreaterThan("01", 20000);
+        assertIndex(expliquer("01", 20000), IDX_DEPARTEMENT_NB_HABITANTS, IDX_NB_HABITANTS);
+    }
+
+    @Test
+    void testFindDtosByDepartementCodeAndNbHabitantsBetweenIndex() {
+        villeRepository.findDtosByDepartementCodeAndNbHabitantsBetween("01", 20000, 40000);
+        assertIndex(expliquer("01", 20000, 40000), IDX_DEPARTEMENT_NB_HABITANTS, IDX_NB_HABITANTS);
+    }
+
+    @Test
+    void testFindDtosByDepartementCodeOrderByNbHabitantsDescIndex() {
+        villeRepository.findDtosByDepartementCodeOrderByNbHabitantsDesc("01", PageRequest.of(0, 2));
+        assertIndex(expliquer("01", 2), IDX_DEPARTEMENT_NB_HABITANTS);
+    }
+
+    @Test
+    void testDeleteByDepartementIdIndex() {
+        villeRepository.deleteByDepartementId(2);
+        assertIndex(expliquer(2L), IDX_DEPARTEMENT_NB_HABITANTS);
+    }
+
+    /**
+     * Explique la requête générée par le dernier appel au repository.
+     * @param parametres valeurs des paramètres JDBC, dans l'ordre de la requête
+     * @return plan d'exécution
+     */
+    private String expliquer(Object... parametres) {
+        List<String> requetes = CaptureRequetes.getRequetes();
+        assertEquals(1, requetes.size(), requetes.toString());
+
+        String requete = requetes.getFirst();
+        assertEquals(parametres.length, requete.chars().filter(c -> c == '?').count(), requete);
+
+        return jdbcTemplate.queryForObject("EXPLAIN " + requete, String.class, parametres);
+    }
+
+    /**
+     * Vérifie que la table ville est lue par l'un des index donnés.
+     * @param plan plan d'exécution
+     * @param index index acceptés
+     */
+    private static void assertIndex(String plan, String... index) {
+        assertFalse(plan.contains(PARCOURS_COMPLET), plan);
+
+        String planMajuscules = plan.toUpperCase();
+        assertTrue(List.of(index).stream().anyMatch(planMajuscules::contains), plan);
+    }
+}
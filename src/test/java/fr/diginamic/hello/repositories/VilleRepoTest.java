@@ -1,16 +1,28 @@
 package fr.diginamic.hello.repositories;
 
+import fr.diginamic.hello.dto.ErreurImportDto;
+import fr.diginamic.hello.dto.PageCurseurDto;
+import fr.diginamic.hello.dto.RapportImportDto;
+import fr.diginamic.hello.dto.VilleDto;
 import fr.diginamic.hello.exceptions.RequeteIncorrecteException;
 import fr.diginamic.hello.exceptions.RessourceExistanteException;
 import fr.diginamic.hello.exceptions.RessourceNotFoundException;
 import fr.diginamic.hello.models.Departement;
 import fr.diginamic.hello.models.Ville;
+import fr.diginamic.hello.services.ImportService;
 import fr.diginamic.hello.services.VilleService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
@@ -28,6 +40,12 @@ class VilleRepoTest {
     @Autowired
     private VilleService villeService;
 
+    @Autowired
+    private ImportService importService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
     // Data
     List<Departement> departements = List.of(new Departement(1, "Ain", "01"), new Departement(2, "Alpes-de-Haute-Provence", "04"));
 
@@ -52,14 +70,14 @@ class VilleRepoTest {
 
     @Test
     void testFindAllVillesOk() throws RessourceNotFoundException {
-        List<Ville> actualVilles = villeService.getVilles();
+        List<VilleDto> actualVilles = villeService.getVilleDtos();
         List<Ville> expectedVilles = constructVilles();
-        assertEquals(expectedVilles, actualVilles);
+        assertEquals(ids(expectedVilles), idsDtos(actualVilles));
     }
 
     @Test
     void testGetVillesPaginationOk() throws RessourceNotFoundException, RequeteIncorrecteException {
-        List<Ville> actual5Villes = villeService.getVillesPagination(5);
+        List<VilleDto> actual5Villes = villeService.getVilleDtosPagination(5);
         // Récupère les 5 premières villes triées par nom
         List<Ville> expected5Villes = constructVilles()
                     .stream()
@@ -67,7 +85,33 @@ class VilleRepoTest {
                     .limit(5)
                     .toList();
 
-        assertEquals(expected5Villes, actual5Villes);
+        assertEquals(ids(expected5Villes), idsDtos(actual5Villes));
+    }
+
+    @Test
+    void testGetVilleDtosPaginationCurseurOk() throws RessourceNotFoundException, RequeteIncorrecteException {
+        List<String> expectedNoms = constructVilles()
+                .stream()
+                .map(Ville::getNom)
+                .sorted()
+                .toList();
+
+        // Parcourt toutes les pages de 3 villes en suivant les curseurs
+        List<VilleDto> actualVilles = new ArrayList<>();
+        PageCurseurDto<VilleDto> page = villeService.getVilleDtosPaginationCurseur(null, 3);
+        actualVilles.addAll(page.getElements());
+
+        while (page.getCurseurSuivant() != null) {
+            page = villeService.getVilleDtosPaginationCurseur(page.getCurseurSuivant(), 3);
+            actualVilles.addAll(page.getElements());
+        }
+
+        assertEquals(expectedNoms, actualVilles.stream().map(VilleDto::getNom).toList());
+    }
+
+    @Test
+    void testGetVillesPaginationCurseurRequeteIncorrecteException() {
+        assertThrows(RequeteIncorrecteException.class, () -> villeService.getVilleDtosPaginationCurseur("pas-un-curseur", 3));
     }
 
     @Test
@@ -76,10 +120,19 @@ class VilleRepoTest {
         assertEquals(constructVilles().getFirst(), actualVille);
     }
 
+    @Test
+    void testGetVilleDtoByIdOk() throws RessourceNotFoundException, RequeteIncorrecteException {
+        VilleDto actualVille = villeService.getVilleDtoById(13497L);
+        assertEquals("Bourg-en-Bresse", actualVille.getNom());
+        assertEquals(41365, actualVille.getNbHabitants());
+        assertEquals("01", actualVille.getCodeDepartement());
+        assertEquals("Ain", actualVille.getNomDepartement());
+    }
+
     @Test
     void testGetVillesByNomOk() throws RessourceNotFoundException, RequeteIncorrecteException {
-        List<Ville> actualVilles = villeService.getVillesByNom("Oyonnax");
-        assertEquals(List.of(constructVilles().get(1)), actualVilles);
+        List<VilleDto> actualVilles = villeService.getVilleDtosByNom("Oyonnax");
+        assertEquals(ids(List.of(constructVilles().get(1))), idsDtos(actualVilles));
     }
 
     @Test
@@ -89,7 +142,7 @@ class VilleRepoTest {
 
         villeService.insertVille(nouvelleVille);
 
-        Ville villeAjoutee = villeService.getVillesByNom("Barcelonnette").getFirst();
+        VilleDto villeAjoutee = villeService.getVilleDtosByNom("Barcelonnette").getFirst();
         // Print les informations de la ville ajoutée
         System.out.println(villeAjoutee.toString());
         assertEquals("Barcelonnette", villeAjoutee.getNom());
@@ -114,6 +167,67 @@ class VilleRepoTest {
         villeService.updateVille(13497L, villeAModifier);
     }
 
+    @Test
+    void testGetVillesTransactionLectureSeule() throws RessourceNotFoundException, RequeteIncorrecteException {
+        Statistics statistiques = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistiques.clear();
+
+        villeService.getVilleDtosByNom("Oyonnax");
+
+        // Une seule transaction en lecture seule : la session n'est ni flushée ni vérifiée à la validation
+        assertEquals(1, statistiques.getTransactionCount());
+        assertEquals(0, statistiques.getFlushCount());
+        assertEquals(0, statistiques.getEntityUpdateCount());
+    }
+
+    @Test
+    void testUpdateVilleUneTransaction() throws RessourceNotFoundException, RequeteIncorrecteException {
+        Statistics statistiques = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        Ville villeAModifier = new Ville("Oyonnax", 22600);
+        villeAModifier.setDepartement(departements.getFirst());
+
+        statistiques.clear();
+        villeService.updateVille(13721L, villeAModifier);
+
+        // Lecture et mise à jour dans la même transaction : la ville reste gérée,
+        // save ne la relit pas et la session n'est flushée qu'une fois, à la validation
+        assertEquals(1, statistiques.getTransactionCount());
+        assertEquals(1, statistiques.getFlushCount());
+        assertEquals(1, statistiques.getEntityUpdateCount());
+        assertTrue(statistiques.getPrepareStatementCount() <= 2);
+
+        // Rétablit la base de données dans l'état dans lequel elle était avant la modification
+        villeAModifier.setNbHabitants(22559);
+        villeService.updateVille(13721L, villeAModifier);
+    }
+
+    @Test
+    void testInsertVilleDoublonRessourceExistanteException() {
+        // Oyonnax existe déjà dans l'Ain : la contrainte d'unicité (nom, département) refuse l'insertion
+        Ville doublon = new Ville("Oyonnax", 22559);
+        doublon.setDepartement(departements.getFirst());
+
+        assertThrows(RessourceExistanteException.class, () -> villeService.insertVille(doublon));
+    }
+
+    @Test
+    @Transactional
+    void testUpsertVilleOk() throws RessourceNotFoundException, RequeteIncorrecteException {
+        // Ville existante : seul le nombre d'habitants change, l'id est conservé
+        Ville oyonnax = new Ville("Oyonnax", 23000);
+        oyonnax.setDepartement(departements.getFirst());
+        Ville villeModifiee = villeService.upsertVille(oyonnax);
+        assertEquals(13721L, villeModifiee.getId());
+        assertEquals(23000, villeModifiee.getNbHabitants());
+
+        // Nouvelle ville : insérée
+        Ville belley = new Ville("Belley", 9211);
+        belley.setDepartement(departements.getFirst());
+        Ville villeAjoutee = villeService.upsertVille(belley);
+        assertEquals("Belley", villeAjoutee.getNom());
+        assertEquals(9, villeService.getVilleDtos().size());
+    }
+
     @Test
     void testDeleteVilleOk() throws RessourceNotFoundException, RequeteIncorrecteException, RessourceExistanteException {
         // On ajoute une donnée à supprimer ensuite
@@ -121,7 +235,7 @@ class VilleRepoTest {
         villeAInserer.setDepartement(departements.getFirst());
         villeService.insertVille(villeAInserer);
 
-        List<Ville> villeInseree = villeService.getVillesByNom("Barcelonnette");
+        List<VilleDto> villeInseree = villeService.getVilleDtosByNom("Barcelonnette");
         Long idVilleInseree = villeInseree.getFirst().getId();
 
         villeService.deleteVille(idVilleInseree);
@@ -131,41 +245,127 @@ class VilleRepoTest {
 
     @Test
     void testExtractVillesByNomStartingWithOk() throws RessourceNotFoundException, RequeteIncorrecteException {
-        List<Ville> actualVillesEnB = villeService.extractVillesByNomStartingWith("B");
+        List<VilleDto> actualVillesEnB = villeService.extractVilleDtosByNomStartingWith("B");
         List<Ville> expectedVillesEnB = constructVilles();
-        assertEquals(List.of(expectedVillesEnB.getFirst(), expectedVillesEnB.getLast()), actualVillesEnB);
+        assertEquals(ids(List.of(expectedVillesEnB.getFirst(), expectedVillesEnB.getLast())), idsDtos(actualVillesEnB));
+    }
+
+    @Test
+    void testExtractVillesByNomStartingWithJokersLitteraux() {
+        // % et _ sont cherchés tels quels : aucune ville ne commence par ces caractères
+        assertThrows(RessourceNotFoundException.class, () -> villeService.extractVilleDtosByNomStartingWith("%"));
+        assertThrows(RessourceNotFoundException.class, () -> villeService.extractVilleDtosByNomStartingWith("_yonnax"));
+        assertThrows(RessourceNotFoundException.class, () -> villeService.extractVilleDtosByNomStartingWith("\\"));
     }
 
     @Test
     void testExtractVillesByNbHabGreaterThanOk() throws RessourceNotFoundException, RequeteIncorrecteException {
-        List<Ville> actualGrandesVilles = villeService.extractVillesByNbHabGreaterThan(30000);
-        assertEquals(List.of(constructVilles().getFirst()), actualGrandesVilles);
+        List<VilleDto> actualGrandesVilles = villeService.extractVilleDtosByNbHabGreaterThan(30000);
+        assertEquals(ids(List.of(constructVilles().getFirst())), idsDtos(actualGrandesVilles));
     }
 
     @Test
     void testExtractVillesByDepartementCodeOrderByNbHabDescOk() throws RessourceNotFoundException, RequeteIncorrecteException {
-        List<Ville> actualVilles01 = villeService.extractVillesByDepartementCodeOrderByNbHabDesc("01", 3);
+        List<VilleDto> actualVilles01 = villeService.extractVilleDtosByDepartementCodeOrderByNbHabDesc("01", 3);
         List<Ville> expectedVilles01 = constructVilles();
-        assertEquals(List.of(expectedVilles01.getFirst(), expectedVilles01.get(1), expectedVilles01.get(4)), actualVilles01);
+        assertEquals(ids(List.of(expectedVilles01.getFirst(), expectedVilles01.get(1), expectedVilles01.get(4))), idsDtos(actualVilles01));
     }
 
     @Test
     void testExtractVillesByNbHabBetweenOk() throws RessourceNotFoundException, RequeteIncorrecteException {
-        List<Ville> actualVilles = villeService.extractVillesByNbHabBetween(20_000, 30_000);
+        List<VilleDto> actualVilles = villeService.extractVilleDtosByNbHabBetween(20_000, 30_000);
         List<Ville> expectedVilles = constructVilles();
-        assertEquals(List.of(expectedVilles.get(1), expectedVilles.get(2)), actualVilles);
+        assertEquals(ids(List.of(expectedVilles.get(1), expectedVilles.get(2))), idsDtos(actualVilles));
     }
 
     @Test
     void testExtractVillesByDepartementCodeAndNbHabitantsGreaterThanOk() throws RessourceNotFoundException, RequeteIncorrecteException {
-        List<Ville> actualVilles = villeService.extractVillesByDepartementCodeAndNbHabGreaterThan("01", 20_000);
-        assertEquals(List.of(new Ville(13497, "Bourg-en-Bresse", 41365, departements.getFirst()), new Ville(13721, "Oyonnax", 22559, departements.getFirst())), actualVilles);
+        List<VilleDto> actualVilles = villeService.extractVilleDtosByDepartementCodeAndNbHabGreaterThan("01", 20_000);
+        assertEquals(List.of(13497L, 13721L), idsDtos(actualVilles));
     }
 
     @Test
     void testExtractVillesByDepartementCodeAndNbHabBetweenOk() throws RessourceNotFoundException, RequeteIncorrecteException {
-        List<Ville> actualVilles = villeService.extractVillesByDepartementCodeAndNbHabBetween("04", 15_000, 30_000);
+        List<VilleDto> actualVilles = villeService.extractVilleDtosByDepartementCodeAndNbHabBetween("04", 15_000, 30_000);
         List<Ville> expectedVilles = constructVilles();
-        assertEquals(List.of(expectedVilles.get(2), expectedVilles.get(3)), actualVilles);
+        assertEquals(ids(List.of(expectedVilles.get(2), expectedVilles.get(3))), idsDtos(actualVilles));
+    }
+
+    @Test
+    @Transactional
+    void testImporterVillesOk() throws IOException, RequeteIncorrecteException, RessourceNotFoundException {
+        String csv = """
+                nom ville, nombre d'habitants, code département, nom du département
+                Belley,9211,01,Ain
+                Gex,12652,01,Ain
+                Sisteron,7675,04
+                Paris,2100000,75,Paris
+                Forcalquier,beaucoup,04
+                X,500,04
+                Belley,9211,01,Ain
+                """;
+
+        RapportImportDto rapport = importService.importerVillesCsv(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(7, rapport.getNbLignes());
+        assertEquals(2, rapport.getNbImportees());
+        // Gex existe déjà, Paris n'a pas de département, Forcalquier et X sont invalides, Belley est en double
+        assertEquals(List.of(3, 5, 6, 7, 8), rapport.getErreurs().stream().map(ErreurImportDto::getLigne).toList());
+
+        List<VilleDto> villesAin = villeService.extractVilleDtosByDepartementCodeAndNbHabBetween("01", 9000, 10000);
+        assertEquals(List.of("Belley"), villesAin.stream().map(VilleDto::getNom).toList());
+        assertEquals(10, villeService.getVilleDtos().size());
+    }
+
+    @Test
+    @Transactional
+    void testImporterVillesDoublonsCasseEtAccents() throws IOException, RequeteIncorrecteException {
+        String csv = """
+                OYONNAX,1000,01
+                amberieu-en-bugey,100,01
+                Belley,9211,01
+                BELLEY,9211,01
+                """;
+
+        RapportImportDto rapport = importService.importerVillesCsv(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+
+        // La contrainte d'unicité de la base ignore la casse et les accents : seule Belley est importée
+        assertEquals(1, rapport.getNbImportees());
+        assertEquals(List.of(1, 2, 4), rapport.getErreurs().stream().map(ErreurImportDto::getLigne).toList());
+    }
+
+    @Test
+    @Transactional
+    void testImporterVillesCsvGuillemetsOk() throws IOException, RequeteIncorrecteException, RessourceNotFoundException {
+        String csv = """
+                nom ville, nombre d'habitants, code département, nom du département
+                "Val-Revermont, Treffort",2530,01,Ain
+                "Le ""Vieux"" Village", 320 ,01,"Ain"
+                "Sur deux
+                lignes",150,04
+                Nantua,3335,01,Ain
+                "Sans fin,10,04
+                """;
+
+        RapportImportDto rapport = importService.importerVillesCsv(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(5, rapport.getNbLignes());
+        assertEquals(4, rapport.getNbImportees());
+        // Le guillemet de la ligne 7 n'est jamais refermé
+        assertEquals(List.of(7), rapport.getErreurs().stream().map(ErreurImportDto::getLigne).toList());
+
+        VilleDto treffort = villeService.getVilleDtosByNom("Val-Revermont, Treffort").getFirst();
+        assertEquals(2530, treffort.getNbHabitants());
+        assertEquals("01", treffort.getCodeDepartement());
+        assertEquals(320, villeService.getVilleDtosByNom("Le \"Vieux\" Village").getFirst().getNbHabitants());
+        assertEquals("04", villeService.getVilleDtosByNom("Sur deux\nlignes").getFirst().getCodeDepartement());
+    }
+
+    private static List<Long> ids(List<Ville> villes) {
+        return villes.stream().map(Ville::getId).toList();
+    }
+
+    private static List<Long> idsDtos(List<VilleDto> villes) {
+        return villes.stream().map(VilleDto::getId).toList();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,85 @@
+package fr.diginamic.hello.restControllers;
+
+import fr.diginamic.hello.dto.VilleDto;
+import fr.diginamic.hello.repositories.DepartementRepository;
+import fr.diginamic.hello.repositories.VilleRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+// Compression à la volée par Tomcat : elle n'existe qu'avec un vrai serveur, pas avec MockMvc.
+// Le client HTTP du JDK ne décompresse pas : le corps reçu est celui envoyé par Tomcat.
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+class CompressionReponsesTest {
+    @MockitoBean
+    private VilleRepository villeRepository;
+    @MockitoBean
+    private DepartementRepository departementRepository;
+    @LocalServerPort
+    private int port;
+
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+    @BeforeEach
+    void setUp() {
+        // Assez de villes pour dépasser la taille minimale de compression (2 Ko)
+        List<VilleDto> villes = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            villes.add(new VilleDto(i + 1, "Ville-" + i, 1000 + i, "01", "Ain"));
+        }
+        when(villeRepository.findAllDtos()).thenReturn(villes);
+    }
+
+    @Test
+    void testListeCompresseeEnGzip() throws IOException, InterruptedException {
+        HttpResponse<byte[]> reponse = envoyer(HttpRequest.newBuilder(uri("/api/villes/liste"))
+                .header(HttpHeaders.ACCEPT_ENCODING, "gzip"));
+
+        assertEquals(200, reponse.statusCode());
+        assertEquals("gzip", reponse.headers().firstValue(HttpHeaders.CONTENT_ENCODING).orElse(null));
+        String etag = reponse.headers().firstValue(HttpHeaders.ETAG).orElseThrow();
+        assertTrue(etag.startsWith("W/\""), etag);
+        assertTrue(Gzip.decompresser(reponse.body()).contains("\"nom\":\"Ville-199\""));
+
+        // L'ETag faible valide aussi la représentation compressée
+        HttpResponse<byte[]> nonModifiee = envoyer(HttpRequest.newBuilder(uri("/api/villes/liste"))
+                .header(HttpHeaders.ACCEPT_ENCODING, "gzip")
+                .header(HttpHeaders.IF_NONE_MATCH, etag));
+        assertEquals(304, nonModifiee.statusCode());
+    }
+
+    @Test
+    void testListeNonCompresseeSansAcceptEncoding() throws IOException, InterruptedException {
+        HttpResponse<byte[]> reponse = envoyer(HttpRequest.newBuilder(uri("/api/villes/liste")));
+
+        assertEquals(200, reponse.statusCode());
+        assertTrue(reponse.headers().firstValue(HttpHeaders.CONTENT_ENCODING).isEmpty());
+        assertTrue(new String(reponse.body(), StandardCharsets.UTF_8).contains("\"nom\":\"Ville-199\""));
+    }
+
+    private URI uri(String chemin) {
+        return URI.create("http://localhost:" + port + chemin);
+    }
+
+    private HttpResponse<byte[]> envoyer(HttpRequest.Builder requete) throws IOException, InterruptedException {
+        return client.send(requete.GET().build(), HttpResponse.BodyHandlers.ofByteArray());
+    }
+}
@@ -2,6 +2,7 @@ package fr.diginamic.hello.restControllers;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import fr.diginamic.hello.dto.DepartementDto;
+import fr.diginamic.hello.mappers.DepartementMapper;
 import fr.diginamic.hello.models.Departement;
 import fr.diginamic.hello.repositories.DepartementRepository;
 import org.junit.jupiter.api.Test;
@@ -20,6 +21,7 @@ import java.util.Optional;
 
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -41,7 +43,7 @@ public class DepartementRestControllerTest {
 
     @Test
     void testGetDepartementsOk() throws Exception {
-        when(deptRepository.findAll()).thenReturn(departements);
+        when(deptRepository.findAllWithPopulation()).thenReturn(DepartementMapper.toDtos(departements));
 
         this.mockMvc.perform(MockMvcRequestBuilders.get("/api/departements/liste")).andDo(print())
                 .andExpect(status().isOk())
@@ -54,7 +56,7 @@ public class DepartementRestControllerTest {
 
     @Test
     void testGetDepartementsPaginationOk() throws Exception {
-        when(deptRepository.findAllOrderByNom(PageRequest.of(0, 2))).thenReturn(departements);
+        when(deptRepository.findAllWithPopulationOrderByNom(PageRequest.of(0, 2))).thenReturn(DepartementMapper.toDtos(departements));
 
         this.mockMvc.perform(MockMvcRequestBuilders.get("/api/departements/liste/pagination?n=2")).andDo(print())
                 .andExpect(status().isOk())
@@ -66,7 +68,7 @@ public class DepartementRestControllerTest {
 
     @Test
     void testGetDepartementByIdOk() throws Exception {
-        when(deptRepository.findById(1L)).thenReturn(Optional.of(departements.getFirst()));
+        when(deptRepository.findWithPopulationById(1L)).thenReturn(Optional.of(DepartementMapper.toDto(departements.getFirst())));
 
         this.mockMvc.perform(MockMvcRequestBuilders.get("/api/departements/{id}", 1L)).andDo(print())
                 .andExpect(status().isOk())
@@ -76,7 +78,7 @@ public class DepartementRestControllerTest {
 
     @Test
     void testGetDepartementByCodeOk() throws Exception {
-        when(deptRepository.findByCode("04")).thenReturn(Optional.of(departements.getLast()));
+        when(deptRepository.findWithPopulationByCode("04")).thenReturn(Optional.of(DepartementMapper.toDto(departements.getLast())));
 
         this.mockMvc.perform(MockMvcRequestBuilders.get("/api/departements/code?code=04")).andDo(print())
                 .andExpect(status().isOk())
@@ -87,7 +89,7 @@ public class DepartementRestControllerTest {
     @Test
     void testAddDepartementOk() throws Exception {
         when(deptRepository.findByCode("09")).thenReturn(Optional.empty());
-        when(deptRepository.findAll()).thenReturn(departements);
+        when(deptRepository.findAllWithPopulation()).thenReturn(DepartementMapper.toDtos(departements));
 
         this.mockMvc.perform(MockMvcRequestBuilders.post("/api/departements")
                             .content(objectMapper.writeValueAsString(new DepartementDto(0, "09", "Ariège", 0)))
@@ -96,6 +98,21 @@ public class DepartementRestControllerTest {
                 .andExpect(status().isOk());
     }
 
+    @Test
+    void testAddDepartementRepresentationOk() throws Exception {
+        when(deptRepository.findByCode("09")).thenReturn(Optional.empty());
+        when(deptRepository.save(any(Departement.class))).thenReturn(new Departement(3, "Ariège", "09"));
+
+        this.mockMvc.perform(MockMvcRequestBuilders.post("/api/departements")
+                        .header("Prefer", "return=representation, respond-async")
+                        .content(objectMapper.writeValueAsString(new DepartementDto(0, "09", "Ariège", 0)))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isCreated())
+                .andExpect(header().string("Location", "http://localhost/api/departements/3"))
+                .andExpect(jsonPath("codeDepartement", is("09")));
+    }
+
     @Test
     void testUpdateVilleOk() throws Exception {
         when(deptRepository.findById(1L)).thenReturn(Optional.of(departements.getFirst()));
@@ -109,7 +126,7 @@ public class DepartementRestControllerTest {
 
     @Test
     void testDeleteVilleOk() throws Exception {
-        when(deptRepository.findById(1L)).thenReturn(Optional.of(departements.getFirst()));
+        when(deptRepository.deleteDepartementById(1L)).thenReturn(1);
 
         this.mockMvc.perform(MockMvcRequestBuilders.delete("/api/departements/{id}", 1L)
                         .contentType(MediaType.APPLICATION_JSON)
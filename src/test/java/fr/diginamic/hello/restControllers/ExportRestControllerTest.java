@@ -0,0 +1,116 @@
+package fr.diginamic.hello.restControllers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.diginamic.hello.dto.TacheExportDto;
+import fr.diginamic.hello.dto.VilleDto;
+import fr.diginamic.hello.repositories.DepartementRepository;
+import fr.diginamic.hello.repositories.VilleRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import java.nio.charset.StandardCharsets;
+import java.util.stream.Stream;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@AutoConfigureMockMvc
+class ExportRestControllerTest {
+    @Autowired
+    private ObjectMapper objectMapper;
+    @MockitoBean
+    private VilleRepository villeRepository;
+    @MockitoBean
+    private DepartementRepository departementRepository;
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void testExportVillesCsvOk() throws Exception {
+        when(villeRepository.count()).thenReturn(2L);
+        when(villeRepository.streamAllDtos()).thenReturn(Stream.of(new VilleDto(13497, "Bourg-en-Bresse", 41365, "01", "Ain"),
+                new VilleDto(13721, "Oyonnax", 22559, "01", "Ain")));
+
+        String soumission = this.mockMvc.perform(MockMvcRequestBuilders.post("/api/exports/villes/csv")).andDo(print())
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Location", containsString("/api/exports/")))
+                .andReturn().getResponse().getContentAsString();
+        String id = objectMapper.readValue(soumission, TacheExportDto.class).getId();
+
+        TacheExportDto tache = attendreFin(id);
+        assertEquals(TacheExportDto.Statut.TERMINEE, tache.getStatut());
+        assertEquals(2, tache.getNbLignesEcrites());
+        assertEquals(2, tache.getNbLignesTotal());
+
+        String contenu = this.mockMvc.perform(MockMvcRequestBuilders.get("/api/exports/" + id + "/fichier")).andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Disposition", containsString("all-villes.csv")))
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+        assertTrue(contenu.contains("Oyonnax,22559,01,Ain\n"));
+    }
+
+    @Test
+    void testExportVillesCsvEchec() throws Exception {
+        when(villeRepository.count()).thenReturn(2L);
+        when(villeRepository.streamAllDtos()).thenThrow(new IllegalStateException("Connexion refusée à jdbc:mariadb://db-interne:3306/recensement"));
+
+        String soumission = this.mockMvc.perform(MockMvcRequestBuilders.post("/api/exports/villes/csv"))
+                .andExpect(status().isAccepted())
+                .andReturn().getResponse().getContentAsString();
+        TacheExportDto tache = attendreFin(objectMapper.readValue(soumission, TacheExportDto.class).getId());
+
+        // La cause reste dans les logs du serveur : le client reçoit un message générique
+        assertEquals(TacheExportDto.Statut.ECHEC, tache.getStatut());
+        assertNotNull(tache.getMessage());
+        assertFalse(tache.getMessage().contains("jdbc"));
+    }
+
+    @Test
+    void testExportVillesCsvRessourceNotFound() throws Exception {
+        when(villeRepository.count()).thenReturn(0L);
+
+        this.mockMvc.perform(MockMvcRequestBuilders.post("/api/exports/villes/csv")).andDo(print())
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void testExportVillesPdfDepartementNotFound() throws Exception {
+        this.mockMvc.perform(MockMvcRequestBuilders.post("/api/exports/villes/pdf").param("code_dep", "99")).andDo(print())
+                .andExpect(status().isNotFound())
+                .andExpect(content().string(containsString("99")));
+    }
+
+    @Test
+    void testGetTacheNotFound() throws Exception {
+        this.mockMvc.perform(MockMvcRequestBuilders.get("/api/exports/inconnue")).andDo(print())
+                .andExpect(status().isNotFound());
+    }
+
+    private TacheExportDto attendreFin(String id) throws Exception {
+        for (int i = 0; i < 100; i++) {
+            String reponse = this.mockMvc.perform(MockMvcRequestBuilders.get("/api/exports/" + id))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+            TacheExportDto tache = objectMapper.readValue(reponse, TacheExportDto.class);
+            if (tache.getStatut() == TacheExportDto.Statut.TERMINEE || tache.getStatut() == TacheExportDto.Statut.ECHEC) {
+                return tache;
+            }
+            Thread.sleep(50);
+        }
+        throw new AssertionError("L'export ne s'est pas terminé.");
+    }
+}
@@ -0,0 +1,150 @@
+package fr.diginamic.hello.restControllers;
+
+import fr.diginamic.hello.dto.VilleDto;
+import fr.diginamic.hello.repositories.DepartementRepository;
+import fr.diginamic.hello.repositories.VilleRepository;
+import fr.diginamic.hello.services.VersionDonneesService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Exports complets précompressés, désactivés dans le profil de test :
+// chaque test avance la version des données pour repartir de fichiers neufs
+@SpringBootTest(properties = {"recensement.exports.precompresses.actif=true",
+        "recensement.exports.repertoire=${java.io.tmpdir}/recensement-exports-test"})
+@ActiveProfiles("test")
+@AutoConfigureMockMvc
+class ExportsPrecompressesTest {
+    @MockitoBean
+    private VilleRepository villeRepository;
+    @MockitoBean
+    private DepartementRepository departementRepository;
+    @Autowired
+    private VersionDonneesService versionDonnees;
+    @Autowired
+    private MockMvc mockMvc;
+    @Value("${recensement.exports.repertoire}")
+    private Path repertoire;
+
+    @BeforeEach
+    void setUp() {
+        versionDonnees.incrementer();
+        when(villeRepository.count()).thenReturn(1L);
+        when(villeRepository.streamAllDtos()).thenAnswer(invocation -> Stream.of(new VilleDto(13497, "Bourg-en-Bresse", 41365, "01", "Ain")));
+    }
+
+    @Test
+    void testGenerateCsvFileGzipOk() throws Exception {
+        MockHttpServletResponse reponse = this.mockMvc.perform(MockMvcRequestBuilders.get("/api/villes/csv/villes").header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andExpect(header().string(HttpHeaders.VARY, containsString(HttpHeaders.ACCEPT_ENCODING)))
+                .andReturn().getResponse();
+
+        assertTrue(Gzip.decompresser(reponse.getContentAsByteArray()).contains("Bourg-en-Bresse,41365,01,Ain\n"));
+        assertEquals((long) reponse.getContentAsByteArray().length, reponse.getContentLengthLong());
+        assertTrue(reponse.getHeader(HttpHeaders.ETAG).endsWith("-gzip\""));
+    }
+
+    @Test
+    void testGenerateCsvFileGzipRefuse() throws Exception {
+        // gzip;q=0 refuse le gzip, même si tous les autres codages sont acceptés
+        MockHttpServletResponse reponse = this.mockMvc.perform(MockMvcRequestBuilders.get("/api/villes/csv/villes").header(HttpHeaders.ACCEPT_ENCODING, "gzip;q=0, *"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+                .andReturn().getResponse();
+
+        assertTrue(reponse.getContentAsString(StandardCharsets.UTF_8).contains("Bourg-en-Bresse,41365,01,Ain\n"));
+        assertFalse(reponse.getHeader(HttpHeaders.ETAG).endsWith("-gzip\""));
+
+        // Un poids non nul, même faible, l'accepte
+        this.mockMvc.perform(MockMvcRequestBuilders.get("/api/villes/csv/villes").header(HttpHeaders.ACCEPT_ENCODING, "br, gzip ; q=0.2"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"));
+    }
+
+    @Test
+    void testGenerateCsvFileGenereUneFoisParVersion() throws Exception {
+        String clair = this.mockMvc.perform(MockMvcRequestBuilders.get("/api/villes/csv/villes"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+        byte[] gzip = this.mockMvc.perform(MockMvcRequestBuilders.get("/api/villes/csv/villes").header(HttpHeaders.ACCEPT_ENCODING, "gzip"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsByteArray();
+
+        // Les deux encodages sont servis par les fichiers d'une seule lecture en base
+        assertEquals(clair, Gzip.decompresser(gzip));
+        verify(villeRepository, times(1)).streamAllDtos();
+
+        // Une écriture rend les fichiers périmés
+        versionDonnees.incrementer();
+        when(villeRepository.streamAllDtos()).thenAnswer(invocation -> Stream.of(new VilleDto(13721, "Oyonnax", 22559, "01", "Ain")));
+        String apresEcriture = this.mockMvc.perform(MockMvcRequestBuilders.get("/api/villes/csv/villes"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+
+        assertNotEquals(clair, apresEcriture);
+        assertTrue(apresEcriture.contains("Oyonnax,22559,01,Ain\n"));
+        verify(villeRepository, times(2)).streamAllDtos();
+    }
+
+    @Test
+    void testGenerateCsvFileConserveLesFichiersRemplaces() throws Exception {
+        this.mockMvc.perform(MockMvcRequestBuilders.get("/api/villes/csv/villes")).andExpect(status().isOk());
+        long fichiers = compterFichiers();
+
+        // Deux régénérations de suite : les chemins déjà transmis pour sendfile doivent encore exister
+        versionDonnees.incrementer();
+        this.mockMvc.perform(MockMvcRequestBuilders.get("/api/villes/csv/villes")).andExpect(status().isOk());
+        versionDonnees.incrementer();
+        this.mockMvc.perform(MockMvcRequestBuilders.get("/api/villes/csv/villes")).andExpect(status().isOk());
+
+        // Deux générations de plus (fichier clair et gzip), aucune supprimée pendant le délai de grâce
+        assertEquals(fichiers + 4, compterFichiers());
+    }
+
+    @Test
+    void testGenerateCsvFileGzipNotModified() throws Exception {
+        String etag = this.mockMvc.perform(MockMvcRequestBuilders.get("/api/villes/csv/villes").header(HttpHeaders.ACCEPT_ENCODING, "gzip"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        this.mockMvc.perform(MockMvcRequestBuilders.get("/api/villes/csv/villes").header(HttpHeaders.ACCEPT_ENCODING, "gzip").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+
+        // L'ETag du contenu compressé ne vaut pas pour le contenu en clair
+        this.mockMvc.perform(MockMvcRequestBuilders.get("/api/villes/csv/villes").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk());
+    }
+
+    private long compterFichiers() throws Exception {
+        try (Stream<Path> fichiers = Files.list(repertoire)) {
+            return fichiers.count();
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package fr.diginamic.hello.restControllers;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Lecture des réponses compressées en gzip reçues par les tests.
+ */
+final class Gzip {
+    private Gzip() {
+    }
+
+    /**
+     * Décompresse un corps de réponse gzip.
+     * @param contenu corps compressé
+     * @return texte décompressé, en UTF-8
+     * @throws IOException contenu gzip invalide
+     */
+    static String decompresser(byte[] contenu) throws IOException {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(contenu))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -1,28 +1,44 @@
 package fr.diginamic.hello.restControllers;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
 import fr.diginamic.hello.dto.VilleDto;
+import fr.diginamic.hello.mappers.VilleMapper;
 import fr.diginamic.hello.models.Departement;
 import fr.diginamic.hello.models.Ville;
 import fr.diginamic.hello.repositories.DepartementRepository;
 import fr.diginamic.hello.repositories.VilleRepository;
+import org.hibernate.exception.ConstraintViolationException;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
-import java.util.ArrayList;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -52,7 +68,7 @@ class VilleRestControllerTest {
 
     @Test
     void testGetVillesOk() throws Exception {
-        when(villeRepository.findAll()).thenReturn(List.of(villes.getFirst()));
+        when(villeRepository.findAllDtos()).thenReturn(VilleMapper.toDtos(List.of(villes.getFirst())));
 
         // Response body : [{"id":0,"nom":"Bourg-en-Bresse","codeDepartement":"01","nomDepartement":"Ain","nbHabitants":41365}]
         this.mockMvc.perform(MockMvcRequestBuilders.get("/api/villes/liste")).andDo(print())
@@ -62,9 +78,87 @@ class VilleRestControllerTest {
                 .andExpect(jsonPath("$[0].codeDepartement", is("01")));
     }
 
+    @Test
+    void testGetVillesNonModifiees() throws Exception {
+        when(villeRepository.findAllDtos()).thenReturn(VilleMapper.toDtos(List.of(villes.getFirst())));
+
+        String etag = this.mockMvc.perform(MockMvcRequestBuilders.get("/api/villes/liste"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        // Même version des données : 304 sans relire les villes
+        this.mockMvc.perform(MockMvcRequestBuilders.get("/api/villes/liste").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+        verify(villeRepository, times(1)).findAllDtos();
+
+        // Une autre représentation a son propre ETag
+        this.mockMvc.perform(MockMvcRequestBuilders.get("/api/villes/liste").param("triNom", "true").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void testGetVillesCborOk() throws Exception {
+        when(villeRepository.findAllDtos()).thenReturn(VilleMapper.toDtos(List.of(villes.getFirst())));
+
+        MockHttpServletResponse reponse = this.mockMvc.perform(MockMvcRequestBuilders.get("/api/villes/liste").accept("application/cbor"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/cbor"))
+                .andExpect(header().string(HttpHeaders.VARY, containsString(HttpHeaders.ACCEPT)))
+                .andReturn().getResponse();
+
+        VilleDto[] villesLues = new CBORMapper().readValue(reponse.getContentAsByteArray(), VilleDto[].class);
+        assertEquals("Bourg-en-Bresse", villesLues[0].getNom());
+        assertEquals("01", villesLues[0].getCodeDepartement());
+
+        // Le format fait partie de l'ETag : l'ETag CBOR ne vaut pas pour la représentation JSON
+        this.mockMvc.perform(MockMvcRequestBuilders.get("/api/villes/liste").header(HttpHeaders.IF_NONE_MATCH, reponse.getHeader(HttpHeaders.ETAG)))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON));
+    }
+
+    @Test
+    void testGetVillesFormatSelonPoids() throws Exception {
+        when(villeRepository.findAllDtos()).thenReturn(VilleMapper.toDtos(List.of(villes.getFirst())));
+
+        // CBOR est accepté mais moins bien pondéré : la réponse et son ETag sont ceux du JSON
+        this.mockMvc.perform(MockMvcRequestBuilders.get("/api/villes/liste").header(HttpHeaders.ACCEPT, "application/json, application/cbor;q=0.1"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(header().string(HttpHeaders.ETAG, not(containsString("-cbor"))));
+
+        this.mockMvc.perform(MockMvcRequestBuilders.get("/api/villes/liste").header(HttpHeaders.ACCEPT, "application/json;q=0.5, application/cbor"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/cbor"))
+                .andExpect(header().string(HttpHeaders.ETAG, containsString("-cbor")));
+    }
+
+    @Test
+    void testGetVillesModifieesApresSuppression() throws Exception {
+        when(villeRepository.findAllDtos()).thenReturn(VilleMapper.toDtos(List.of(villes.getFirst())));
+        when(villeRepository.findById(13497L)).thenReturn(Optional.of(villes.getFirst()));
+
+        String etag = this.mockMvc.perform(MockMvcRequestBuilders.get("/api/villes/liste"))
+                .andExpect(header().doesNotExist(HttpHeaders.LAST_MODIFIED))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        this.mockMvc.perform(MockMvcRequestBuilders.delete("/api/villes/13497"))
+                .andExpect(status().isOk());
+
+        // L'écriture a changé la version : la liste est renvoyée avec un nouvel ETag
+        this.mockMvc.perform(MockMvcRequestBuilders.get("/api/villes/liste").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, not(etag)));
+
+        // Une date à la seconde ne peut pas distinguer deux écritures rapprochées : seul l'ETag compte
+        this.mockMvc.perform(MockMvcRequestBuilders.get("/api/villes/liste").header(HttpHeaders.IF_MODIFIED_SINCE, "Fri, 01 Jan 2100 00:00:00 GMT"))
+                .andExpect(status().isOk());
+    }
+
     @Test
     void testGetVillesPaginationOk() throws Exception {
-        when(villeRepository.findAllOrderByNom(PageRequest.of(0, 2))).thenReturn(List.of(villes.getFirst(), villes.getLast()));
+        when(villeRepository.findAllDtosOrderByNom(PageRequest.of(0, 2))).thenReturn(VilleMapper.toDtos(List.of(villes.getFirst(), villes.getLast())));
 
         this.mockMvc.perform(MockMvcRequestBuilders.get("/api/villes/liste/pagination?n=2")).andDo(print())
                 .andExpect(status().isOk())
@@ -74,9 +168,22 @@ class VilleRestControllerTest {
                 .andExpect(jsonPath("$[1].codeDepartement", is("01")));
     }
 
+    @Test
+    void testGetVillesPaginationCurseurOk() throws Exception {
+        // 3 villes renvoyées pour une page de 2 : il existe une page suivante
+        when(villeRepository.findAllDtosOrderByNom(PageRequest.of(0, 3))).thenReturn(VilleMapper.toDtos(List.of(villes.getLast(), villes.getFirst(), villes.get(3))));
+
+        this.mockMvc.perform(MockMvcRequestBuilders.get("/api/villes/liste/pagination?size=2")).andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.elements.length()", is(2)))
+                .andExpect(jsonPath("$.elements[0].nom", is("Ambérieu-en-Bugey")))
+                .andExpect(jsonPath("$.elements[1].nom", is("Bourg-en-Bresse")))
+                .andExpect(jsonPath("$.curseurSuivant").isNotEmpty());
+    }
+
     @Test
     void testGetVilleByIdOk() throws Exception{
-        when(villeRepository.findById(13497L)).thenReturn(Optional.of(villes.getFirst()));
+        when(villeRepository.findDtoById(13497L)).thenReturn(Optional.of(VilleMapper.toDto(villes.getFirst())));
 
         this.mockMvc.perform(MockMvcRequestBuilders.get("/api/villes/{id}", 13497L)).andDo(print())
                 .andExpect(status().isOk())
@@ -86,7 +193,7 @@ class VilleRestControllerTest {
 
     @Test
     void testGetVillesByNomOk() throws Exception {
-        when(villeRepository.findByNom("Bourg-en-Bresse")).thenReturn(List.of(villes.getFirst()));
+        when(villeRepository.findDtosByNom("Bourg-en-Bresse")).thenReturn(VilleMapper.toDtos(List.of(villes.getFirst())));
 
         this.mockMvc.perform(MockMvcRequestBuilders.get("/api/villes/nom/{nom}", "Bourg-en-Bresse")).andDo(print())
                 .andExpect(status().isOk())
@@ -98,9 +205,8 @@ class VilleRestControllerTest {
     void testAddVilleOk() throws Exception {
         Departement ain = departements.getFirst();
 
-        when(villeRepository.findByNom(anyString())).thenReturn(new ArrayList<>());
         when(departementRepository.findByCode(anyString())).thenReturn(Optional.of(ain));
-        when(villeRepository.findAll()).thenReturn(villes);
+        when(villeRepository.findAllDtos()).thenReturn(VilleMapper.toDtos(villes));
 
         this.mockMvc.perform(MockMvcRequestBuilders.post("/api/villes")
                         .content(objectMapper.writeValueAsString(new VilleDto(0, "Barcelonnette", 2539, ain.getCode(), ain.getNom())))
@@ -109,6 +215,127 @@ class VilleRestControllerTest {
                 .andExpect(status().isOk());
     }
 
+    @Test
+    void testAddVilleRepresentationOk() throws Exception {
+        Departement ain = departements.getFirst();
+
+        when(departementRepository.findByCode(anyString())).thenReturn(Optional.of(ain));
+        when(villeRepository.save(any(Ville.class))).thenReturn(new Ville(20000, "Belley", 9211, ain));
+
+        this.mockMvc.perform(MockMvcRequestBuilders.post("/api/villes")
+                        .header("Prefer", "return=representation")
+                        .content(objectMapper.writeValueAsString(new VilleDto(0, "Belley", 9211, ain.getCode(), ain.getNom())))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isCreated())
+                .andExpect(header().string("Location", "http://localhost/api/villes/20000"))
+                .andExpect(jsonPath("$.id", is(20000)))
+                .andExpect(jsonPath("$.nom", is("Belley")));
+    }
+
+    @Test
+    void testAddVilleRepresentationParmiPreferences() throws Exception {
+        Departement ain = departements.getFirst();
+
+        when(departementRepository.findByCode(anyString())).thenReturn(Optional.of(ain));
+        when(villeRepository.save(any(Ville.class))).thenReturn(new Ville(20000, "Belley", 9211, ain));
+        when(villeRepository.findAllDtos()).thenReturn(VilleMapper.toDtos(villes));
+
+        // Plusieurs préférences, espaces et valeur entre guillemets
+        this.mockMvc.perform(MockMvcRequestBuilders.post("/api/villes")
+                        .header("Prefer", "respond-async, return = \"representation\"; x=1")
+                        .content(objectMapper.writeValueAsString(new VilleDto(0, "Belley", 9211, ain.getCode(), ain.getNom())))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isCreated())
+                .andExpect(header().string("Preference-Applied", "return=representation"))
+                .andExpect(jsonPath("$.id", is(20000)));
+
+        // return=minimal : la liste complète est renvoyée
+        this.mockMvc.perform(MockMvcRequestBuilders.post("/api/villes")
+                        .header("Prefer", "return=minimal")
+                        .content(objectMapper.writeValueAsString(new VilleDto(0, "Belley", 9211, ain.getCode(), ain.getNom())))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()", is(villes.size())));
+    }
+
+    @Test
+    void testAddVillesLotOk() throws Exception {
+        Departement ain = departements.getFirst();
+
+        when(departementRepository.findByCodeIn(anyCollection())).thenReturn(List.of(ain));
+        when(villeRepository.findByNomIn(anyCollection())).thenReturn(List.of());
+        when(villeRepository.saveAll(anyList())).thenReturn(List.of(new Ville(20000, "Belley", 9211, ain), new Ville(20001, "Nantua", 3335, ain)));
+
+        List<VilleDto> lot = List.of(new VilleDto(0, "Belley", 9211, ain.getCode(), ain.getNom()), new VilleDto(0, "Nantua", 3335, ain.getCode(), ain.getNom()));
+
+        this.mockMvc.perform(MockMvcRequestBuilders.post("/api/villes/lot")
+                        .content(objectMapper.writeValueAsString(lot))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.length()", is(2)))
+                .andExpect(jsonPath("$[1].id", is(20001)));
+    }
+
+    @Test
+    void testAddVillesLotDoublonConflict() throws Exception {
+        Departement ain = departements.getFirst();
+
+        when(departementRepository.findByCodeIn(anyCollection())).thenReturn(List.of(ain));
+        when(villeRepository.findByNomIn(anyCollection())).thenReturn(List.of(villes.get(1)));
+
+        List<VilleDto> lot = List.of(new VilleDto(0, "Belley", 9211, ain.getCode(), ain.getNom()), new VilleDto(0, "Oyonnax", 22559, ain.getCode(), ain.getNom()));
+
+        this.mockMvc.perform(MockMvcRequestBuilders.post("/api/villes/lot")
+                        .content(objectMapper.writeValueAsString(lot))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    void testAddVillesLotDoublonCasseEtAccentsConflict() throws Exception {
+        Departement ain = departements.getFirst();
+
+        when(departementRepository.findByCodeIn(anyCollection())).thenReturn(List.of(ain));
+        when(villeRepository.findByNomIn(anyCollection())).thenReturn(List.of(villes.get(4)));
+
+        // Ambérieu-en-Bugey existe déjà : la contrainte d'unicité ignore la casse et les accents
+        List<VilleDto> lot = List.of(new VilleDto(0, "Belley", 9211, ain.getCode(), ain.getNom()), new VilleDto(0, "AMBERIEU-EN-BUGEY", 14081, ain.getCode(), ain.getNom()));
+
+        this.mockMvc.perform(MockMvcRequestBuilders.post("/api/villes/lot")
+                        .content(objectMapper.writeValueAsString(lot))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isConflict())
+                .andExpect(content().string(containsString("AMBERIEU-EN-BUGEY")));
+        verify(villeRepository, times(0)).saveAll(anyList());
+    }
+
+    @Test
+    void testAddVillesLotDoublonConcurrentConflict() throws Exception {
+        Departement ain = departements.getFirst();
+
+        when(departementRepository.findByCodeIn(anyCollection())).thenReturn(List.of(ain));
+        when(villeRepository.findByNomIn(anyCollection())).thenReturn(List.of());
+        // Nantua est insérée par une autre requête entre la vérification et l'insertion
+        when(villeRepository.saveAll(anyList())).thenThrow(new DataIntegrityViolationException("Doublon",
+                new ConstraintViolationException("Doublon", new SQLException(), "PUBLIC.UK_VILLE_NOM_DEPARTEMENT_INDEX_2")));
+
+        List<VilleDto> lot = List.of(new VilleDto(0, "Belley", 9211, ain.getCode(), ain.getNom()), new VilleDto(0, "Nantua", 3335, ain.getCode(), ain.getNom()));
+
+        // L'erreur ne dit pas quelle ville est en doublon : le message ne doit pas accuser la première
+        this.mockMvc.perform(MockMvcRequestBuilders.post("/api/villes/lot")
+                        .content(objectMapper.writeValueAsString(lot))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isConflict())
+                .andExpect(content().string(not(containsString("Belley"))));
+    }
+
     @Test
     void testUpdateVilleOk() throws Exception {
         Departement ain = departements.getFirst();
@@ -134,9 +361,26 @@ class VilleRestControllerTest {
                 .andExpect(status().isOk());
     }
 
+    @Test
+    void testDeleteVillesByFiltreOk() throws Exception {
+        when(villeRepository.deleteByFiltre("01", null, 15000)).thenReturn(4);
+
+        this.mockMvc.perform(MockMvcRequestBuilders.delete("/api/villes")
+                        .param("codeDep", "01")
+                        .param("max", "15000"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("4 ville(s)")));
+    }
+
+    @Test
+    void testDeleteVillesSansFiltreBadRequest() throws Exception {
+        this.mockMvc.perform(MockMvcRequestBuilders.delete("/api/villes"))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     void testGetVillesByNomStartingWithOk() throws Exception {
-        when(villeRepository.findByNomStartingWith("B")).thenReturn(List.of(villes.getFirst()));
+        when(villeRepository.findDtosByNomStartingWith("B")).thenReturn(VilleMapper.toDtos(List.of(villes.getFirst())));
 
         this.mockMvc.perform(MockMvcRequestBuilders.get("/api/villes/prefixe_nom?prefixe=B")).andDo(print())
                 .andExpect(status().isOk())
@@ -146,7 +390,7 @@ class VilleRestControllerTest {
 
     @Test
     void testGetVillesByNbHabGreaterThanOk() throws Exception {
-        when(villeRepository.findByNbHabitantsGreaterThan(20000)).thenReturn(List.of(villes.getFirst(), villes.get(1), villes.get(2)));
+        when(villeRepository.findDtosByNbHabitantsGreaterThan(20000)).thenReturn(VilleMapper.toDtos(List.of(villes.getFirst(), villes.get(1), villes.get(2))));
 
         this.mockMvc.perform(MockMvcRequestBuilders.get("/api/villes/nb_habitants/{min}", 20000)).andDo(print())
                 .andExpect(status().isOk())
@@ -160,7 +404,7 @@ class VilleRestControllerTest {
 
     @Test
     void testGetVillesByNbHabBetweenOk() throws Exception {
-        when(villeRepository.findByNbHabitantsBetween(20000, 40000)).thenReturn(List.of(villes.get(1), villes.get(2)));
+        when(villeRepository.findDtosByNbHabitantsBetween(20000, 40000)).thenReturn(VilleMapper.toDtos(List.of(villes.get(1), villes.get(2))));
 
         this.mockMvc.perform(MockMvcRequestBuilders.get("/api/villes/nb_habitants?min=20000&max=40000")).andDo(print())
                 .andExpect(status().isOk())
@@ -172,7 +416,7 @@ class VilleRestControllerTest {
 
     @Test
     void testGetVillesByDepartementAndNbHabGreaterThanOk() throws Exception {
-        when(villeRepository.findByDepartementCodeAndNbHabitantsGreaterThan("01", 20000)).thenReturn(List.of(villes.getFirst(), villes.get(1)));
+        when(villeRepository.findDtosByDepartementCodeAndNbHabitantsGreaterThan("01", 20000)).thenReturn(VilleMapper.toDtos(List.of(villes.getFirst(), villes.get(1))));
 
         this.mockMvc.perform(MockMvcRequestBuilders.get("/api/villes/dept_nb_hab/{code_dept}/{min}", "01", 20000)).andDo(print())
                 .andExpect(status().isOk())
@@ -184,7 +428,7 @@ class VilleRestControllerTest {
 
     @Test
     void testGetVillesByDepartmentCodeAndNbHabitantsBetweenOk() throws Exception {
-        when(villeRepository.findByDepartementCodeAndNbHabitantsGreaterThan("01", 20000)).thenReturn(List.of(villes.getFirst(), villes.get(1)));
+        when(villeRepository.findDtosByDepartementCodeAndNbHabitantsGreaterThan("01", 20000)).thenReturn(VilleMapper.toDtos(List.of(villes.getFirst(), villes.get(1))));
 
         this.mockMvc.perform(MockMvcRequestBuilders.get("/api/villes/dept_nb_hab/{codeDep}/{min}", "01", 20000)).andDo(print())
                 .andExpect(status().isOk())
@@ -196,7 +440,7 @@ class VilleRestControllerTest {
 
     @Test
     void testGetNVillesByDepartmentCodeOrderByNbHabitantsDescOk() throws Exception {
-        when(villeRepository.findByDepartementCodeOrderByNbHabitantsDesc("01", PageRequest.of(0, 2))).thenReturn(List.of(villes.getFirst(), villes.get(1)));
+        when(villeRepository.findDtosByDepartementCodeOrderByNbHabitantsDesc("01", PageRequest.of(0, 2))).thenReturn(VilleMapper.toDtos(List.of(villes.getFirst(), villes.get(1))));
 
         this.mockMvc.perform(MockMvcRequestBuilders.get("/api/villes/dept_order_nb_hab/{code_dept}?n=2", "01")).andDo(print())
                 .andExpect(status().isOk())
@@ -205,4 +449,69 @@ class VilleRestControllerTest {
                 .andExpect(jsonPath("$[1].nom", is("Oyonnax")))
                 .andExpect(jsonPath("$[1].codeDepartement", is("01")));
     }
-}
\ No newline at end of file
+
+    @Test
+    void testGenerateCsvFileOk() throws Exception {
+        when(villeRepository.count()).thenReturn(1L);
+        when(villeRepository.streamAllDtos()).thenReturn(Stream.of(new VilleDto(13497, "Bourg-en-Bresse", 41365, "01", "Ain")));
+
+        this.mockMvc.perform(MockMvcRequestBuilders.get("/api/villes/csv/villes")).andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Disposition", containsString("all-villes.csv")))
+                .andExpect(content().string(containsString("Bourg-en-Bresse,41365,01,Ain\n")));
+    }
+
+    @Test
+    void testGetVillesNdjsonOk() throws Exception {
+        when(villeRepository.count()).thenReturn(2L);
+        when(villeRepository.streamAllDtos()).thenReturn(Stream.of(new VilleDto(13497, "Bourg-en-Bresse", 41365, "01", "Ain"),
+                new VilleDto(13721, "Oyonnax", 22559, "01", "Ain")));
+
+        String contenu = this.mockMvc.perform(MockMvcRequestBuilders.get("/api/villes/liste").accept(MediaType.APPLICATION_NDJSON)).andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+
+        // Une ville par ligne, chaque ligne terminée par un saut de ligne
+        String[] lignes = contenu.split("\n");
+        assertEquals(2, lignes.length);
+        assertEquals("Bourg-en-Bresse", objectMapper.readValue(lignes[0], VilleDto.class).getNom());
+        assertEquals("Oyonnax", objectMapper.readValue(lignes[1], VilleDto.class).getNom());
+        assertTrue(contenu.endsWith("\n"));
+    }
+
+    @Test
+    void testGeneratePdfFileOk() throws Exception {
+        when(departementRepository.findByCode("01")).thenReturn(Optional.of(departements.getFirst()));
+        when(villeRepository.existsByDepartementCode("01")).thenReturn(true);
+        when(villeRepository.streamDtosByDepartementCodeOrderByNbHabitantsDesc("01")).thenReturn(Stream.of(new VilleDto(13497, "Bourg-en-Bresse", 41365, "01", "Ain"),
+                new VilleDto(13721, "Oyonnax", 22559, "01", "Ain")));
+
+        byte[] contenu = this.mockMvc.perform(MockMvcRequestBuilders.get("/api/villes/pdf").param("code_dep", "01")).andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_PDF))
+                .andExpect(header().string("Content-Disposition", containsString("villes-Ain.pdf")))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        assertTrue(new String(contenu, 0, 5, StandardCharsets.ISO_8859_1).startsWith("%PDF-"));
+        // Les villes sont lues une seule fois, en flux
+        verify(villeRepository, times(1)).streamDtosByDepartementCodeOrderByNbHabitantsDesc("01");
+    }
+
+    @Test
+    void testGeneratePdfFileRessourceNotFound() throws Exception {
+        when(departementRepository.findByCode("01")).thenReturn(Optional.of(departements.getFirst()));
+        when(villeRepository.existsByDepartementCode("01")).thenReturn(false);
+
+        this.mockMvc.perform(MockMvcRequestBuilders.get("/api/villes/pdf").param("code_dep", "01")).andDo(print())
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void testGenerateCsvFileRessourceNotFound() throws Exception {
+        when(villeRepository.count()).thenReturn(0L);
+
+        this.mockMvc.perform(MockMvcRequestBuilders.get("/api/villes/csv/villes")).andDo(print())
+                .andExpect(status().isNotFound());
+    }
+}
@@ -0,0 +1,93 @@
+package fr.diginamic.hello.services;
+
+import fr.diginamic.hello.dto.VilleDto;
+import fr.diginamic.hello.exceptions.RequeteIncorrecteException;
+import fr.diginamic.hello.exceptions.RessourceNotFoundException;
+import fr.diginamic.hello.models.Departement;
+import fr.diginamic.hello.models.Ville;
+import fr.diginamic.hello.repositories.DepartementRepository;
+import fr.diginamic.hello.repositories.VilleRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Les caches sont désactivés dans le profil de test : cette classe les réactive
+@SpringBootTest(properties = "spring.cache.type=caffeine")
+@ActiveProfiles("test")
+class CacheServiceTest {
+    @Autowired
+    private VilleService villeService;
+
+    @Autowired
+    private CacheService cacheService;
+
+    @MockitoBean
+    private VilleRepository villeRepository;
+
+    @MockitoBean
+    private DepartementRepository departementRepository;
+
+    // Data
+    private final Departement ain = new Departement(1, "Ain", "01");
+
+    @BeforeEach
+    void viderCaches() {
+        cacheService.viderVilles();
+    }
+
+    @Test
+    void testGetVilleDtosEnCache() throws RessourceNotFoundException {
+        Mockito.when(villeRepository.findAllDtos()).thenReturn(List.of(new VilleDto(13497, "Bourg-en-Bresse", 41365, "01", "Ain")));
+
+        List<VilleDto> villes = villeService.getVilleDtos();
+
+        // Deuxième appel servi par le cache, sans interroger le repository
+        assertSame(villes, villeService.getVilleDtos());
+        Mockito.verify(villeRepository, Mockito.times(1)).findAllDtos();
+
+        // La liste partagée par le cache ne peut pas être modifiée par un appelant
+        assertThrows(UnsupportedOperationException.class, () -> villes.add(new VilleDto()));
+    }
+
+    @Test
+    void testGetVilleDtoByIdApresModification() throws RessourceNotFoundException, RequeteIncorrecteException {
+        Mockito.when(villeRepository.findById(13497L)).thenReturn(Optional.of(new Ville(13497, "Bourg-en-Bresse", 41365, ain)));
+        Mockito.when(villeRepository.findDtoById(13497L)).thenReturn(Optional.of(new VilleDto(13497, "Bourg-en-Bresse", 41365, "01", "Ain")));
+
+        assertEquals(41365, villeService.getVilleDtoById(13497L).getNbHabitants());
+
+        Ville ville = new Ville("Bourg-en-Bresse", 42000);
+        ville.setDepartement(ain);
+        villeService.updateVille(13497L, ville);
+        Mockito.when(villeRepository.findDtoById(13497L)).thenReturn(Optional.of(new VilleDto(13497, "Bourg-en-Bresse", 42000, "01", "Ain")));
+
+        // La ville modifiée a été évincée du cache : elle est relue
+        assertEquals(42000, villeService.getVilleDtoById(13497L).getNbHabitants());
+        Mockito.verify(villeRepository, Mockito.times(2)).findDtoById(13497L);
+    }
+
+    @Test
+    void testGetVilleDtosApresInsertion() throws Exception {
+        Mockito.when(villeRepository.findAllDtos()).thenReturn(List.of(new VilleDto(13497, "Bourg-en-Bresse", 41365, "01", "Ain")));
+        villeService.getVilleDtos();
+
+        Ville nouvelleVille = new Ville("Belley", 9211);
+        nouvelleVille.setDepartement(ain);
+        Mockito.when(departementRepository.findByCode("01")).thenReturn(Optional.of(ain));
+        Mockito.when(villeRepository.save(nouvelleVille)).thenReturn(new Ville(20000, "Belley", 9211, ain));
+        villeService.insertVille(nouvelleVille);
+
+        // Les listes de villes ont été vidées : la liste est relue
+        villeService.getVilleDtos();
+        Mockito.verify(villeRepository, Mockito.times(2)).findAllDtos();
+    }
+}
@@ -139,14 +139,14 @@ class DepartementServiceTest {
 
     @Test
     void testDeleteDepartementOk() throws RessourceNotFoundException, RequeteIncorrecteException {
-        Mockito.when(departementRepository.findById(1L)).thenReturn(Optional.of(departements.getFirst()));
+        Mockito.when(departementRepository.deleteDepartementById(1L)).thenReturn(1);
         departementService.deleteDepartement(1L);
     }
 
     @Test
-    void testDeleteDepartementRessourceNotFoundException() {
-        Mockito.when(departementRepository.findById(5L)).thenReturn(Optional.empty());
-        assertThrows(RessourceNotFoundException.class, () -> villeService.deleteVille(5L));
+    void testDeleteDepartementInexistantRessourceNotFoundException() {
+        Mockito.when(departementRepository.deleteDepartementById(5L)).thenReturn(0);
+        assertThrows(RessourceNotFoundException.class, () -> departementService.deleteDepartement(5L));
     }
 
     @Test
@@ -1,20 +1,28 @@
 package fr.diginamic.hello.services;
 
+import fr.diginamic.hello.dto.ErreurImportDto;
+import fr.diginamic.hello.dto.RapportImportDto;
+import fr.diginamic.hello.dto.VilleDto;
 import fr.diginamic.hello.exceptions.RequeteIncorrecteException;
 import fr.diginamic.hello.exceptions.RessourceExistanteException;
 import fr.diginamic.hello.exceptions.RessourceNotFoundException;
+import fr.diginamic.hello.mappers.VilleMapper;
 import fr.diginamic.hello.models.Departement;
 import fr.diginamic.hello.models.Ville;
 import fr.diginamic.hello.repositories.DepartementRepository;
 import fr.diginamic.hello.repositories.VilleRepository;
+import org.hibernate.exception.ConstraintViolationException;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 
+import java.sql.SQLException;
 import java.util.*;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -26,6 +34,9 @@ class VilleServiceTest {
     @Autowired
     private VilleService villeService;
 
+    @Autowired
+    private ImportService importService;
+
     @MockitoBean
     private VilleRepository villeRepository;
 
@@ -42,42 +53,56 @@ class VilleServiceTest {
             new Ville(14007, "Ambérieu-en-Bugey", 14081, departements.getFirst()));
 
     @Test
-    void testGetVillesOk() throws RessourceNotFoundException {
+    void testGetVilleDtosOk() throws RessourceNotFoundException {
         // ARRANGE
-        Mockito.when(villeRepository.findAll()).thenReturn(villes);
+        Mockito.when(villeRepository.findAllDtos()).thenReturn(VilleMapper.toDtos(villes));
 
         // ACT
-        List<Ville> actualVilles = villeService.getVilles();
+        List<VilleDto> actualVilles = villeService.getVilleDtos();
 
         // ASSERT
-        assertEquals(villes, actualVilles);
+        assertEquals(ids(villes), idsDtos(actualVilles));
     }
 
     @Test
-    void testGetVillesRessourceNotFoundException() {
+    void testGetVilleDtosRessourceNotFoundException() {
         // Renvoie une liste vide
-        Mockito.when(villeRepository.findAll()).thenReturn(List.of());
-        assertThrows(RessourceNotFoundException.class, () -> villeService.getVilles());
+        Mockito.when(villeRepository.findAllDtos()).thenReturn(List.of());
+        assertThrows(RessourceNotFoundException.class, () -> villeService.getVilleDtos());
+    }
+
+    @Test
+    void testGetVilleDtosTrieesParNomOk() throws RessourceNotFoundException {
+        Ville evian = new Ville(14100, "Évian-les-Bains", 9286, departements.getFirst());
+        Ville eze = new Ville(14101, "eze", 2227, departements.get(1));
+        List<Ville> villesNonTriees = new ArrayList<>(villes);
+        villesNonTriees.add(eze);
+        villesNonTriees.add(evian);
+        Mockito.when(villeRepository.findAllDtos()).thenReturn(VilleMapper.toDtos(villesNonTriees));
+
+        // Ordre français : accents et casse ne priment pas sur les lettres
+        List<Ville> expectedVilles = List.of(villes.get(4), villes.getFirst(), villes.get(3), evian, eze, villes.get(2), villes.get(1));
+        assertEquals(ids(expectedVilles), idsDtos(villeService.getVilleDtosTrieesParNom()));
     }
 
     @Test
-    void testGetVillesPaginationOk() throws RessourceNotFoundException, RequeteIncorrecteException {
-        Mockito.when(villeRepository.findAllOrderByNom(PageRequest.of(0, 5))).thenReturn(villes);
-        List<Ville> actualVilles = villeService.getVillesPagination(5);
-        assertEquals(villes, actualVilles);
+    void testGetVilleDtosPaginationOk() throws RessourceNotFoundException, RequeteIncorrecteException {
+        Mockito.when(villeRepository.findAllDtosOrderByNom(PageRequest.of(0, 5))).thenReturn(VilleMapper.toDtos(villes));
+        List<VilleDto> actualVilles = villeService.getVilleDtosPagination(5);
+        assertEquals(ids(villes), idsDtos(actualVilles));
     }
 
     @Test
-    void testGetVillesPaginationRessourceNotFoundException() {
+    void testGetVilleDtosPaginationRessourceNotFoundException() {
         // Renvoie une liste vide
-        Mockito.when(villeRepository.findAllOrderByNom(PageRequest.of(0, 5))).thenReturn(List.of());
-        assertThrows(RessourceNotFoundException.class, () -> villeService.getVillesPagination(5));
+        Mockito.when(villeRepository.findAllDtosOrderByNom(PageRequest.of(0, 5))).thenReturn(List.of());
+        assertThrows(RessourceNotFoundException.class, () -> villeService.getVilleDtosPagination(5));
     }
 
     @Test
-    void testGetVillesPaginationRequeteIncorrecteException() {
-        Mockito.when(villeRepository.findAllOrderByNom(PageRequest.of(0, 1))).thenReturn(villes);
-        assertThrows(RequeteIncorrecteException.class, () -> villeService.getVillesPagination(-1));
+    void testGetVilleDtosPaginationRequeteIncorrecteException() {
+        Mockito.when(villeRepository.findAllDtosOrderByNom(PageRequest.of(0, 1))).thenReturn(VilleMapper.toDtos(villes));
+        assertThrows(RequeteIncorrecteException.class, () -> villeService.getVilleDtosPagination(-1));
     }
 
     @Test
@@ -100,22 +125,21 @@ class VilleServiceTest {
     }
 
     @Test
-    void tesGetVillesByNomOk() throws RessourceNotFoundException, RequeteIncorrecteException {
-        Mockito.when(villeRepository.findByNom("Oyonnax")).thenReturn(List.of(villes.get(1)));
-        List<Ville> actualVilles = villeService.getVillesByNom("Oyonnax");
-        assertEquals(List.of(villes.get(1)), actualVilles);
+    void testGetVilleDtosByNomOk() throws RessourceNotFoundException, RequeteIncorrecteException {
+        Mockito.when(villeRepository.findDtosByNom("Oyonnax")).thenReturn(VilleMapper.toDtos(List.of(villes.get(1))));
+        List<VilleDto> actualVilles = villeService.getVilleDtosByNom("Oyonnax");
+        assertEquals(ids(List.of(villes.get(1))), idsDtos(actualVilles));
     }
 
     @Test
-    void tesGetVillesByNomRessourceNotFoundException() {
-        Mockito.when(villeRepository.findByNom("Oyonnax")).thenReturn(List.of());
-        assertThrows(RessourceNotFoundException.class, () -> villeService.getVillesByNom("Auvergne"));
+    void testGetVilleDtosByNomRessourceNotFoundException() {
+        Mockito.when(villeRepository.findDtosByNom("Oyonnax")).thenReturn(List.of());
+        assertThrows(RessourceNotFoundException.class, () -> villeService.getVilleDtosByNom("Auvergne"));
     }
 
     @Test
-    void tesGetVillesByNomRequeteIncorrecteException() {
-        Mockito.when(villeRepository.findByNom("")).thenReturn(List.of());
-        assertThrows(RessourceNotFoundException.class, () -> villeService.getVillesByNom("Auvergne"));
+    void testGetVilleDtosByNomRequeteIncorrecteException() {
+        assertThrows(RequeteIncorrecteException.class, () -> villeService.getVilleDtosByNom(""));
     }
 
     @Test
@@ -125,16 +149,19 @@ class VilleServiceTest {
         nouvelleVille.setDepartement(departements.get(1));
 
         // Gère tous les appels aux repositories faits dans la méthode insertVille
-        Mockito.when(villeRepository.save(nouvelleVille)).thenReturn(null);
-        Mockito.when(villeRepository.findByNom("Barcelonnette")).thenReturn(List.of());
+        Mockito.when(villeRepository.save(nouvelleVille)).thenReturn(nouvelleVille);
         Mockito.when(departementRepository.findByCode("04")).thenReturn(Optional.ofNullable(departements.get(1)));
 
-        villeService.insertVille(nouvelleVille);
+        assertEquals(nouvelleVille, villeService.insertVille(nouvelleVille));
     }
 
     @Test
     void testInsertVilleRessourceExistanteException() {
-        Mockito.when(villeRepository.findByNom("Oyonnax")).thenReturn(List.of(villes.get(1)));
+        // Le doublon est détecté par la contrainte d'unicité en base
+        Mockito.when(departementRepository.findByCode("01")).thenReturn(Optional.of(departements.getFirst()));
+        Mockito.when(villeRepository.save(villes.get(1))).thenThrow(new DataIntegrityViolationException("Doublon",
+                new ConstraintViolationException("Doublon", new SQLException(), "PUBLIC.UK_VILLE_NOM_DEPARTEMENT_INDEX_2")));
+
         assertThrows(RessourceExistanteException.class, () -> villeService.insertVille(villes.get(1)));
     }
 
@@ -200,124 +227,150 @@ class VilleServiceTest {
     }
 
     @Test
-    void testExtractVillesByNomStartingWithOk() throws RessourceNotFoundException, RequeteIncorrecteException {
-        Mockito.when(villeRepository.findByNomStartingWith("Oy")).thenReturn(List.of(villes.get(1)));
-        assertEquals(List.of(villes.get(1)), villeService.extractVillesByNomStartingWith("Oy"));
+    void testExtractVilleDtosByNomStartingWithOk() throws RessourceNotFoundException, RequeteIncorrecteException {
+        Mockito.when(villeRepository.findDtosByNomStartingWith("Oy")).thenReturn(VilleMapper.toDtos(List.of(villes.get(1))));
+        assertEquals(ids(List.of(villes.get(1))), idsDtos(villeService.extractVilleDtosByNomStartingWith("Oy")));
+    }
+
+    @Test
+    void testExtractVilleDtosByNomStartingWithRessourceNotFoundException() {
+        Mockito.when(villeRepository.findDtosByNomStartingWith("Oya")).thenReturn(List.of());
+        assertThrows(RessourceNotFoundException.class, () -> villeService.extractVilleDtosByNomStartingWith("Oya"));
     }
 
     @Test
-    void testExtractVillesByNomStartingWithRessourceNotFoundException() {
-        Mockito.when(villeRepository.findByNomStartingWith("Oya")).thenReturn(List.of());
-        assertThrows(RessourceNotFoundException.class, () -> villeService.extractVillesByNomStartingWith("Oya"));
+    void testExtractVilleDtosByNomStartingWithRequeteIncorrecteException() {
+        assertThrows(RequeteIncorrecteException.class, () -> villeService.extractVilleDtosByNomStartingWith(""));
     }
 
     @Test
-    void testExtractVillesByNomStartingWithRequeteIncorrecteException() {
-        assertThrows(RequeteIncorrecteException.class, () -> villeService.extractVillesByNomStartingWith(""));
+    void testExtractVilleDtosByNbHabGreaterThanOk() throws RessourceNotFoundException, RequeteIncorrecteException {
+        Mockito.when(villeRepository.findDtosByNbHabitantsGreaterThan(30000)).thenReturn(VilleMapper.toDtos(List.of(villes.getFirst())));
+        assertEquals(ids(List.of(villes.getFirst())), idsDtos(villeService.extractVilleDtosByNbHabGreaterThan(30000)));
     }
 
     @Test
-    void testExtractVillesByNbHabGreaterThanOk() throws RessourceNotFoundException, RequeteIncorrecteException {
-        Mockito.when(villeRepository.findByNbHabitantsGreaterThan(30000)).thenReturn(List.of(villes.getFirst()));
-        assertEquals(List.of(villes.getFirst()), villeService.extractVillesByNbHabGreaterThan(30000));
+    void testExtractVilleDtosByNbHabGreaterThanRessourceNotFoundException() {
+        Mockito.when(villeRepository.findDtosByNbHabitantsGreaterThan(50000)).thenReturn(List.of());
+        assertThrows(RessourceNotFoundException.class, () -> villeService.extractVilleDtosByNbHabGreaterThan(50000));
     }
 
     @Test
-    void testExtractVillesByNbHabGreaterThanRessourceNotFoundException() {
-        Mockito.when(villeRepository.findByNbHabitantsGreaterThan(50000)).thenReturn(List.of());
-        assertThrows(RessourceNotFoundException.class, () -> villeService.extractVillesByNbHabGreaterThan(50000));
+    void testExtractVilleDtosByNbHabGreaterThanRequeteIncorrecteException() {
+        assertThrows(RequeteIncorrecteException.class, () -> villeService.extractVilleDtosByNbHabGreaterThan(-2000));
     }
 
     @Test
-    void testExtractVillesByNbHabGreaterThanRequeteIncorrecteException() {
-        assertThrows(RequeteIncorrecteException.class, () -> villeService.extractVillesByNbHabGreaterThan(-2000));
+    void testExtractVilleDtosByDepartementCodeOrderByNbHabDescOk() throws RessourceNotFoundException, RequeteIncorrecteException {
+        Mockito.when(villeRepository.findDtosByDepartementCodeOrderByNbHabitantsDesc("04", PageRequest.of(0, 2))).thenReturn(VilleMapper.toDtos(List.of(villes.get(2), villes.get(3))));
+        assertEquals(ids(List.of(villes.get(2), villes.get(3))), idsDtos(villeService.extractVilleDtosByDepartementCodeOrderByNbHabDesc("04", 2)));
     }
 
     @Test
-    void testExtractVillesByDepartementCodeOrderByNbHabDescOk() throws RessourceNotFoundException, RequeteIncorrecteException {
-        Mockito.when(villeRepository.findByDepartementCodeOrderByNbHabitantsDesc("04", PageRequest.of(0, 2))).thenReturn(List.of(villes.get(2), villes.get(3)));
-        assertEquals(List.of(villes.get(2), villes.get(3)), villeService.extractVillesByDepartementCodeOrderByNbHabDesc("04", 2));
+    void testExtractVilleDtosByDepartementCodeOrderByNbHabDescRessourceNotFoundException() {
+        Mockito.when(villeRepository.findDtosByDepartementCodeOrderByNbHabitantsDesc("06", PageRequest.of(0, 2))).thenReturn(List.of());
+        assertThrows(RessourceNotFoundException.class, () -> villeService.extractVilleDtosByDepartementCodeOrderByNbHabDesc("06", 2));
     }
 
     @Test
-    void testExtractVillesByDepartementCodeOrderByNbHabDescRessourceNotFoundException() {
-        Mockito.when(villeRepository.findByDepartementCodeOrderByNbHabitantsDesc("06", PageRequest.of(0, 2))).thenReturn(List.of());
-        assertThrows(RessourceNotFoundException.class, () -> villeService.extractVillesByDepartementCodeOrderByNbHabDesc("06", 2));
+    void testExtractVilleDtosByDepartementCodeOrderByNbHabDescRequeteIncorrecteNException() {
+        assertThrows(RequeteIncorrecteException.class, () -> villeService.extractVilleDtosByDepartementCodeOrderByNbHabDesc("06", -1));
     }
 
     @Test
-    void testExtractVillesByDepartementCodeOrderByNbHabDescRequeteIncorrecteNException() {
-        assertThrows(RequeteIncorrecteException.class, () -> villeService.extractVillesByDepartementCodeOrderByNbHabDesc("06", -1));
+    void testExtractVilleDtosByDepartementCodeOrderByNbHabDescRequeteIncorrecteCodeException() {
+        assertThrows(RequeteIncorrecteException.class, () -> villeService.extractVilleDtosByDepartementCodeOrderByNbHabDesc("", -1));
     }
 
     @Test
-    void testExtractVillesByDepartementCodeOrderByNbHabDescRequeteIncorrecteCodeException() {
-        assertThrows(RequeteIncorrecteException.class, () -> villeService.extractVillesByDepartementCodeOrderByNbHabDesc("", -1));
+    void testExtractVilleDtosByNbHabBetweenOk() throws RessourceNotFoundException, RequeteIncorrecteException {
+        Mockito.when(villeRepository.findDtosByNbHabitantsBetween(15000, 20000)).thenReturn(VilleMapper.toDtos(List.of(villes.get(3))));
+        assertEquals(ids(List.of(villes.get(3))), idsDtos(villeService.extractVilleDtosByNbHabBetween(15000, 20000)));
     }
 
     @Test
-    void testExtractVillesByNbHabBetweenOk() throws RessourceNotFoundException, RequeteIncorrecteException {
-        Mockito.when(villeRepository.findByNbHabitantsBetween(15000, 20000)).thenReturn(List.of(villes.get(3)));
-        assertEquals(List.of(villes.get(3)), villeService.extractVillesByNbHabBetween(15000, 20000));
+    void testExtractVilleDtosByNbHabBetweenRessourceNotFoundException() {
+        Mockito.when(villeRepository.findDtosByNbHabitantsBetween(50000, 100000)).thenReturn(List.of());
+        assertThrows(RessourceNotFoundException.class, () -> villeService.extractVilleDtosByNbHabBetween(50000, 100000));
     }
 
     @Test
-    void testExtractVillesByNbHabBetweenRessourceNotFoundException() {
-        Mockito.when(villeRepository.findByNbHabitantsBetween(50000, 100000)).thenReturn(List.of());
-        assertThrows(RessourceNotFoundException.class, () -> villeService.extractVillesByNbHabBetween(50000, 100000));
+    void testExtractVilleDtosByNbHabBetweenRequeteIncorrecteMinSupMaxException() {
+        assertThrows(RequeteIncorrecteException.class, () -> villeService.extractVilleDtosByNbHabBetween(100000, 2));
     }
 
     @Test
-    void testExtractVillesByNbHabBetweenRequeteIncorrecteMinSupMaxException() {
-        assertThrows(RequeteIncorrecteException.class, () -> villeService.extractVillesByNbHabBetween(100000, 2));
+    void testExtractVilleDtosByNbHabBetweenRequeteIncorrecteMinNegException() {
+        assertThrows(RequeteIncorrecteException.class, () -> villeService.extractVilleDtosByNbHabBetween(-32, -3));
     }
 
     @Test
-    void testExtractVillesByNbHabBetweenRequeteIncorrecteMinNegException() {
-        assertThrows(RequeteIncorrecteException.class, () -> villeService.extractVillesByNbHabBetween(-32, -3));
+    void testExtractVilleDtosByDepartementCodeAndNbHabitantsGreaterThanOK() throws RessourceNotFoundException, RequeteIncorrecteException {
+        Mockito.when(villeRepository.findDtosByDepartementCodeAndNbHabitantsGreaterThan("04", 20000)).thenReturn(VilleMapper.toDtos(List.of(villes.get(2))));
+        assertEquals(ids(List.of(villes.get(2))), idsDtos(villeService.extractVilleDtosByDepartementCodeAndNbHabGreaterThan("04", 20000)));
     }
 
     @Test
-    void testExtractVillesByDepartementCodeAndNbHabitantsGreaterThanOK() throws RessourceNotFoundException, RequeteIncorrecteException {
-        Mockito.when(villeRepository.findByDepartementCodeAndNbHabitantsGreaterThan("04", 20000)).thenReturn(List.of(villes.get(2)));
-        assertEquals(List.of(villes.get(2)), villeService.extractVillesByDepartementCodeAndNbHabGreaterThan("04", 20000));
+    void testExtractVilleDtosByDepartementCodeAndNbHabitantsGreaterThanRessourceNotFoundException() {
+        Mockito.when(villeRepository.findDtosByDepartementCodeAndNbHabitantsGreaterThan("04", 50000)).thenReturn(List.of());
+        assertThrows(RessourceNotFoundException.class, () -> villeService.extractVilleDtosByDepartementCodeAndNbHabGreaterThan("04", 50000));
     }
 
     @Test
-    void testExtractVillesByDepartementCodeAndNbHabitantsGreaterThanRessourceNotFoundException() {
-        Mockito.when(villeRepository.findByDepartementCodeAndNbHabitantsGreaterThan("04", 50000)).thenReturn(List.of());
-        assertThrows(RessourceNotFoundException.class, () -> villeService.extractVillesByDepartementCodeAndNbHabGreaterThan("04", 20000));
+    void testExtractVilleDtosByDepartementCodeAndNbHabitantsGreaterThanRequeteIncorrecteMinHabException() {
+        assertThrows(RequeteIncorrecteException.class, () -> villeService.extractVilleDtosByDepartementCodeAndNbHabGreaterThan("04", -47));
     }
 
     @Test
-    void testExtractVillesByDepartementCodeAndNbHabitantsGreaterThanRequeteIncorrecteMinHabException() {
-        assertThrows(RequeteIncorrecteException.class, () -> villeService.extractVillesByDepartementCodeAndNbHabGreaterThan("04", -47));
+    void testExtractVilleDtosByDepartementCodeAndNbHabitantsGreaterThanRequeteIncorrecteCodeNullException() {
+        assertThrows(RequeteIncorrecteException.class, () -> villeService.extractVilleDtosByDepartementCodeAndNbHabGreaterThan(null, 20000));
     }
 
     @Test
-    void testExtractVillesByDepartementCodeAndNbHabitantsGreaterThanRequeteIncorrecteCodeNullException() {
-        assertThrows(RequeteIncorrecteException.class, () -> villeService.extractVillesByDepartementCodeAndNbHabGreaterThan(null, 20000));
+    void testExtractVilleDtosByDepartementCodeAndNbHabBetweenOk() throws RessourceNotFoundException, RequeteIncorrecteException {
+        Mockito.when(villeRepository.findDtosByDepartementCodeAndNbHabitantsBetween("04", 20000, 30000)).thenReturn(VilleMapper.toDtos(List.of(villes.get(2))));
+        assertEquals(ids(List.of(villes.get(2))), idsDtos(villeService.extractVilleDtosByDepartementCodeAndNbHabBetween("04", 20000, 30000)));
     }
 
     @Test
-    void testExtractVillesByDepartementCodeAndNbHabBetweenOk() throws RessourceNotFoundException, RequeteIncorrecteException {
-        Mockito.when(villeRepository.findByDepartementCodeAndNbHabitantsBetween("04", 20000, 30000)).thenReturn(List.of(villes.get(2)));
-        assertEquals(List.of(villes.get(2)), villeService.extractVillesByDepartementCodeAndNbHabBetween("04", 20000, 30000));
+    void testExtractVilleDtosByDepartementCodeAndNbHabBetweenRessourceNotFoundException() {
+        Mockito.when(villeRepository.findDtosByDepartementCodeAndNbHabitantsBetween("04", 2000000, 3000000)).thenReturn(List.of());
+        assertThrows(RessourceNotFoundException.class, () -> villeService.extractVilleDtosByDepartementCodeAndNbHabBetween("04", 2000000, 3000000));
     }
 
     @Test
-    void testExtractVillesByDepartementCodeAndNbHabBetweenRessourceNotFoundException() {
-        Mockito.when(villeRepository.findByDepartementCodeAndNbHabitantsBetween("04", 2000000, 3000000)).thenReturn(List.of());
-        assertThrows(RessourceNotFoundException.class, () -> villeService.extractVillesByDepartementCodeAndNbHabBetween("04", 2000000, 3000000));
+    void testExtractVilleDtosByDepartementCodeAndNbHabBetweenRequeteIncorrecteMinSupMaxException() {
+        assertThrows(RequeteIncorrecteException.class, () -> villeService.extractVilleDtosByDepartementCodeAndNbHabBetween("04", 10000, 2));
     }
 
     @Test
-    void testExtractVillesByDepartementCodeAndNbHabBetweenRequeteIncorrecteMinSupMaxException() {
-        assertThrows(RequeteIncorrecteException.class, () -> villeService.extractVillesByDepartementCodeAndNbHabBetween("04", 10000, 2));
+    void testImporterVillesRefuseeParLaBaseOk() throws RequeteIncorrecteException {
+        Mockito.when(departementRepository.findAll()).thenReturn(departements);
+        Mockito.when(villeRepository.findAllDtos()).thenReturn(VilleMapper.toDtos(villes));
+        // Nantua est insérée entre la lecture des villes existantes et l'insertion du lot
+        Mockito.doThrow(new DuplicateKeyException("uk_ville_nom_departement")).when(villeRepository)
+                .insererEnLot(Mockito.argThat(lot -> lot.stream().anyMatch(ville -> ville.getNom().equals("Nantua"))));
+
+        RapportImportDto rapport = importService.importerVilles(List.of(new VilleDto(0L, "Belley", 9211, "01", null),
+                new VilleDto(0L, "Nantua", 3335, "01", null),
+                new VilleDto(0L, "Sisteron", 7675, "04", null)));
+
+        // Le lot refusé est repris ville par ville : seule la ligne de Nantua est rejetée
+        assertEquals(2, rapport.getNbImportees());
+        assertEquals(List.of(2), rapport.getErreurs().stream().map(ErreurImportDto::getLigne).toList());
+        Mockito.verify(villeRepository, Mockito.times(4)).insererEnLot(Mockito.anyList());
     }
 
     @Test
-    void testExtractVillesByDepartementCodeAndNbHabBetweenRequeteIncorrecteCodeException() {
-        assertThrows(RequeteIncorrecteException.class, () -> villeService.extractVillesByDepartementCodeAndNbHabBetween("", 100, 20000));
+    void testExtractVilleDtosByDepartementCodeAndNbHabBetweenRequeteIncorrecteCodeException() {
+        assertThrows(RequeteIncorrecteException.class, () -> villeService.extractVilleDtosByDepartementCodeAndNbHabBetween("", 100, 20000));
+    }
+
+    private static List<Long> ids(List<Ville> villes) {
+        return villes.stream().map(Ville::getId).toList();
+    }
+
+    private static List<Long> idsDtos(List<VilleDto> villes) {
+        return villes.stream().map(VilleDto::getId).toList();
     }
-}
\ No newline at end of file
+}